@@ -45,9 +45,11 @@ import com.sun.electric.util.ElapseTimer;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -195,6 +197,8 @@ public abstract class Job implements Serializable {
 	/* private */boolean started;
 	/** is job finished? */
 	/* private */public boolean finished;
+	/** completes when job is finished, created on demand */
+	private transient CompletableFuture<Boolean> completion;
 	/** thread aborted? */
 	/* private */boolean aborted;
 	/** schedule thread to abort */
@@ -331,10 +335,24 @@ public abstract class Job implements Serializable {
 	 *            delete when job is done if true, otherwise leave it around
 	 */
 	private void startJob(boolean deleteWhenDone, boolean onMySnapshot) {
+		UserInterface ui = getUserInterface();
+		startJob(deleteWhenDone, onMySnapshot, ui.getJobKey());
+	}
+
+	/**
+	 * Start the job on behalf of context with given Job key. Context is either
+	 * client (Jobless key) or server Job which starts this Job.
+	 * 
+	 * @param deleteWhenDone
+	 *            delete when job is done if true, otherwise leave it around
+	 * @param onMySnapshot
+	 *            start on snapshot obtained at the end of current job
+	 * @param curJobKey
+	 *            key of context which starts the Job
+	 */
+	private void startJob(boolean deleteWhenDone, boolean onMySnapshot, Job.Key curJobKey) {
 		this.deleteWhenDone = deleteWhenDone;
 
-		UserInterface ui = getUserInterface();
-		Job.Key curJobKey = ui.getJobKey();
 		boolean startedByServer = curJobKey.doItOnServer;
 		boolean doItOnServer = ejob.jobType != Job.Type.CLIENT_EXAMINE;
 		if (startedByServer) {
@@ -368,6 +386,51 @@ public abstract class Job implements Serializable {
 			}
 		}
 	}
+
+	/**
+	 * Start the job when all given Jobs are finished. Finished Jobs are not
+	 * waited for, so the job is started at once when there is nothing to wait.
+	 * The job is started even if some of given Jobs failed or were aborted.
+	 * Unlike waiting for Jobs in doIt, no thread is held while Jobs run.
+	 * 
+	 * @param jobs
+	 *            Jobs to wait for, null elements are ignored
+	 */
+	public void startJobAfter(Job... jobs) {
+		final Job.Key curJobKey = getUserInterface().getJobKey();
+		List<CompletableFuture<Boolean>> futures = new ArrayList<CompletableFuture<Boolean>>();
+		for (Job job : jobs) {
+			if (job != null && !job.onFinished().isDone())
+				futures.add(job.onFinished());
+		}
+		if (futures.isEmpty()) {
+			startJob(true, false, curJobKey);
+			return;
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).whenComplete((r, e) -> {
+			if (curJobKey.doItOnServer) {
+				startJob(true, false, curJobKey);
+			} else {
+				SwingUtilities.invokeLater(() -> startJob(true, false, curJobKey));
+			}
+		});
+	}
+
+	/**
+	 * Method to get future which is completed when this Job is finished. The
+	 * value is true if doIt terminated normally. Job started on server side
+	 * is finished when doIt is finished, Job started on client side is
+	 * finished when doIt is finished or, with remote server, after terminateIt.
+	 * Dependent actions run in the thread which finished the Job, so they
+	 * should be short, for example starting of next Job.
+	 * 
+	 * @return future of this Job
+	 */
+	public synchronized CompletableFuture<Boolean> onFinished() {
+		if (completion == null)
+			completion = new CompletableFuture<Boolean>();
+		return completion;
+	}
     
     protected void showSnapshot() {
         assert ejob.jobType == Type.CHANGE;
@@ -225,6 +225,7 @@ public class ServerJobManager {
         } finally {
             unlock();
         }
+        completeJobs(ejob);
     }
 
     void setProgress(EJob ejob, String progress) {
@@ -507,6 +508,20 @@ public class ServerJobManager {
         } finally {
             unlock();
         }
+        completeJobs(finishedEJob);
+    }
+
+    /**
+     * Complete futures of Jobs of finished EJob. Called without lock, because
+     * dependent actions may start new Jobs.
+     */
+    private static void completeJobs(EJob finishedEJob) {
+        if (finishedEJob.serverJob != null) {
+            finishedEJob.serverJob.onFinished().complete(finishedEJob.doItOk);
+        }
+        if (finishedEJob.clientJob != null) {
+            finishedEJob.clientJob.onFinished().complete(finishedEJob.doItOk);
+        }
     }
 
     /*private*/ static class UserInterfaceRedirect implements UserInterface {
@@ -21,25 +21,24 @@ package com.sun.electric.tool.autotracing;
 
 import java.io.IOException;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.FileReader;
 import java.io.BufferedReader;
 
 import javax.swing.JOptionPane;
+import java.awt.GraphicsEnvironment;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import java.util.regex.Pattern;
 
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.Job;
-import com.sun.electric.database.topology.ArcInst;
 import com.sun.electric.database.topology.NodeInst;
-import com.sun.electric.database.topology.Connection;
-import java.util.HashSet;
 
 /**
  *
@@ -50,6 +49,7 @@ public class Accessory {
     private static long timeStart = 0;
     private static long timeStart2 = 0;
     private static long deltaTime = 0;
+    private static Cell batchCell = null;           // cell traced in batch mode, null in GUI mode
 
     /**
      *
@@ -72,10 +72,16 @@ public class Accessory {
      */
     public static final String CONFIG_PATH;
 
+    /**
+     * Ways of nets from the last successful autotracing.
+     */
+    public static final String ROUTING_PATH;
+
     static {
         PARENT_PATH = setStaticPath();
         CONFIG_WITHOUT_MODELLING_PATH = PARENT_PATH + "/config/wmconfig.txt";
         CONFIG_PATH = PARENT_PATH + "/config/Autotracing.txt";
+        ROUTING_PATH = PARENT_PATH + "/config/routing.trc";
     }
 
     /**
@@ -128,6 +134,11 @@ public class Accessory {
      */
     public static final Integer CB_PATH_LENGTH = 149;
 
+    /**
+     * Pattern of key ports in scheme (n5, o12 ...).
+     */
+    private static final Pattern KEY_PORT_PATTERN = Pattern.compile("[nopqrstuvw]\\d+\\d*");
+
     /**
      * private constructor prohibits creating objects of this class.
      */
@@ -146,28 +157,48 @@ public class Accessory {
     }
 
     /**
-     * Method to append string @text to file @fileName.
+     * Method to show dialog to user
      *
-     * @param fileName
-     * @param text
+     * @param s
      */
-    public static void write(String fileName, String text) {
-        try {
-            try (FileWriter fw = new FileWriter(fileName, true)) {
-                fw.write(text + "\n");
-            }
-        } catch (IOException ioe) {
-            System.err.println("IOException: " + ioe.getMessage());
+    public static void showMessage(String s) {
+        if (isBatchMode()) {
+            System.out.println("Autotracing: " + s);
+            return;
         }
+        JOptionPane.showMessageDialog(null, s);
     }
 
     /**
-     * Method to show dialog to user
+     * Method to check if autotracing is run without display, messages are
+     * printed instead of dialogs in this mode.
      *
-     * @param s
+     * @return
      */
-    public static void showMessage(String s) {
-        JOptionPane.showMessageDialog(null, s);
+    public static boolean isBatchMode() {
+        return (batchCell != null) || GraphicsEnvironment.isHeadless();
+    }
+
+    /**
+     * Method to set cell traced in batch mode.
+     *
+     * @param cell null to return to GUI mode.
+     */
+    static void setBatchCell(Cell cell) {
+        batchCell = cell;
+    }
+
+    /**
+     * Method to get cell for autotracing, it is cell of batch mode or current
+     * cell of user interface.
+     *
+     * @return
+     */
+    public static Cell getCurrentCell() {
+        if (batchCell != null) {
+            return batchCell;
+        }
+        return Job.getUserInterface().getCurrentCell();
     }
 
     /**
@@ -181,6 +212,35 @@ public class Accessory {
         }
     }
 
+    /**
+     * Method to get temporary file for new content of file, it is written near
+     * file and replaces it by replaceFile().
+     *
+     * @param file
+     * @return
+     */
+    static File getTempFile(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Method to replace file by temporary file. File isn't rewritten in place
+     * because it may be still mapped by reader, rewriting of mapped file fails
+     * on Windows.
+     *
+     * @param temp
+     * @param file
+     * @throws IOException
+     */
+    static void replaceFile(File temp, File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            temp.delete();
+            throw ioe;
+        }
+    }
+
     /**
      * Method to recreate file with @fileName.
      *
@@ -312,7 +372,7 @@ public class Accessory {
      * @return
      */
     public static int parsePortToKey(String port1, String port2) {
-        Pattern p = Pattern.compile("[nopqrstuvw]\\d+\\d*");
+        Pattern p = KEY_PORT_PATTERN;
         if (p.matcher(port1).matches()) {
             String key = port1.substring(1, port1.length());
             if (Integer.valueOf(key) % 2 == 0) {
@@ -449,7 +509,16 @@ public class Accessory {
      * @return
      */
     public static NodeInst[] getStartingNodeInst() {
-        Cell curcell = Job.getUserInterface().getCurrentCell();
+        return getStartingNodeInst(getCurrentCell());
+    }
+
+    /**
+     * Method to get array of INPUT-like chain (PADDR.PX1-6) of cell.
+     *
+     * @param curcell
+     * @return
+     */
+    public static NodeInst[] getStartingNodeInst(Cell curcell) {
         Iterator<NodeInst> itr = curcell.getNodes();
         ArrayList<NodeInst> inputList = new ArrayList<>();
         while (itr.hasNext()) {
@@ -465,86 +534,13 @@ public class Accessory {
     }
 
     /**
-     * Method to get all connected ports using one PortInst.
+     * Method to get all connected ports using one PortInst, ports are taken
+     * from Netlist based connectivity of cell.
      *
      * @param pi
-     * @param usedPortList
      * @return
      */
-    public static PortInst[] getNearByPortInsts(PortInst pi, HashSet<String> usedPortList) {
-        PortInst[] a = new PortInst[0];
-        ArrayList<PortInst> portList = new ArrayList<>();
-        Iterator<Connection> itr = pi.getConnections();
-        // can't be sure in this for testing...
-        if (!itr.hasNext()) {
-            return a;
-        }
-        Connection cntn = itr.next();
-        ArcInst ai = cntn.getArc();
-        if ((!ai.getPortInst(0).toString().contains("Wire_Pin")) && (!ai.getPortInst(1).toString().contains("Wire_Pin"))) {
-            if (ai.getPortInst(0).toString().equals(pi.toString())) {
-                portList.add(ai.getPortInst(1));
-            } else {
-                portList.add(ai.getPortInst(0));
-            }
-            a = portList.toArray(a);
-            return a;
-        }
-        if (ai.getPortInst(0).toString().equals(pi.toString())) {
-            if (!ai.getPortInst(1).toString().contains("Wire_Pin")) {
-                portList.add(ai.getPortInst(1));
-                a = portList.toArray(a);
-                return a;
-            }
-            findNext(ai, ai.getPortInst(1), portList, usedPortList);
-        } else {
-            if (!ai.getPortInst(0).toString().contains("Wire_Pin")) {
-                portList.add(ai.getPortInst(1));
-                a = portList.toArray(a);
-                return a;
-            }
-            findNext(ai, ai.getPortInst(0), portList, usedPortList);
-        }
-
-        a = portList.toArray(a);
-        return a;
-    }
-
-    /**
-     * Internal method to implement getNearByPortInsts method.
-     */
-    private static void findNext(ArcInst ais, PortInst pis, ArrayList<PortInst> portList, HashSet<String> usedPortList) {
-        Iterator<Connection> itr = pis.getConnections();
-        while (itr.hasNext()) {
-            int head = 0;
-            ArcInst ai = itr.next().getArc();
-            if (ai.toString().equals(ais.toString())) {
-                continue;
-            }
-            PortInst thisPort = ai.getPortInst(0);
-            PortInst thisPortNot = ai.getPortInst(1);
-            if (pis.toString().equals(thisPort.toString())) {
-                head = 1;
-            }
-
-            if (head == 1) {
-                if (!thisPortNot.toString().contains("Wire_Pin")) {
-                    if (!usedPortList.contains(thisPortNot)) {
-                        portList.add(thisPortNot);
-                    }
-
-                } else {
-                    findNext(ai, thisPortNot, portList, usedPortList);
-                }
-            } else {
-                if (!thisPort.toString().contains("Wire_Pin")) {
-                    if (!usedPortList.contains(thisPort)) {
-                        portList.add(thisPort);
-                    }
-                } else {
-                    findNext(ai, thisPort, portList, usedPortList);
-                }
-            }
-        }
+    public static PortInst[] getNearByPortInsts(PortInst pi) {
+        return Connectivity.getConnectivity(pi.getNodeInst().getParent()).getNearByPortInsts(pi);
     }
 }
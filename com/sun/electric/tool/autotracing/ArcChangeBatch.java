@@ -0,0 +1,123 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: ArcChangeBatch.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.PortInst;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.technologies.Generic;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.user.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class for "ArcChangeBatch", class collects all arcs which should be created
+ * or replaced by import or export of keys and changes them in one Job, so
+ * there is only one database change, one undo step and one redisplay.
+ */
+public class ArcChangeBatch extends Job {
+
+    static final long serialVersionUID = 0;
+
+    private final List<PortInst> heads = new ArrayList<>();        // first ports of new arcs
+    private final List<PortInst> tails = new ArrayList<>();        // second ports of new arcs
+    private final List<Double> widths = new ArrayList<>();         // widths of new arcs
+    private final List<ArcInst> replaced = new ArrayList<>();      // arcs to change in order of adding
+    private final List<Boolean> replacedRed = new ArrayList<>();   // true if arc is replaced with universal arc
+    private final String jobName;
+    private final long creationTime;
+
+    /**
+     * Constructor: empty batch, job is started by start().
+     *
+     * @param jobName
+     */
+    public ArcChangeBatch(String jobName) {
+        super(jobName, User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
+        this.jobName = jobName;
+        creationTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Method to add universal arc between two ports.
+     *
+     * @param firstPort
+     * @param secondPort
+     * @param size
+     */
+    public void addArc(PortInst firstPort, PortInst secondPort, double size) {
+        heads.add(firstPort);
+        tails.add(secondPort);
+        widths.add(size);
+    }
+
+    /**
+     * Method to add arcs those should be made thinner, red arcs are also
+     * replaced with universal arc.
+     *
+     * @param arcs
+     * @param isRed
+     */
+    public void addReplacement(Collection<ArcInst> arcs, boolean isRed) {
+        for (ArcInst ai : arcs) {
+            replaced.add(ai);
+            replacedRed.add(isRed);
+        }
+    }
+
+    /**
+     * Method to start job with all collected changes.
+     */
+    public void start() {
+        System.out.println(jobName + ": " + heads.size() + " new arcs, " + replaced.size()
+                + " changed arcs collected in " + (System.currentTimeMillis() - creationTime) + " ms");
+        startJob();
+    }
+
+    @Override
+    public boolean doIt() throws JobException {
+        long start = System.currentTimeMillis();
+        EditingPreferences ep = EditingPreferences.getInstance();
+        ArcProto arc = Generic.tech().universal_arc;
+        for (int i = 0; i < heads.size(); i++) {
+            ArcInst newArc = ArcInst.makeInstance(arc, ep, heads.get(i), tails.get(i));
+            newArc.setLambdaBaseWidth(widths.get(i));
+        }
+        long created = System.currentTimeMillis();
+        for (int i = 0; i < replaced.size(); i++) {
+            ArcInst ai = replaced.get(i);
+            if (!ai.getProto().getName().equals(arc.getName())) {
+                ai.setLambdaBaseWidth(0.5);
+            }
+            if (replacedRed.get(i)) {
+                ai.replace(arc, ep);
+                ai.setLambdaBaseWidth(1);
+            }
+        }
+        long finish = System.currentTimeMillis();
+        System.out.println(jobName + ": arcs created in " + (created - start) + " ms, replaced in " + (finish - created) + " ms");
+        return true;
+    }
+}
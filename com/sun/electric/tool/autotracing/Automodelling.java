@@ -27,15 +27,18 @@ import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.variable.Variable;
 
 import java.util.Iterator;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.FileWriter;
 
-import java.util.concurrent.TimeUnit;
 
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.io.output.Spice;
 import com.sun.electric.tool.user.User;
+import com.sun.electric.util.TextUtils;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.regex.Pattern;
@@ -59,6 +62,12 @@ public class Automodelling {
      */
     public static final String AUTOTRACING_CELL_NAME = CELL_NAME + "_autotracing";
 
+    /**
+     * File with SPICE cards of sources found by autotracing, it is deck
+     * section of autotracing cell.
+     */
+    public static final String SOURCES_PATH = Accessory.PATH + "/autotracing/" + AUTOTRACING_CELL_NAME + "_sources.sp";
+
     /**
      * Private constructor to avoid creating objects of this class.
      */
@@ -68,9 +77,12 @@ public class Automodelling {
 
     /**
      * Method creates object of class with function of preparing model scheme.
+     * Job is started when duplication of scheme is finished.
+     *
+     * @param duplicate Job which duplicates scheme to autotracing cell.
      */
-    public static void modelScheme() {
-        new CreateNewAutotracingSchemeAndImport();
+    public static void modelScheme(Job duplicate) {
+        new CreateNewAutotracingSchemeAndImport().startJobAfter(duplicate);
     }
 
     /**
@@ -147,12 +159,13 @@ public class Automodelling {
                             int newNum = (numInt / 2) - 1;
                             Integer value = Accessory.explainSPMLetter(letter);
                             Integer result = SPMnumber + value + newNum;
-                            Accessory.write(Accessory.CONFIG_PATH, (String.valueOf(result)));
+                            KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).addKey(result);
                         }
                     }
                 }
             }
         }
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).flush();
     }
 
     /**
@@ -162,28 +175,13 @@ public class Automodelling {
     private static class CreateNewAutotracingSchemeAndImport extends Job {
 
         private Cell cell;
-        private Job job;
 
         public CreateNewAutotracingSchemeAndImport() {
             super("Create New Autotracing Scheme And Import", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            startJob();
         }
 
         @Override
         public boolean doIt() throws JobException {
-            Iterator<Job> itrJob = Job.getAllJobs();
-            while (itrJob.hasNext()) {
-                job = itrJob.next();
-                if (job.toString().contains("Duplicate")) {
-                    while (!job.isFinished()) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(100);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
             this.cell = Automodelling.getCellFromName(AUTOTRACING_CELL_NAME);
             try {
                 ImportKeys.controller(cell);
@@ -203,40 +201,70 @@ public class Automodelling {
             return true;
         }
 
+        /**
+         * Method to get path of file relative to directory of library of
+         * cell, so library can be moved with autotracing directory. Absolute
+         * path is used if library isn't saved yet or file is on another drive.
+         */
+        private static String getLibraryRelativePath(Cell cell, File file) {
+            String libraryPath = TextUtils.getFilePath(cell.getLibrary().getLibFile());
+            if (libraryPath.isEmpty()) {
+                return file.getAbsolutePath();
+            }
+            try {
+                String relative = new File(libraryPath).getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString();
+                return relative.replace(File.separatorChar, '/');
+            } catch (IllegalArgumentException e) {
+                return file.getAbsolutePath();
+            }
+        }
+
+        /**
+         * Method to write sources as deck section of cell. Cards are streamed
+         * to SOURCES_PATH and cell keeps only name of file relative to
+         * library, Spice copies file into deck. Parameters of "sourcesD" node are cleared, so sources
+         * are not written twice.
+         */
         private static void addSourcesToSchemeAsSpiceCode(Cell cell) {
             ArrayList<String> sourceList = AuxilarySimpleAutotracing.getAuxilaryOnlyObject().getSourceCodes();
             if (sourceList.isEmpty()) {
                 return;
-            } else {
-                NodeInst sourceNode = null;
-                Iterator<NodeInst> itrNod = cell.getNodes();
-                while (itrNod.hasNext()) {
-                    NodeInst ni = itrNod.next();
-                    if (ni.toString().contains("sourcesD")) {
-                        sourceNode = ni;
-                        break;
-                    }
+            }
+            File deck = new File(SOURCES_PATH);
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(deck))) {
+                for (String source : sourceList) {
+                    writer.write(source);
+                    writer.newLine();
                 }
-                if (sourceNode != null) {
-                    String output = "";
-                    for (String source : sourceList) {
-                        output += source;
-                        output += "\n";
-                    }
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                return;
+            }
+            System.out.println("Sources: " + sourceList.size() + " cards, " + deck.length() + " bytes written to " + deck);
 
-                    EditingPreferences ep = EditingPreferences.getInstance();
-                    Iterator<Variable> itrVar = sourceNode.getParametersAndVariables(); // Shouldn't be iterator here coz only 1 parameter, did it to develop after
-                    while (itrVar.hasNext()) {
-                        Variable var = itrVar.next();
-                        sourceNode.updateVar(var.getKey(), output, ep);
-                    }
+            EditingPreferences ep = EditingPreferences.getInstance();
+            cell.newVar(Spice.SPICE_DECK_SECTION_KEY, getLibraryRelativePath(cell, deck), ep);
+            NodeInst sourceNode = null;
+            Iterator<NodeInst> itrNod = cell.getNodes();
+            while (itrNod.hasNext()) {
+                NodeInst ni = itrNod.next();
+                if (ni.toString().contains("sourcesD")) {
+                    sourceNode = ni;
+                    break;
+                }
+            }
+            if (sourceNode != null) {
+                Iterator<Variable> itrVar = sourceNode.getParametersAndVariables(); // Shouldn't be iterator here coz only 1 parameter, did it to develop after
+                while (itrVar.hasNext()) {
+                    Variable var = itrVar.next();
+                    sourceNode.updateVar(var.getKey(), "", ep);
                 }
             }
         }
 
         private void addModellingParametersToModelScheme(Cell autoCell) {
 
-            Cell basicCell = Job.getUserInterface().getCurrentCell();
+            Cell basicCell = Accessory.getCurrentCell();
 
             NodeInst paramNode_1 = null;
             NodeInst paramNode_2 = null;
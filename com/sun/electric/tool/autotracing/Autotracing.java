@@ -24,9 +24,17 @@ import java.io.File;
 import java.io.BufferedReader;
 import java.io.FileReader;
 
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
 import com.sun.electric.tool.Tool;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.input.LibraryFiles;
+import com.sun.electric.tool.user.dialogs.OpenFile;
+import com.sun.electric.util.TextUtils;
+import java.net.URL;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
@@ -73,7 +81,7 @@ public class Autotracing extends Tool {
      */
     public static void makePathOrClean() throws FunctionalException {
         File startingPointFile = new File(Accessory.POINTS_PATH);
-        Accessory.cleanFile(Accessory.CONFIG_PATH);
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).clear();
         if (Accessory.getStringCount(startingPointFile) != 2) {
             Accessory.cleanFile(Accessory.POINTS_PATH);
             try {
@@ -126,6 +134,66 @@ public class Autotracing extends Tool {
         makeObject = new MakeTrace();
     }
 
+    /**
+     * Method to trace cell without display, it is entry point of batch mode.
+     * Method should be called from Job which may change database, for example
+     * from bean shell script of "-batch -s script" startup:
+     * <pre>
+     * com.sun.electric.tool.autotracing.Autotracing.traceInBatch("scheme.jelib", "scheme{sch}", "metrics.json");
+     * </pre>
+     * Configuration files are written as after usual autotracing, modelling
+     * isn't started. Metrics are written as JSON object: time of phases in ms,
+     * searches, settled nodes, heap operations, retries and keys used.
+     *
+     * @param libraryPath path to library file, library is read if it isn't
+     * opened yet.
+     * @param cellName name of cell in library, for example "scheme{sch}".
+     * @param metricsPath path to JSON file with metrics, null to print
+     * metrics only.
+     * @return true if all nets are traced.
+     */
+    public static boolean traceInBatch(String libraryPath, String cellName, String metricsPath) {
+        long start = System.currentTimeMillis();
+        URL libraryURL = TextUtils.makeURLToFile(libraryPath);
+        Library lib = Library.findLibrary(TextUtils.getFileNameWithoutExtension(libraryURL));
+        if (lib == null) {
+            FileType type = OpenFile.getOpenFileType(libraryPath, FileType.DEFAULTLIB);
+            lib = LibraryFiles.readLibrary(EditingPreferences.getInstance(), libraryURL, null, type, false);
+        }
+        if (lib == null) {
+            System.out.println("Autotracing: can't read library " + libraryPath);
+            return false;
+        }
+        Cell cell = lib.findNodeProto(cellName);
+        if (cell == null) {
+            System.out.println("Autotracing: there is no cell " + cellName + " in library " + lib.getName());
+            return false;
+        }
+        long loaded = System.currentTimeMillis();
+
+        boolean traced;
+        Accessory.setBatchCell(cell);
+        try {
+            traced = SimpleAutotracing.getSimpleAutotracing().startBatchTrace(cell);
+        } finally {
+            Accessory.setBatchCell(null);
+        }
+        TracingMetrics.addPhase("library", start, loaded);
+        TracingMetrics.addPhase("total", start);
+        int keysUsed = KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).getKeys().length;
+        System.out.println("Autotracing of " + cell.libDescribe() + (traced ? " completed" : " failed")
+                + ": " + keysUsed + " keys, " + TracingMetrics.getRetries() + " retries, "
+                + (System.currentTimeMillis() - start) + " ms");
+        if (metricsPath != null) {
+            try {
+                TracingMetrics.writeJson(new File(metricsPath), cell.libDescribe(), traced, keysUsed);
+            } catch (IOException ioe) {
+                System.err.println("IOException: " + ioe.getMessage());
+            }
+        }
+        return traced;
+    }
+
     /**
      * Link to getAdvice method
      */
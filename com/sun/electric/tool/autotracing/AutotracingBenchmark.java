@@ -0,0 +1,248 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: AutotracingBenchmark.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.tool.util.concurrent.patterns.PForJob;
+import com.sun.electric.tool.util.concurrent.patterns.PForTask;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * This class measures autotracing engine on synthetic chips of growing size
+ * made by TraceGenerator: import of global graph, build of CB links matrix,
+ * one-net deikstra, the same searches from several first chains in thread
+ * pool and full autotracing of scheme cell. Every benchmark is run several times without
+ * measurement, then median, min and max times of measured runs are printed
+ * one line per benchmark, so results of two versions can be compared.
+ * Benchmarks should be run from bean shell script of "-batch -s script"
+ * startup:
+ * <pre>
+ * com.sun.electric.tool.autotracing.AutotracingBenchmark.run("bench", new int[]{8, 16, 32}, 10, null, null);
+ * </pre>
+ * Searches use CB template of installation (AutotraCB.trc), because CB is the
+ * same in every chip. Searches run inside autotracing attempt, so keys found
+ * by them go to detached configurations and never to configuration files.
+ * Full autotracing runs without incremental tracing, so every run traces all
+ * nets, and configuration files and routing history it writes are restored
+ * from scratch copies before every run and at the end.
+ */
+public final class AutotracingBenchmark {
+
+    private static final int WARMUP = 3;                            // runs before measurement
+    private static final int PARALLEL_SEARCHES = 16;                // first chains of parallel deikstra
+
+    /**
+     * Interface of one measured run.
+     */
+    private interface Benchmark {
+
+        void run() throws IOException;
+
+        /**
+         * Method to prepare the next run, it isn't measured.
+         *
+         * @throws IOException
+         */
+        default void reset() throws IOException {
+        }
+    }
+
+    /**
+     * private constructor prohibits creating objects of this class.
+     */
+    private AutotracingBenchmark() {
+    }
+
+    /**
+     * Method to generate synthetic chips and run all benchmarks.
+     *
+     * @param directory directory for synthetic chips.
+     * @param sizes sizes of chips, chip of size n has n x n CBs.
+     * @param iterations number of measured runs of every benchmark.
+     * @param libraryPath library with scheme for full autotracing, null to skip
+     * it.
+     * @param cellName scheme cell for full autotracing.
+     * @throws IOException
+     */
+    public static void run(String directory, int[] sizes, int iterations, String libraryPath, String cellName) throws IOException {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        File dir = new File(directory);
+        TraceGenerator.generate(dir, sizes);
+        System.out.println("benchmark\tsize\tmedian ms\tmin ms\tmax ms");
+
+        final File templateFile = TraceGenerator.getTemplateFile(dir);
+        measure("cbLinksMatrix", 1, iterations, new Benchmark() {
+            @Override
+            public void run() throws IOException {
+                CBTemplate.importFrom(templateFile);
+            }
+        });
+
+        if (!new File(Accessory.CB_PATH).exists()) {
+            System.out.println("There is no " + Accessory.CB_PATH + ", searches are not measured.");
+        } else {
+            for (int size : sizes) {
+                runGraphBenchmarks(TraceGenerator.getGraphFile(dir, size), size, iterations);
+            }
+        }
+
+        if (libraryPath != null) {
+            measureTrace(new File(dir, "trace"), libraryPath, cellName, iterations);
+        }
+    }
+
+    /**
+     * Method to measure full autotracing of scheme cell. Incremental tracing
+     * is switched off, so runs don't replay ways of the previous run. Files
+     * written by autotracing are copied to scratch directory before
+     * measurement, every run starts from these copies and files of user are
+     * restored from them at the end.
+     */
+    private static void measureTrace(File scratch, final String libraryPath, final String cellName, int iterations) throws IOException {
+        if (!scratch.isDirectory() && !scratch.mkdirs()) {
+            throw new IOException("Can't create directory " + scratch);
+        }
+        final File[] files = {new File(Accessory.CONFIG_PATH), new File(Accessory.CONFIG_WITHOUT_MODELLING_PATH),
+            new File(Accessory.ROUTING_PATH)};
+        final File[] copies = new File[files.length];
+        for (int i = 0; i < files.length; i++) {
+            copies[i] = new File(scratch, files[i].getName());
+            copyFile(files[i], copies[i]);
+        }
+        boolean incremental = Constants.isIncrementalTracing();
+        Constants.setIncrementalTracing(false);
+        try {
+            measure("makeTrace", 1, iterations, new Benchmark() {
+                @Override
+                public void run() {
+                    Autotracing.traceInBatch(libraryPath, cellName, null);
+                }
+
+                @Override
+                public void reset() throws IOException {
+                    for (int i = 0; i < files.length; i++) {
+                        copyFile(copies[i], files[i]);
+                    }
+                }
+            });
+        } finally {
+            Constants.setIncrementalTracing(incremental);
+            for (int i = 0; i < files.length; i++) {
+                copyFile(copies[i], files[i]);
+            }
+            RoutingHistory.dropHistory();                           // ways of benchmark are kept only in memory now
+        }
+    }
+
+    /**
+     * Method to copy file, target is deleted if there is no source file.
+     */
+    private static void copyFile(File source, File target) throws IOException {
+        if (source.exists()) {
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(target.toPath());
+        }
+    }
+
+    /**
+     * Method to measure import and searches on one synthetic global graph.
+     */
+    private static void runGraphBenchmarks(final File graphFile, int size, int iterations) throws IOException {
+        measure("graphImport", size, iterations, new Benchmark() {
+            @Override
+            public void run() {
+                new NonOrientedGlobalGraph("Benchmark", graphFile);
+            }
+        });
+
+        final NonOrientedGlobalGraph graph = new NonOrientedGlobalGraph("Benchmark", graphFile);
+        final int chains = graph.getChainCount();
+        for (int i = 0; i < chains; i++) {
+            if (graph.getCBCount(i) == 0) {
+                throw new IllegalStateException(graphFile + ": chain " + i + " isn't connected to CB");
+            }
+        }
+        final TracingAttempt attempt = new TracingAttempt(0, graph, null, new NodeInst[0]);
+        attempt.enter();
+        try {
+            measure("deikstra", size, iterations, new Benchmark() {
+                @Override
+                public void run() {
+                    graph.searchWay(0, chains - 1);
+                }
+            });
+            measure("searchWayParallel", size, iterations, new Benchmark() {
+                @Override
+                public void run() {
+                    PForJob<BlockedRange1D> job = new PForJob<>(new BlockedRange1D(0, PARALLEL_SEARCHES, 1), new PForTask<BlockedRange1D>() {
+                        @Override
+                        public void execute() {
+                            attempt.enter();
+                            try {
+                                for (int i = range.start(); i < range.end(); i++) {
+                                    graph.searchWay((int) ((long) i * chains / PARALLEL_SEARCHES), chains - 1);
+                                }
+                            } finally {
+                                attempt.exit();
+                            }
+                        }
+                    }, SimpleAutotracing.getThreadPool());
+                    job.execute();
+                }
+            });
+        } finally {
+            attempt.exit();
+            SimpleAutotracing.shutdownThreadPool();
+        }
+    }
+
+    /**
+     * Method to run benchmark WARMUP times without measurement and iterations
+     * times with measurement, result is printed.
+     */
+    private static void measure(String name, int size, int iterations, Benchmark benchmark) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            benchmark.reset();
+            benchmark.run();
+        }
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            benchmark.reset();
+            long start = System.nanoTime();
+            benchmark.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.println(name + "\t" + size + "\t" + toMillis(times[iterations / 2]) + "\t" + toMillis(times[0])
+                + "\t" + toMillis(times[iterations - 1]));
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+}
@@ -49,16 +49,29 @@ public class AuxilarySimpleAutotracing {
     private static AuxilarySimpleAutotracing auxisa;
     
 
-    private AuxilarySimpleAutotracing() {           
+    AuxilarySimpleAutotracing() {
     }
 
     public static AuxilarySimpleAutotracing getAuxilaryOnlyObject() {
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            return attempt.getAuxilary();
+        }
         if (auxisa == null) {
             auxisa = new AuxilarySimpleAutotracing();
         }
         return auxisa;
     }
 
+    /**
+     * Method to make object of winning autotracing attempt the only object.
+     *
+     * @param winner
+     */
+    static void install(AuxilarySimpleAutotracing winner) {
+        auxisa = winner;
+    }
+
     public void resetAuxilary() {
         SPMList = new HashSet<>();
         sourceList = new ArrayList<>();
@@ -78,7 +91,6 @@ public class AuxilarySimpleAutotracing {
     public String dealWithBlock(NodeInst ni, PortInst pi) throws IOException, StepFailedException, FunctionalException {
         blockMap = BlockMapForGraph.getBlockMapForGraph();
         String name = ni.toString();
-        int indexName, indexPin;
         String parameter = null;
         String shortName = name.substring(name.indexOf(":") + 1, name.lastIndexOf("{"));
         String shortNamePin = "";
@@ -127,25 +139,11 @@ public class AuxilarySimpleAutotracing {
                     break;
 
                 case "REF":
-                    for (BlockMapForGraph.ListPin nameElement : blockMap.getList()) {
-                        if (nameElement.getName().equals(shortName)) {
-                            str = nameElement.getStr().get(0);
-                            break;
-                        }
-                    }
-                    return str;
                 case "VSS":
-                    for (BlockMapForGraph.ListPin nameElement : blockMap.getList()) {
-                        if (nameElement.getName().equals(shortName)) {
-                            str = nameElement.getStr().get(0);
-                            break;
-                        }
-                    }
+                    str = blockMap.getFirstAddress(shortName);
                     return str;
                 default:
-                    indexName = blockMap.searchIndexName(shortName, blockMap.getList());
-                    indexPin = blockMap.searchIndexPin(shortNamePin, blockMap.getList().get(indexName).getPin());
-                    str = blockMap.getList().get(indexName).getStr().get(indexPin);
+                    str = blockMap.getAddress(shortName, shortNamePin);
                     break;
             }
             assert str != null;
@@ -582,7 +580,7 @@ public class AuxilarySimpleAutotracing {
     public void addKey(String ni, int number) {
         String absNum = ni.substring(ni.indexOf("<") + 1, ni.lastIndexOf("."));
         int resultKey = Integer.valueOf(absNum) + number;
-        Accessory.write(Accessory.CONFIG_PATH, (String.valueOf(resultKey)));
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).addKey(resultKey);
     }
 
     /**
@@ -705,13 +703,12 @@ public class AuxilarySimpleAutotracing {
      * Method to get SpiceCode from inout source port and inout parameter.
      */
     public void addSourceWithSpiceCode(PortInst port, String inoutNumber) throws FunctionalException {
-        HashSet<String> emptyList = new HashSet<>();
         if (port == null) {
             Accessory.showMessage("One of inputs doesn't have source.");
             throw new FunctionalException("Incorrect parameters values in CAU/PAU block.");
             /*throw new Exception("One of inputs doesn't have source.");*/
         }
-        PortInst[] piArr = Accessory.getNearByPortInsts(port, emptyList);
+        PortInst[] piArr = Accessory.getNearByPortInsts(port);
         for (PortInst pi : piArr) {
             if (!pi.toString().equals(port.toString())) {
                 handleSource(pi, inoutNumber);
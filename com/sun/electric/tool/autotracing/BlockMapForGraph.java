@@ -21,26 +21,48 @@ package com.sun.electric.tool.autotracing;
 
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * This class serves to unite blocks and real pin names.
+ * This class serves to unite blocks and real pin names. Map is read from
+ * autotracingMap.trcf to hash table of blocks, every block keeps arrays of
+ * pins and real pin names. Map is also stored in binary file near text map
+ * and is read from there while text map is not changed.
  */
 public class BlockMapForGraph {
 
-    public ArrayList<ListPin> list; //stores data from a file
+    private static final String MAP_PATH = "autotracingMap.trcf";
+    private static final String BINARY_MAP_PATH = MAP_PATH + ".bin";
+    private static final int BINARY_MAGIC = 0x424D4150;           // "BMAP"
+    private static final int BINARY_VERSION = 1;
+
+    private Map<String, PinTable> pinTables = new HashMap<>();     // short name of block -> pins of block
+    private List<String> blockOrder = new ArrayList<>();           // short names in order of map file
+    private String firstName;                                      // the first block of map file
     private static BlockMapForGraph blockMap;
-    private static AuxilarySimpleAutotracing auxisa;
     private boolean checkFile;
 
     private BlockMapForGraph() {
-        auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         checkingFile();
         if (checkFile) {
             try {
@@ -52,7 +74,7 @@ public class BlockMapForGraph {
 
     }
 
-    public static BlockMapForGraph getBlockMapForGraph() {
+    public static synchronized BlockMapForGraph getBlockMapForGraph() {
         if (blockMap == null) {
             blockMap = new BlockMapForGraph();
         }
@@ -353,6 +375,7 @@ public class BlockMapForGraph {
      * @return nambe real Pin String str
      */
     public String getAdrForInput(NodeInst ni) throws FunctionalException, IOException {
+        AuxilarySimpleAutotracing auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         String str = null;
         Iterator<PortInst> itrPi = ni.getPortInsts();
         while (itrPi.hasNext()) {
@@ -379,6 +402,7 @@ public class BlockMapForGraph {
      * @return nambe real Pin String str
      */
     public String getAdrForOutput(NodeInst ni) throws FunctionalException, IOException {
+        AuxilarySimpleAutotracing auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         String str = null;
         str = "PAD";
         if (auxisa.getPaddrVariableValue(ni) != null) {
@@ -428,6 +452,7 @@ public class BlockMapForGraph {
     *returns real Pin number
      */
     public String getAdrForCap(String shortNamePin, PortInst pi, String parameter) throws StepFailedException {
+        AuxilarySimpleAutotracing auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         String str = null;
         if (pi == null) {//check
             throw new StepFailedException("Null reference in dealWithBlock.");
@@ -471,6 +496,7 @@ public class BlockMapForGraph {
     *returns real Pin number
      */
     public String getAdrForRes(String shortNamePin, PortInst pi, String parameter) throws FunctionalException {
+        AuxilarySimpleAutotracing auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         String str = null;
         parameter = auxisa.getParameter(pi.getNodeInst().toString());
         if (parameter != null) {
@@ -541,98 +567,173 @@ public class BlockMapForGraph {
         throw new FunctionalException("Precision resistors don't work.");
     }
 
-    /*
-    *This method returns collection objects of file 
-    * objects type ListPin
+    /**
+     * Method to get the first address of block, it is used for blocks with
+     * one pin like REF and VSS.
+     *
+     * @param shortName
+     * @return real pin name, null if there is no such block in map.
+     */
+    public String getFirstAddress(String shortName) {
+        PinTable table = pinTables.get(shortName);
+        return (table == null) ? null : table.addresses[0];
+    }
+
+    /**
+     * Method to get address of pin of block. Unknown block is looked for as
+     * the first block of map and unknown pin as the first pin of block, as it
+     * was done by linear search before.
+     *
+     * @param shortName
+     * @param shortNamePin
+     * @return real pin name, null if map is empty.
      */
-    private ArrayList<ListPin> read() throws FileNotFoundException, IOException {
-        ArrayList<ListPin> collectionObjectFile = new ArrayList<>();
-        File myfile = new File("autotracingMap.trcf");
-        FileReader fr = new FileReader(myfile);
-        BufferedReader reader = new BufferedReader(fr);
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] say = line.split(" ");
-            if ((!Search(say[0], collectionObjectFile)) || (collectionObjectFile.size() == 0)) {
-                ListPin say1 = new ListPin(say[0], say[1], say[2]);
-                collectionObjectFile.add(say1);
-            } else {
-                collectionObjectFile.get(searchIndexName(say[0], collectionObjectFile)).pin.add(say[1]);
-                collectionObjectFile.get(searchIndexName(say[0], collectionObjectFile)).str.add(say[2]);
+    public String getAddress(String shortName, String shortNamePin) {
+        PinTable table = pinTables.get(shortName);
+        if (table == null) {
+            table = pinTables.get(firstName);
+            if (table == null) {
+                return null;
             }
         }
-        return collectionObjectFile;
+        String address = table.pinAddresses.get(shortNamePin);
+        return (address != null) ? address : table.addresses[0];
     }
 
-    /*
-    *This method returns object 
-    * object type ListPin
+    /**
+     * Method to read map, binary map is used while autotracingMap.trcf is not
+     * changed, otherwise text map is read and binary map is written again.
+     *
+     * @throws IOException
      */
-    public ArrayList<ListPin> getList() {
-        return list;
+    public void readerFile() throws IOException {
+        File source = new File(MAP_PATH);
+        File binary = new File(BINARY_MAP_PATH);
+        if (binary.exists()) {
+            try {
+                if (readBinary(binary, source)) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                Accessory.printLog("Binary map is not read: " + e.getMessage());
+            }
+        }
+        readText(source);
+        File temp = Accessory.getTempFile(binary);
+        try {
+            writeBinary(temp, source);
+            Accessory.replaceFile(temp, binary);
+        } catch (IOException ioe) {
+            Accessory.printLog("Binary map is not written: " + ioe.getMessage());
+        }
     }
 
-    /*
-    *This method search equality name objects and shortName 
-    * parametr say  - shortName 
-    * parametr ArrayList<ListPin> collectionObjectFile  - collection object
-    * object type ListPinr
-    * return boolean true or false
-    * true - if there is a coincidence
+    /**
+     * This method reads text map, line is "shortName pin address" type, lines
+     * of one block are collected to arrays of block.
      */
-    public boolean Search(String say, ArrayList<ListPin> collectionObjectFile) {
-        boolean Checking = false;
-        if (say == null) {
-            return Checking;
+    private void readText(File source) throws IOException {
+        Map<String, List<String[]>> lines = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] say = line.split(" ");
+                List<String[]> blockLines = lines.get(say[0]);
+                if (blockLines == null) {
+                    blockLines = new ArrayList<>();
+                    lines.put(say[0], blockLines);
+                }
+                blockLines.add(say);
+            }
         }
-        for (ListPin collectionObjectFile1 : collectionObjectFile) {
-            if (collectionObjectFile1.getName().equals(say)) {
-                Checking = true;
-                break;
+        pinTables = new HashMap<>(lines.size() * 2);
+        firstName = null;
+        for (Map.Entry<String, List<String[]>> e : lines.entrySet()) {
+            List<String[]> blockLines = e.getValue();
+            String[] pins = new String[blockLines.size()];
+            String[] addresses = new String[blockLines.size()];
+            for (int i = 0; i < pins.length; i++) {
+                pins[i] = blockLines.get(i)[1];
+                addresses[i] = blockLines.get(i)[2];
             }
+            addPinTable(e.getKey(), pins, addresses);
         }
-        return Checking;
     }
 
-    /*
-    * This method search index transmitted say 
-    * in the collection
-    * say  - search element
-    * retern int index 
+    /**
+     * This method reads binary map using memory mapped file, returns false
+     * if binary map is made from another text map. Header is checked by usual
+     * reading, so stale binary map isn't mapped while it is written again.
      */
-    public int searchIndexName(String say, ArrayList<ListPin> collectionObjectFile) {
-        int index = 0;
-        for (ListPin collectionObjectFile1 : collectionObjectFile) {
-            if ((collectionObjectFile1.getName().equals(say)) && (say != null)) {
-                index = collectionObjectFile.indexOf(collectionObjectFile1);
-                break;
+    private boolean readBinary(File binary, File source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binary)))) {
+            if ((in.readInt() != BINARY_MAGIC) || (in.readInt() != BINARY_VERSION)
+                    || (in.readLong() != source.lastModified()) || (in.readLong() != source.length())) {
+                return false;                                                      // stale binary map
+            }
+        }
+        try (FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.position(24);                                                      // magic, version and stamps
+            int blockCount = buf.getInt();
+            pinTables = new HashMap<>(blockCount * 2);
+            firstName = null;
+            for (int b = 0; b < blockCount; b++) {
+                String name = readString(buf);
+                String[] pins = new String[buf.getInt()];
+                String[] addresses = new String[pins.length];
+                for (int i = 0; i < pins.length; i++) {
+                    pins[i] = readString(buf);
+                    addresses[i] = readString(buf);
+                }
+                addPinTable(name, pins, addresses);
             }
+            return true;
         }
-        return index;
     }
 
-    /*
-    * This method search index transmitted say 
-    * in the collection
-    * say  - search element
-    * retern int index 
+    /**
+     * This method writes binary map: magic, version, time and length of text
+     * map and blocks in order of text map.
      */
-    public int searchIndexPin(String say, ArrayList<String> collectionObjectFile) {
-        int index = 0;
-        for (String collectionObjectFile1 : collectionObjectFile) {
-            if ((collectionObjectFile1.equals(say)) && (say != null)) {
-                index = collectionObjectFile.indexOf(collectionObjectFile1);
-                break;
+    private void writeBinary(File binary, File source) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binary)))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeLong(source.lastModified());
+            out.writeLong(source.length());
+            out.writeInt(blockOrder.size());
+            for (String name : blockOrder) {
+                PinTable table = pinTables.get(name);
+                writeString(out, name);
+                out.writeInt(table.pins.length);
+                for (int i = 0; i < table.pins.length; i++) {
+                    writeString(out, table.pins[i]);
+                    writeString(out, table.addresses[i]);
+                }
             }
         }
-        return index;
     }
 
-    /*
-    *This method file perform method read, make collection object in the global peremen list
-     */
-    public void readerFile() throws IOException {
-        list = read();
+    private void addPinTable(String name, String[] pins, String[] addresses) {
+        if (firstName == null) {
+            firstName = name;
+            blockOrder = new ArrayList<>();
+        }
+        blockOrder.add(name);
+        pinTables.put(name, new PinTable(pins, addresses));
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
     }
 
     /*
@@ -640,47 +741,28 @@ public class BlockMapForGraph {
      */
     private void checkingFile() {
         checkFile = false;
-        if (new File("autotracingMap.trcf").exists()) {
+        if (new File(MAP_PATH).exists()) {
             checkFile = true;
         }
     }
 
-    /* This class create object which will store
-    * name - String name elsement
-    * pin - ArrsyList<String> collection pin of this element 
-    * str - ArrsyList<String> collection str( real nambe pin) of this element
+    /**
+     * This class keeps pins of one block and real pin names in the same
+     * order as in map file.
      */
-    public class ListPin {
-
-        private String name;
-        private ArrayList<String> pin = new ArrayList<>();
-        private ArrayList<String> str = new ArrayList<>();
-
-        private ListPin(String q, String n, String e) {
-            name = q;
-            pin.add(n);
-            str.add(e);
-        }
-
-        /*
-        * This method return name object
-         */
-        public String getName() {
-            return name;
-        }
-
-        /*
-        * This method return pin collection object
-         */
-        public ArrayList<String> getPin() {
-            return pin;
-        }
-
-        /*
-        * This method return real pin collection object
-         */
-        public ArrayList<String> getStr() {
-            return str;
+    private static final class PinTable {
+
+        private final String[] pins;            // short pin names
+        private final String[] addresses;       // real pin names
+        private final Map<String, String> pinAddresses;     // short pin name -> the first real pin name
+
+        private PinTable(String[] pins, String[] addresses) {
+            this.pins = pins;
+            this.addresses = addresses;
+            pinAddresses = new HashMap<>(pins.length * 2);
+            for (int i = 0; i < pins.length; i++) {
+                pinAddresses.putIfAbsent(pins[i], addresses[i]);
+            }
         }
     }
 }
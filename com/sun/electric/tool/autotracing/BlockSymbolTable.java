@@ -0,0 +1,195 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: BlockSymbolTable.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class interns names of block types ("CB", "PPC", ...) and ports
+ * ("X11", "PX1", ...), so chain entries like "CB<216.X11" are parsed only once
+ * into (blockType, blockIndex, port) integers. Global CB ports are interned
+ * first, so their ids are the same as indexes in links matrix of CB graph.
+ */
+final class BlockSymbolTable {
+
+    /**
+     * Global ports of CB, id of port is the index in this array.
+     */
+    static final String[] GLOBAL_CB_PORTS = {"X11", "X12", "X13", "X14", "X15", "X16", "X21", "X22", "X23", "X24", "X25", "X26",
+        "Y11", "Y12", "Y13", "Y14", "Y15", "Y16", "Y21", "Y22", "Y23", "Y24", "Y25", "Y26",
+        "X", "Y"};
+
+    private static final Map<String, Integer> blockTypeIds = new ConcurrentHashMap<>();
+    private static final List<String> blockTypeNames = new ArrayList<>();
+    private static final Map<String, Integer> portIds = new ConcurrentHashMap<>();
+    private static final List<String> portNames = new ArrayList<>();
+
+    static {
+        for (String port : GLOBAL_CB_PORTS) {
+            internPort(port);
+        }
+    }
+
+    /**
+     * Block type id of CB.
+     */
+    static final int CB = internBlockType("CB");
+
+    /**
+     * private constructor prohibits creating objects of this class.
+     */
+    private BlockSymbolTable() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Method to get id of block type, new id is created for unknown type.
+     *
+     * @param blockType
+     * @return
+     */
+    static synchronized int internBlockType(String blockType) {
+        Integer id = blockTypeIds.get(blockType);
+        if (id == null) {
+            id = blockTypeNames.size();
+            blockTypeNames.add(blockType);
+            blockTypeIds.put(blockType, id);
+        }
+        return id;
+    }
+
+    /**
+     * Method to get id of port, new id is created for unknown port.
+     *
+     * @param port
+     * @return
+     */
+    static synchronized int internPort(String port) {
+        Integer id = portIds.get(port);
+        if (id == null) {
+            id = portNames.size();
+            portNames.add(port);
+            portIds.put(port, id);
+        }
+        return id;
+    }
+
+    /**
+     * Method to get id of port, -1 if port was never interned.
+     *
+     * @param port
+     * @return
+     */
+    static int getPortId(String port) {
+        Integer id = portIds.get(port);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Method to get the number of interned ports.
+     *
+     * @return
+     */
+    static synchronized int getPortCount() {
+        return portNames.size();
+    }
+
+    /**
+     * Method to check if port is one of global CB ports.
+     *
+     * @param port
+     * @return
+     */
+    static boolean isGlobalCBPort(int port) {
+        return (port >= 0) && (port < GLOBAL_CB_PORTS.length);
+    }
+
+    /**
+     * Method to get name of port using it's id.
+     *
+     * @param port
+     * @return
+     */
+    static synchronized String getPortName(int port) {
+        return portNames.get(port);
+    }
+
+    /**
+     * Method to get name of block type using it's id.
+     *
+     * @param blockType
+     * @return
+     */
+    static synchronized String getBlockTypeName(int blockType) {
+        return blockTypeNames.get(blockType);
+    }
+
+    /**
+     * Method to get "CB<216" type of label.
+     *
+     * @param blockType
+     * @param blockIndex
+     * @return
+     */
+    static String getBlockLabel(int blockType, int blockIndex) {
+        if (blockIndex == -1) {
+            return getBlockTypeName(blockType);
+        }
+        return getBlockTypeName(blockType) + "<" + blockIndex;
+    }
+
+    /**
+     * Method to get block number from "CB<216" type of label.
+     *
+     * @param blockLabel
+     * @return
+     */
+    static int parseBlockIndex(String blockLabel) {
+        int pos = blockLabel.indexOf('<');
+        assert pos != -1;
+        return Integer.parseInt(blockLabel.substring(pos + 1));
+    }
+
+    /**
+     * Method to parse chain entry "CB<216.X11" to {blockType, blockIndex, port}.
+     * Block without number has blockIndex -1, entry without port has port -1.
+     *
+     * @param entry
+     * @return
+     */
+    static int[] parseEntry(String entry) {
+        int dot = entry.indexOf('.');
+        String block = (dot == -1) ? entry : entry.substring(0, dot);
+        int port = (dot == -1) ? -1 : internPort(entry.substring(dot + 1));
+        int pos = block.indexOf('<');
+        if (pos != -1) {
+            try {
+                int blockIndex = Integer.parseInt(block.substring(pos + 1));
+                return new int[]{internBlockType(block.substring(0, pos)), blockIndex, port};
+            } catch (NumberFormatException nfe) {
+                // not a numbered block, whole name is used as type
+            }
+        }
+        return new int[]{internBlockType(block), -1, port};
+    }
+}
@@ -0,0 +1,374 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: CBTemplate.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps the internal structure of CB which is the same for every
+ * CB in scheme. Template is imported from AutotraCB.trc once, links matrix of
+ * CB without deleted keys is counted once too, so every CB graph only copies
+ * template and keeps it's own deleted verteces. Template is stored in binary
+ * cache file near AutotraCB.trc and is read from there while AutotraCB.trc is
+ * not changed.
+ */
+final class CBTemplate {
+
+    private static final int MAGIC = 0x41434254;           // "ACBT"
+    private static final int VERSION = 1;
+    private static final String CACHE_PATH = Accessory.CB_PATH + ".bin";
+    private static CBTemplate template;
+
+    private final long sourceModified;
+    private final long sourceLength;
+    private final String[] labels;                          // vertex -> label
+    private final int[] vertexPorts;                        // vertex -> port id
+    private final int[] portVertices;                       // port id -> vertex, -1 if there is no such vertex
+    private final int[][] matrix;                           // adjacency matrix
+    private final int[][] keyMatrix;                        // key number of every edge
+    private final int[][] keyVertices;                      // key -> verteces those are deleted by this key
+    private final int[][] linksMatrix;                      // lengths of ways between global verteces
+
+    /**
+     * Method to get template of CB, template is imported again only if
+     * AutotraCB.trc was changed.
+     *
+     * @return
+     */
+    static synchronized CBTemplate getTemplate() {
+        File source = new File(Accessory.CB_PATH);
+        if ((template == null) || (template.sourceModified != source.lastModified()) || (template.sourceLength != source.length())) {
+            template = readOrImport(source);
+        }
+        return template;
+    }
+
+    /**
+     * Constructor of template, links matrix is counted when it isn't given.
+     *
+     * @param linksMatrix links matrix read from cache, null to count it.
+     */
+    private CBTemplate(long sourceModified, long sourceLength, String[] labels, int[][] edges, int[][] keyLines, int[][] linksMatrix) {
+        this.sourceModified = sourceModified;
+        this.sourceLength = sourceLength;
+        this.labels = labels;
+        int vertexCount = labels.length;
+        vertexPorts = new int[vertexCount];
+        int maxPort = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            vertexPorts[i] = BlockSymbolTable.internPort(labels[i]);
+            maxPort = Math.max(maxPort, vertexPorts[i]);
+        }
+        portVertices = new int[maxPort + 1];
+        Arrays.fill(portVertices, -1);
+        for (int i = 0; i < vertexCount; i++) {
+            portVertices[vertexPorts[i]] = i;
+        }
+        matrix = new int[vertexCount][vertexCount];
+        keyMatrix = new int[vertexCount][vertexCount];
+        for (int[] row : keyMatrix) {
+            Arrays.fill(row, -1);
+        }
+        for (int[] edge : edges) {
+            matrix[edge[0]][edge[1]] = 1;
+            matrix[edge[1]][edge[0]] = 1;
+            keyMatrix[edge[0]][edge[1]] = edge[2];
+            keyMatrix[edge[1]][edge[0]] = edge[2];
+        }
+        int maxKey = -1;
+        for (int[] keyLine : keyLines) {
+            maxKey = Math.max(maxKey, keyLine[0]);
+        }
+        List<List<Integer>> verts = new ArrayList<>();
+        for (int i = 0; i <= maxKey; i++) {
+            verts.add(new ArrayList<Integer>());
+        }
+        for (int[] keyLine : keyLines) {
+            verts.get(keyLine[0]).add(keyLine[1]);
+            verts.get(keyLine[0]).add(keyLine[2]);
+        }
+        keyVertices = new int[maxKey + 1][];
+        for (int i = 0; i <= maxKey; i++) {
+            keyVertices[i] = new int[verts.get(i).size()];
+            for (int j = 0; j < keyVertices[i].length; j++) {
+                keyVertices[i][j] = verts.get(i).get(j);
+            }
+        }
+        this.linksMatrix = (linksMatrix != null) ? linksMatrix : countLinksMatrix();
+    }
+
+    /**
+     * Method to get the number of verteces in CB.
+     */
+    int getVertexCount() {
+        return labels.length;
+    }
+
+    /**
+     * Method to get label of vertex.
+     */
+    String getLabel(int vertex) {
+        return labels[vertex];
+    }
+
+    /**
+     * Method to get port ids of verteces, array mustn't be changed.
+     */
+    int[] getVertexPorts() {
+        return vertexPorts;
+    }
+
+    /**
+     * Method to get verteces of port ids, array mustn't be changed.
+     */
+    int[] getPortVertices() {
+        return portVertices;
+    }
+
+    /**
+     * Method to get key numbers of edges, array mustn't be changed.
+     */
+    int[][] getKeyMatrix() {
+        return keyMatrix;
+    }
+
+    /**
+     * Method to copy adjacency matrix of template to matrix of CB graph.
+     */
+    void copyMatrix(int[][] target) {
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, target[i], 0, matrix.length);
+        }
+    }
+
+    /**
+     * Method to copy links matrix of CB without deleted keys.
+     */
+    void copyLinksMatrix(int[][] target) {
+        for (int i = 0; i < linksMatrix.length; i++) {
+            System.arraycopy(linksMatrix[i], 0, target[i], 0, linksMatrix.length);
+        }
+    }
+
+    /**
+     * Method to get verteces those should be deleted when key is used, empty
+     * array if key is unknown.
+     */
+    int[] getKeyVertices(int key) {
+        if ((key < 0) || (key >= keyVertices.length)) {
+            return new int[0];
+        }
+        return keyVertices[key];
+    }
+
+    /**
+     * Method counts lengths of ways between global verteces the same way as
+     * deikstra of CB graph does, 0 if there is no way.
+     */
+    private int[][] countLinksMatrix() {
+        int globalVerts = BlockSymbolTable.GLOBAL_CB_PORTS.length;
+        int vertexCount = labels.length;
+        int[][] links = new int[globalVerts][globalVerts];
+        int[] pathCounts = new int[vertexCount];
+        for (int from = 0; from < globalVerts; from++) {
+            if ((from >= portVertices.length) || (portVertices[from] == -1)) {
+                continue;
+            }
+            int startPoint = portVertices[from];
+            Arrays.fill(pathCounts, Vertex.MAXPATHCOUNT);
+            pathCounts[startPoint] = 0;
+            IndexedBinaryHeap heap = new IndexedBinaryHeap(vertexCount);
+            boolean[] visited = new boolean[vertexCount];
+            heap.add(0, startPoint);
+            int closestVertex;
+            while ((closestVertex = heap.getMinKey()) != -1) {
+                visited[closestVertex] = true;
+                for (int j = 0; j < vertexCount; j++) {
+                    if ((matrix[closestVertex][j] > 0) && !visited[j]) {
+                        if (pathCounts[j] > pathCounts[closestVertex] + matrix[closestVertex][j]) {
+                            pathCounts[j] = pathCounts[closestVertex] + matrix[closestVertex][j];
+                        }
+                        heap.add(pathCounts[j], j);
+                    }
+                }
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                int to = vertexPorts[i];
+                if ((i != startPoint) && BlockSymbolTable.isGlobalCBPort(to) && (pathCounts[i] != Vertex.MAXPATHCOUNT)) {
+                    links[from][to] = pathCounts[i];
+                    links[to][from] = pathCounts[i];
+                }
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Method to import template from file without cache, links matrix is
+     * counted again, it is used by benchmarks.
+     *
+     * @param source
+     * @return
+     * @throws IOException
+     */
+    static CBTemplate importFrom(File source) throws IOException {
+        List<String> labels = new ArrayList<>();
+        List<int[]> edges = new ArrayList<>();
+        List<int[]> keyLines = new ArrayList<>();
+        importTemplate(source, labels, edges, keyLines);
+        return new CBTemplate(source.lastModified(), source.length(), labels.toArray(new String[labels.size()]),
+                edges.toArray(new int[edges.size()][]), keyLines.toArray(new int[keyLines.size()][]), null);
+    }
+
+    private static CBTemplate readOrImport(File source) {
+        File cache = new File(CACHE_PATH);
+        if (cache.exists()) {
+            try {
+                CBTemplate cached = readCache(cache, source);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException ioe) {
+                Accessory.printLog("CB template cache is not read: " + ioe.getMessage());
+            }
+        }
+        List<String> labels = new ArrayList<>();
+        List<int[]> edges = new ArrayList<>();
+        List<int[]> keyLines = new ArrayList<>();
+        try {
+            importTemplate(source, labels, edges, keyLines);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        CBTemplate imported = new CBTemplate(source.lastModified(), source.length(), labels.toArray(new String[labels.size()]),
+                edges.toArray(new int[edges.size()][]), keyLines.toArray(new int[keyLines.size()][]), null);
+        try {
+            writeCache(cache, imported, edges, keyLines);
+        } catch (IOException ioe) {
+            Accessory.printLog("CB template cache is not written: " + ioe.getMessage());
+        }
+        return imported;
+    }
+
+    /**
+     * This method reads CB file, adding verteces and edges using data from
+     * file, line is "X11 -- a3 : 35" type.
+     */
+    private static void importTemplate(File source, List<String> labels, List<int[]> edges, List<int[]> keyLines) throws IOException {
+        try (BufferedReader graphListBufReader = new BufferedReader(new FileReader(source))) {
+            String line;
+            while ((line = graphListBufReader.readLine()) != null) {
+                String[] connectsAndNumbers = line.split(" : ");
+                String[] connectedVertices = connectsAndNumbers[0].split(" -- ");
+                int key = Integer.parseInt(connectsAndNumbers[1].trim());
+                int[] numConnectedVertices = new int[connectedVertices.length];
+                for (int i = 0; i < connectedVertices.length; i++) {
+                    int num = labels.indexOf(connectedVertices[i]);
+                    if (num == -1) {
+                        num = labels.size();
+                        labels.add(connectedVertices[i]);
+                    }
+                    numConnectedVertices[i] = num;
+                }
+                for (int i = 0; i + 1 < connectedVertices.length; i++) {
+                    if (numConnectedVertices[i] != numConnectedVertices[i + 1]) {
+                        edges.add(new int[]{numConnectedVertices[i], numConnectedVertices[i + 1], key});
+                    }
+                }
+                keyLines.add(new int[]{key, numConnectedVertices[0], numConnectedVertices[1]});
+            }
+        }
+    }
+
+    private static CBTemplate readCache(File cache, File source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                return null;
+            }
+            long modified = in.readLong();
+            long length = in.readLong();
+            if ((modified != source.lastModified()) || (length != source.length())) {
+                return null;                                                        // stale cache
+            }
+            String[] labels = new String[in.readInt()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = in.readUTF();
+            }
+            int[][] edges = new int[in.readInt()][];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = new int[]{in.readInt(), in.readInt(), in.readInt()};
+            }
+            int[][] keyLines = new int[in.readInt()][];
+            for (int i = 0; i < keyLines.length; i++) {
+                keyLines[i] = new int[]{in.readInt(), in.readInt(), in.readInt()};
+            }
+            int globalVerts = BlockSymbolTable.GLOBAL_CB_PORTS.length;
+            int[][] links = new int[globalVerts][globalVerts];
+            for (int[] row : links) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = in.readInt();
+                }
+            }
+            return new CBTemplate(modified, length, labels, edges, keyLines, links);
+        }
+    }
+
+    private static void writeCache(File cache, CBTemplate imported, List<int[]> edges, List<int[]> keyLines) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cache)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(imported.sourceModified);
+            out.writeLong(imported.sourceLength);
+            out.writeInt(imported.labels.length);
+            for (String label : imported.labels) {
+                out.writeUTF(label);
+            }
+            out.writeInt(edges.size());
+            for (int[] edge : edges) {
+                out.writeInt(edge[0]);
+                out.writeInt(edge[1]);
+                out.writeInt(edge[2]);
+            }
+            out.writeInt(keyLines.size());
+            for (int[] keyLine : keyLines) {
+                out.writeInt(keyLine[0]);
+                out.writeInt(keyLine[1]);
+                out.writeInt(keyLine[2]);
+            }
+            for (int[] row : imported.linksMatrix) {
+                for (int value : row) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+}
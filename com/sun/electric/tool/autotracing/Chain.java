@@ -20,8 +20,11 @@
 package com.sun.electric.tool.autotracing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -32,6 +35,12 @@ public class Chain extends Vertex {
 
     private final List<String> vertsList = new ArrayList<>();
     private final String vertsFromGlobalGraph;
+    private final int[][] lineEntries;          // {blockType, blockIndex, port} of every entry in line, shared by copies
+    private int[][] entries;                    // {blockType, blockIndex, port} of every entry in vertsList
+    private final int[] cbIndexes;              // numbers of CBs connected to chain
+    private final int[] cbPorts;                // ports of CBs connected to chain
+    private final Map<String, String[]> linePrefixIndex;    // block type prefix -> ports of line containing it, shared by copies
+    private Map<String, String[]> prefixIndex;              // block type prefix -> ports of vertsList containing it
     private int weight = 1;
     private boolean affected = false;
     private boolean isIonChain = false;
@@ -45,9 +54,22 @@ public class Chain extends Vertex {
      * @param label
      */
     public Chain(String vertsFromGlobalGraph, String label) {
+        this(vertsFromGlobalGraph, label, vertsFromGlobalGraph.split(" "), null);
+    }
+
+    /**
+     * Constructor: chain with entries those are already split from line, it
+     * is used by graph image.
+     *
+     * @param vertsFromGlobalGraph
+     * @param label
+     * @param connectedVertices entries of line.
+     * @param parsedEntries {blockType, blockIndex, port} of every entry, null
+     * if entries should be parsed here.
+     */
+    Chain(String vertsFromGlobalGraph, String label, String[] connectedVertices, int[][] parsedEntries) {
         super(label);
         this.vertsFromGlobalGraph = vertsFromGlobalGraph;
-        String[] connectedVertices = vertsFromGlobalGraph.split(" ");
         for (String connectedVertice : connectedVertices) {
             this.vertsList.add(connectedVertice);
             if (connectedVertice.endsWith(".X") || (connectedVertice.endsWith(".Y"))) {
@@ -60,6 +82,26 @@ public class Chain extends Vertex {
         if (connectedVertices.length > 8) {
             weight += 4;
         }
+        this.lineEntries = new int[connectedVertices.length][];
+        int cbCount = 0;
+        for (int i = 0; i < connectedVertices.length; i++) {
+            lineEntries[i] = (parsedEntries == null) ? BlockSymbolTable.parseEntry(connectedVertices[i]) : parsedEntries[i];
+            if (lineEntries[i][0] == BlockSymbolTable.CB) {
+                cbCount++;
+            }
+        }
+        this.entries = lineEntries;
+        this.linePrefixIndex = buildPrefixIndex(vertsList);
+        this.prefixIndex = linePrefixIndex;
+        this.cbIndexes = new int[cbCount];
+        this.cbPorts = new int[cbCount];
+        cbCount = 0;
+        for (int[] entry : lineEntries) {
+            if (entry[0] == BlockSymbolTable.CB) {
+                cbIndexes[cbCount] = entry[1];
+                cbPorts[cbCount++] = entry[2];
+            }
+        }
     }
 
     /**
@@ -81,6 +123,67 @@ public class Chain extends Vertex {
             }
         }
         this.weight = chain.getWeight();
+        this.lineEntries = chain.lineEntries;
+        this.entries = chain.lineEntries;
+        this.linePrefixIndex = chain.linePrefixIndex;
+        this.prefixIndex = chain.linePrefixIndex;
+        this.cbIndexes = chain.cbIndexes;
+        this.cbPorts = chain.cbPorts;
+    }
+
+    /**
+     * Method to get the number of CB ports in chain.
+     *
+     * @return
+     */
+    public int getCBCount() {
+        return cbIndexes.length;
+    }
+
+    /**
+     * Method to get number of CB connected to chain ("216" for "CB<216.X11").
+     *
+     * @param i
+     * @return
+     */
+    public int getCBIndex(int i) {
+        return cbIndexes[i];
+    }
+
+    /**
+     * Method to get port id of CB connected to chain ("X11" for "CB<216.X11").
+     *
+     * @param i
+     * @return
+     */
+    public int getCBPort(int i) {
+        return cbPorts[i];
+    }
+
+    /**
+     * Check if chain contains exactly this block port.
+     *
+     * @param blockType
+     * @param blockIndex
+     * @param port
+     * @return
+     */
+    public boolean checkForContains(int blockType, int blockIndex, int port) {
+        for (int[] entry : entries) {
+            if ((entry[2] == port) && (entry[1] == blockIndex) && (entry[0] == blockType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to get {blockType, blockIndex, port} of every port in chain.
+     *
+     * @return
+     */
+    public int[][] getConnectedEntries() {
+        return entries;
     }
 
     /**
@@ -89,16 +192,12 @@ public class Chain extends Vertex {
      * @return
      */
     public String[] searchForCB() {
-        List<String> cbChains = new ArrayList<>();
-        for (String vert : vertsList) {
-            if (Accessory.parsePortToBlock(vert).contains("CB")) {
-                cbChains.add(Accessory.parsePortToBlock(vert));
-                cbChains.add(Accessory.parsePortToPort(vert));
-            }
+        assert (cbIndexes.length > 0);
+        String[] a = new String[cbIndexes.length * 2];
+        for (int i = 0; i < cbIndexes.length; i++) {
+            a[2 * i] = BlockSymbolTable.getBlockLabel(BlockSymbolTable.CB, cbIndexes[i]);
+            a[2 * i + 1] = BlockSymbolTable.getPortName(cbPorts[i]);
         }
-        assert (cbChains.size() > 0);
-        String[] a = new String[cbChains.size()];
-        a = cbChains.toArray(a);
         return a;
     }
 
@@ -125,9 +224,9 @@ public class Chain extends Vertex {
      * @return
      */
     public String searchForPattern(String blockPiece) {         /// !!!! /// MAYBE SHOULD BE USED MATCHES INSTEAD OF FIND
-        Pattern p = Pattern.compile(blockPiece);
+        Pattern p = PatternCache.getPattern(blockPiece);
 
-        for (String vert : vertsList) {
+        for (String vert : getCandidates(blockPiece)) {
             if (p.matcher(vert).find()) {
                 return vert;
             }
@@ -143,9 +242,9 @@ public class Chain extends Vertex {
      * @return
      */
     public String searchForPatternMatch(String blockPiece) {         /// !!!! /// MAYBE SHOULD BE USED MATCHES INSTEAD OF FIND
-        Pattern p = Pattern.compile(blockPiece);
+        Pattern p = PatternCache.getPattern(blockPiece);
 
-        for (String vert : vertsList) {
+        for (String vert : getCandidates(blockPiece)) {
             if (p.matcher(vert).matches()) {
                 return vert;
             }
@@ -153,6 +252,35 @@ public class Chain extends Vertex {
         return null;
     }
 
+    /**
+     * Method to get ports those can match pattern, if pattern starts with
+     * block type prefix only ports containing this prefix are returned.
+     */
+    private Iterable<String> getCandidates(String blockPiece) {
+        String prefix = PatternCache.getBlockPrefix(blockPiece);
+        if (prefix == null) {
+            return vertsList;
+        }
+        return Arrays.asList(prefixIndex.get(prefix));
+    }
+
+    /**
+     * Method to build index from block type prefix to ports containing it.
+     */
+    private static Map<String, String[]> buildPrefixIndex(List<String> verts) {
+        Map<String, String[]> index = new HashMap<>();
+        for (String prefix : PatternCache.BLOCK_PREFIXES) {
+            List<String> prefixVerts = new ArrayList<>();
+            for (String vert : verts) {
+                if (vert.contains(prefix)) {
+                    prefixVerts.add(vert);
+                }
+            }
+            index.put(prefix, prefixVerts.toArray(new String[prefixVerts.size()]));
+        }
+        return index;
+    }
+
     /**
      * check if String @Vert contains String @port.
      */
@@ -251,13 +379,20 @@ public class Chain extends Vertex {
     }
 
     public void setAffected() {
+        List<int[]> affectedEntries = new ArrayList<>();
         Iterator<String> vertItr = vertsList.iterator();
+        int i = 0;
         while (vertItr.hasNext()) {
             String vert = vertItr.next();
             if ((!vert.contains("CB")) && (!vert.contains("SPM"))) {
                 vertItr.remove();
+            } else {
+                affectedEntries.add(entries[i]);
             }
+            i++;
         }
+        entries = affectedEntries.toArray(new int[affectedEntries.size()][]);
+        prefixIndex = buildPrefixIndex(vertsList);
         this.affected = true;
     }
 
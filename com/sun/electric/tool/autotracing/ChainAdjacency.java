@@ -0,0 +1,189 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: ChainAdjacency.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps adjacency of global graph in compressed sparse row form.
+ * Two chains are neighbours when they are connected to the same CB, so for
+ * every chain the interned ids of it's CBs are stored, and for every CB the
+ * ids of chains connected to it (in ascending order).
+ * Adjacency is built once after import of global graph and is updated when
+ * chain is deleted, so expanding a chain costs only it's real degree.
+ */
+final class ChainAdjacency {
+
+    private final Map<Integer, Integer> cbIds;    // number of CB ("216" for "CB<216") -> dense CB id
+    private final int[] chainOffsets;              // chain -> first index in chainCBs
+    private final int[] chainCBs;                  // CB ids of every chain
+    private final int[] cbOffsets;                 // CB -> first index in cbChains
+    private final int[] cbCounts;                  // CB -> number of alive chains in cbChains
+    private final int[] cbChains;                  // chain ids of every CB
+    private final int[] stamps;                    // chain -> last expansion, used to avoid duplicates
+    private final int[] buffer;                    // neighbours found by current expansion
+    private int stamp;
+
+    /**
+     * Constructor: build adjacency using chains of global graph.
+     *
+     * @param vertexArray
+     * @param vertexCount
+     */
+    ChainAdjacency(Chain[] vertexArray, int vertexCount) {
+        cbIds = new HashMap<>();
+        chainOffsets = new int[vertexArray.length + 1];
+        int[][] perChain = new int[vertexArray.length][];
+        int total = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            chainOffsets[v] = total;
+            if (vertexArray[v] == null) {
+                continue;
+            }
+            perChain[v] = internCBs(vertexArray[v]);
+            total += perChain[v].length;
+        }
+        for (int v = vertexCount; v <= vertexArray.length; v++) {
+            chainOffsets[v] = total;
+        }
+        chainCBs = new int[total];
+        int cbNumber = cbIds.size();
+        cbCounts = new int[cbNumber];
+        for (int v = 0; v < vertexCount; v++) {
+            if (perChain[v] != null) {
+                System.arraycopy(perChain[v], 0, chainCBs, chainOffsets[v], perChain[v].length);
+                for (int cb : perChain[v]) {
+                    cbCounts[cb]++;
+                }
+            }
+        }
+        cbOffsets = new int[cbNumber + 1];
+        for (int cb = 0; cb < cbNumber; cb++) {
+            cbOffsets[cb + 1] = cbOffsets[cb] + cbCounts[cb];
+        }
+        cbChains = new int[total];
+        int[] fill = new int[cbNumber];
+        for (int v = 0; v < vertexCount; v++) {                                    // ascending chain order inside every CB
+            for (int i = chainOffsets[v]; i < chainOffsets[v + 1]; i++) {
+                int cb = chainCBs[i];
+                cbChains[cbOffsets[cb] + fill[cb]++] = v;
+            }
+        }
+        stamps = new int[vertexArray.length];
+        buffer = new int[vertexArray.length];
+        stamp = 0;
+    }
+
+    /**
+     * Constructor: copy constructor, used together with copy constructor of
+     * global graph.
+     *
+     * @param adjacency
+     */
+    ChainAdjacency(ChainAdjacency adjacency) {
+        cbIds = adjacency.cbIds;                                                    // never changed after build
+        chainOffsets = adjacency.chainOffsets;
+        chainCBs = adjacency.chainCBs;
+        cbOffsets = adjacency.cbOffsets;
+        cbCounts = adjacency.cbCounts.clone();
+        cbChains = adjacency.cbChains.clone();
+        stamps = new int[adjacency.stamps.length];
+        buffer = new int[adjacency.buffer.length];
+        stamp = 0;
+    }
+
+    /**
+     * Method returns alive chains connected to the same CBs as chain v,
+     * chain v itself is not included.
+     *
+     * @param v
+     * @param visited visited marks of chains those should be skipped, null
+     * to get all chains.
+     * @return
+     */
+    int[] expand(int v, boolean[] visited) {
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        stamps[v] = stamp;
+        int count = 0;
+        for (int i = chainOffsets[v]; i < chainOffsets[v + 1]; i++) {
+            int cb = chainCBs[i];
+            for (int j = cbOffsets[cb], end = cbOffsets[cb] + cbCounts[cb]; j < end; j++) {
+                int u = cbChains[j];
+                if (stamps[u] == stamp) {
+                    continue;
+                }
+                stamps[u] = stamp;
+                if ((visited != null) && visited[u]) {
+                    continue;
+                }
+                buffer[count++] = u;
+            }
+        }
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Method to remove deleted chain from all CBs it is connected to.
+     *
+     * @param v
+     */
+    void removeChain(int v) {
+        for (int i = chainOffsets[v]; i < chainOffsets[v + 1]; i++) {
+            int cb = chainCBs[i];
+            int start = cbOffsets[cb];
+            int end = start + cbCounts[cb];
+            for (int j = start; j < end; j++) {
+                if (cbChains[j] == v) {
+                    System.arraycopy(cbChains, j + 1, cbChains, j, end - j - 1);   // keep ascending order
+                    cbCounts[cb]--;
+                    break;
+                }
+            }
+        }
+    }
+
+    private int[] internCBs(Chain chain) {
+        int[] ids = new int[chain.getCBCount()];
+        int count = 0;
+        for (int i = 0; i < chain.getCBCount(); i++) {
+            Integer id = cbIds.get(chain.getCBIndex(i));
+            if (id == null) {
+                id = cbIds.size();
+                cbIds.put(chain.getCBIndex(i), id);
+            }
+            boolean exists = false;
+            for (int j = 0; j < count; j++) {
+                if (ids[j] == id) {
+                    exists = true;
+                    break;
+                }
+            }
+            if (!exists) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
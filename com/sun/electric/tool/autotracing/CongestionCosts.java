@@ -0,0 +1,132 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: CongestionCosts.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class keeps costs of chains for negotiated congestion autotracing.
+ * Non-delete autotracing step lets nets share chains, chain used by several
+ * nets is overused. Cost of chain is it's base weight plus historical cost,
+ * which grows every step the chain is overused, plus present cost of
+ * overuse, which factor grows every step, so nets negotiate who keeps the
+ * chain and others go around. Chain costs are capped, so that chains of way
+ * of MAX_WAY_CHAINS chains take at most half of Vertex.MAXPATHCOUNT, which
+ * deikstra treats as unreachable, the other half is left for links through
+ * CBs.
+ */
+final class CongestionCosts {
+
+    private static final int HISTORY_FACTOR = 2;            // historical cost added for every extra net
+    private static final int FIRST_PRESENT_FACTOR = 1;
+    private static final int MAX_PRESENT_FACTOR = 16;
+    private static final int MAX_WAY_CHAINS = 16;           // length of way in chains which must stay reachable
+    private static final int MAX_COST = Vertex.MAXPATHCOUNT / (2 * MAX_WAY_CHAINS);
+
+    private final int[] baseWeights;                        // chain -> weight before negotiation, -1 if unknown
+    private final int[] history;                            // chain -> historical cost
+    private final BitSet overused = new BitSet();           // chains used by several nets in last step
+    private int presentFactor = FIRST_PRESENT_FACTOR;
+    private int overusedChains;
+    private int overuse;
+
+    /**
+     * Constructor: costs for global graph with size chains.
+     *
+     * @param size
+     */
+    CongestionCosts(int size) {
+        baseWeights = new int[size];
+        Arrays.fill(baseWeights, -1);
+        history = new int[size];
+    }
+
+    /**
+     * Method to add historical cost of overused chains, usage is the number of
+     * nets those used chain in non-delete step.
+     *
+     * @param usage
+     */
+    void addHistory(int[] usage) {
+        overusedChains = 0;
+        overuse = 0;
+        overused.clear();
+        for (int i = 0; i < usage.length; i++) {
+            if (usage[i] > 1) {
+                overusedChains++;
+                overused.set(i);
+                overuse += usage[i] - 1;
+                history[i] += HISTORY_FACTOR * (usage[i] - 1);
+            }
+        }
+    }
+
+    /**
+     * Method to get new weight of chain, weight chain had before the first
+     * step is kept as base weight.
+     *
+     * @param chain
+     * @param weight current weight of chain.
+     * @param usage the number of nets those used chain in last step.
+     * @return
+     */
+    int getCost(int chain, int weight, int usage) {
+        if (baseWeights[chain] == -1) {
+            baseWeights[chain] = weight;
+        }
+        int cost = baseWeights[chain] + history[chain] + presentFactor * Math.max(0, usage - 1);
+        return Math.min(cost, MAX_COST);
+    }
+
+    /**
+     * Method to start next step, present cost of overuse becomes higher.
+     */
+    void nextStep() {
+        presentFactor = Math.min(presentFactor * 2, MAX_PRESENT_FACTOR);
+    }
+
+    /**
+     * Method to get the number of overused chains in last step.
+     *
+     * @return
+     */
+    int getOverusedChains() {
+        return overusedChains;
+    }
+
+    /**
+     * Method to get overused chains of last step.
+     *
+     * @return
+     */
+    BitSet getOverusedChainSet() {
+        return (BitSet) overused.clone();
+    }
+
+    /**
+     * Method to get the number of extra nets on overused chains in last step.
+     *
+     * @return
+     */
+    int getOveruse() {
+        return overuse;
+    }
+}
@@ -0,0 +1,221 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: Connectivity.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.Connection;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.PortInst;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * This class keeps connectivity of scheme cell. Every PortInst of cell gets
+ * port id once, Wire_Pins connected by arcs are joined to groups and ports
+ * connected by arcs with every group are collected to arrays, so ports
+ * connected with port are found without walking through arcs of Wire_Pins.
+ * Only arcs connect ports, ports of the same global net or of nets with the
+ * same name aren't neighbours if arcs don't connect them. Connectivity is
+ * cached for CellRevision of cell, cache has one entry per cell and it keeps
+ * only ids, so it doesn't keep cell in memory.
+ */
+final class Connectivity {
+
+    private static final String WIRE_PIN = "Wire_Pin";
+    private static final PortInst[] NO_PORTS = new PortInst[0];
+    private static final Map<CellRevision, Connectivity> connectivities = new WeakHashMap<>();
+
+    private final int[] nodeOffsets;                        // node id -> port id of the first port of node, -1 if no node
+    private final int[] portNodes;                          // port id -> node id
+    private final int[] portGroups;                         // port id -> group of Wire_Pins, -1 if port is not on Wire_Pin
+    private final int[][] groupPorts;                       // group -> ids of ports those are connected with group and are not on Wire_Pin
+
+    /**
+     * Method to get connectivity of cell, connectivity is counted again if
+     * cell was changed.
+     *
+     * @param cell
+     * @return
+     */
+    static synchronized Connectivity getConnectivity(Cell cell) {
+        CellRevision revision = cell.backup().cellRevision;
+        Connectivity connectivity = connectivities.get(revision);
+        if (connectivity == null) {
+            final CellId cellId = revision.d.cellId;
+            connectivities.keySet().removeIf(r -> r.d.cellId == cellId);   // connectivity of previous revision
+            connectivity = new Connectivity(cell);
+            connectivities.put(revision, connectivity);
+        }
+        return connectivity;
+    }
+
+    private Connectivity(Cell cell) {
+        int maxNodeId = -1;
+        int portCount = 0;
+        for (Iterator<NodeInst> itr = cell.getNodes(); itr.hasNext();) {
+            NodeInst ni = itr.next();
+            maxNodeId = Math.max(maxNodeId, ni.getD().nodeId);
+            portCount += ni.getNumPortInsts();
+        }
+        nodeOffsets = new int[maxNodeId + 1];
+        Arrays.fill(nodeOffsets, -1);
+        portNodes = new int[portCount];
+        boolean[] onPin = new boolean[portCount];
+        int id = 0;
+        for (Iterator<NodeInst> itr = cell.getNodes(); itr.hasNext();) {
+            NodeInst ni = itr.next();
+            nodeOffsets[ni.getD().nodeId] = id;
+            boolean isPin = ni.getProto().getName().equals(WIRE_PIN);
+            for (int i = 0; i < ni.getNumPortInsts(); i++, id++) {
+                portNodes[id] = ni.getD().nodeId;
+                onPin[id] = isPin;
+            }
+        }
+
+        // Wire_Pins connected by arcs are one group
+        int[] parents = new int[portCount];
+        for (id = 0; id < portCount; id++) {
+            parents[id] = id;
+        }
+        for (Iterator<ArcInst> itr = cell.getArcs(); itr.hasNext();) {
+            ArcInst ai = itr.next();
+            int head = getPortId(ai.getPortInst(0));
+            int tail = getPortId(ai.getPortInst(1));
+            if (onPin[head] && onPin[tail]) {
+                parents[findRoot(parents, head)] = findRoot(parents, tail);
+            }
+        }
+        portGroups = new int[portCount];
+        int groupCount = 0;
+        for (id = 0; id < portCount; id++) {
+            if (onPin[id] && (findRoot(parents, id) == id)) {
+                portGroups[id] = groupCount++;
+            }
+        }
+        for (id = 0; id < portCount; id++) {
+            portGroups[id] = onPin[id] ? portGroups[findRoot(parents, id)] : -1;
+        }
+
+        // ports connected with groups by arcs
+        int[] groupCounts = new int[groupCount];
+        int[][] groupLists = new int[groupCount][];
+        for (Iterator<ArcInst> itr = cell.getArcs(); itr.hasNext();) {
+            ArcInst ai = itr.next();
+            int head = getPortId(ai.getPortInst(0));
+            int tail = getPortId(ai.getPortInst(1));
+            if (onPin[head] != onPin[tail]) {
+                int group = onPin[head] ? portGroups[head] : portGroups[tail];
+                int port = onPin[head] ? tail : head;
+                int[] list = groupLists[group];
+                if (list == null) {
+                    list = groupLists[group] = new int[2];
+                } else if (indexOf(list, groupCounts[group], port) != -1) {
+                    continue;                                       // port is connected with group by several arcs
+                } else if (groupCounts[group] == list.length) {
+                    list = groupLists[group] = Arrays.copyOf(list, list.length * 2);
+                }
+                list[groupCounts[group]++] = port;
+            }
+        }
+        groupPorts = new int[groupCount][];
+        for (int group = 0; group < groupCount; group++) {
+            groupPorts[group] = (groupLists[group] == null) ? new int[0] : Arrays.copyOf(groupLists[group], groupCounts[group]);
+        }
+    }
+
+    private static int findRoot(int[] parents, int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private static int indexOf(int[] list, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to get the number of ports in cell, port ids are 0..count-1.
+     *
+     * @return
+     */
+    int getPortCount() {
+        return portNodes.length;
+    }
+
+    /**
+     * Method to get id of port.
+     *
+     * @param pi
+     * @return
+     */
+    int getPortId(PortInst pi) {
+        return nodeOffsets[pi.getNodeInst().getD().nodeId] + pi.getPortIndex();
+    }
+
+    /**
+     * Method to get all ports connected with port through arcs and Wire_Pins,
+     * port itself and ports of Wire_Pins are not included. Walk stops at
+     * every port which isn't on Wire_Pin, as it did when arcs were walked.
+     *
+     * @param pi
+     * @return
+     */
+    PortInst[] getNearByPortInsts(PortInst pi) {
+        if (!pi.hasConnections()) {
+            return NO_PORTS;
+        }
+        int id = getPortId(pi);
+        int[] result = new int[4];
+        int count = 0;
+        for (Iterator<Connection> itr = pi.getConnections(); itr.hasNext();) {
+            Connection con = itr.next();
+            int other = getPortId(con.getArc().getPortInst(1 - con.getEndIndex()));
+            int[] found = (portGroups[other] == -1) ? new int[]{other} : groupPorts[portGroups[other]];
+            for (int port : found) {
+                if ((port == id) || (indexOf(result, count, port) != -1)) {
+                    continue;
+                }
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = port;
+            }
+        }
+        Cell cell = pi.getNodeInst().getParent();
+        PortInst[] ports = new PortInst[count];
+        for (int i = 0; i < count; i++) {
+            int node = portNodes[result[i]];
+            ports[i] = cell.getNodeById(node).getPortInst(result[i] - nodeOffsets[node]);
+        }
+        return ports;
+    }
+}
@@ -29,6 +29,10 @@ public class Constants {
 
     private static final Pref keysIndicated = Pref.makeBooleanPref("keysIndicated", Autotracing.getAutotracingTool().prefs, false);
     private static final Pref logging = Pref.makeBooleanPref("traceLogging", Autotracing.getAutotracingTool().prefs, false);
+    private static final Pref negotiatedCongestion = Pref.makeBooleanPref("traceNegotiatedCongestion", Autotracing.getAutotracingTool().prefs, false);
+    private static final Pref aStarSearch = Pref.makeBooleanPref("traceAStarSearch", Autotracing.getAutotracingTool().prefs, false);
+    private static final Pref portfolioSize = Pref.makeIntPref("tracePortfolioSize", Autotracing.getAutotracingTool().prefs, 1);
+    private static final Pref incrementalTracing = Pref.makeBooleanPref("traceIncremental", Autotracing.getAutotracingTool().prefs, true);
 
     /**
      * private constructor prohibits creating objects of this class.
@@ -73,4 +77,81 @@ public class Constants {
         logging.setBoolean(writeLog);
     }
 
+    /**
+     * get aStarSearch variable, true if global graph uses A* search instead
+     * of deikstra. False by default, A* search is switched on by user.
+     *
+     * @return
+     */
+    public static boolean isAStarSearch() {
+        return aStarSearch.getBoolean();
+    }
+
+    /**
+     * set aStarSearch variable
+     *
+     * @param useAStar
+     */
+    public static void setAStarSearch(boolean useAStar) {
+        aStarSearch.setBoolean(useAStar);
+    }
+
+    /**
+     * get negotiatedCongestion variable, true if failed autotracing step is
+     * followed by negotiated congestion step instead of weight increase.
+     *
+     * @return
+     */
+    public static boolean isNegotiatedCongestion() {
+        return negotiatedCongestion.getBoolean();
+    }
+
+    /**
+     * set negotiatedCongestion variable
+     *
+     * @param negotiate
+     */
+    public static void setNegotiatedCongestion(boolean negotiate) {
+        negotiatedCongestion.setBoolean(negotiate);
+    }
+
+    /**
+     * get incrementalTracing variable, true if ways of nets those were not
+     * changed since last successful autotracing are used again.
+     *
+     * @return
+     */
+    public static boolean isIncrementalTracing() {
+        return incrementalTracing.getBoolean();
+    }
+
+    /**
+     * set incrementalTracing variable
+     *
+     * @param incremental
+     */
+    public static void setIncrementalTracing(boolean incremental) {
+        incrementalTracing.setBoolean(incremental);
+    }
+
+    /**
+     * get portfolioSize variable, number of autotracing attempts with
+     * different order of nets those are run in parallel, 1 means usual
+     * autotracing.
+     *
+     * @return
+     */
+    public static int getPortfolioSize() {
+        return portfolioSize.getInt();
+    }
+
+    /**
+     * set portfolioSize variable
+     *
+     * @param size
+     */
+    public static void setPortfolioSize(int size) {
+        portfolioSize.setInt(size);
+    }
+
 }
@@ -23,7 +23,12 @@ import java.util.Iterator;
 import java.util.regex.Pattern;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -32,22 +37,20 @@ import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.topology.Connection;
-import com.sun.electric.database.EditingPreferences;
-import com.sun.electric.technology.ArcProto;
-import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.prototype.PortProto;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
 import com.sun.electric.tool.scripts.DeleteUnusedPart;
 import com.sun.electric.tool.user.User;
+import com.sun.electric.tool.util.concurrent.patterns.PForJob;
+import com.sun.electric.tool.util.concurrent.patterns.PForTask;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
 
-import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -59,15 +62,17 @@ public class ExportKeys {
         "Y11", "Y12", "Y13", "Y14", "Y15", "Y16", "Y21", "Y22", "Y23", "Y24", "Y25", "Y26",
         "X", "Y"};
 
-    private static Set<ArcInst> aiList = new HashSet<ArcInst>();
-    private static Set<ArcInst> arcRedList = new HashSet<ArcInst>();
+    private static final Set<String> EXTERNAL_PINS = new HashSet<>(Arrays.asList(globVerts));
+    private static final String[] BLOCK_TYPES = {"CB", "PPC", "CAU", "PAU", "SPM"};    // in order of priority
+    private static final String WIRE_PIN = "Wire_Pin";
+    private static final Pattern KEY_PORT = Pattern.compile(".*(\\.n)+(.*)");
 
     /**
      * Method to extract keys from cell.
      */
     public static void ExportKeysFromScheme() throws FunctionalException {
-        Accessory.cleanFile(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
-        Cell curcell = Job.getUserInterface().getCurrentCell();
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH).clear();
+        Cell curcell = Accessory.getCurrentCell();
 
         Iterator<ArcInst> itr = curcell.getArcs();
         while (itr.hasNext()) {
@@ -75,16 +80,16 @@ public class ExportKeys {
             PortInst thisPort = ai.getPortInst(0);
             PortInst thisPortNot = ai.getPortInst(1);
             if ((!thisPort.toString().contains("Wire_Pin")) && (!thisPortNot.toString().contains("Wire_Pin"))) {
-                Pattern p = Pattern.compile(".*(\\.n)+(.*)");
-                if (p.matcher(thisPort.toString()).matches()) {
+                if (KEY_PORT.matcher(thisPort.toString()).matches()) {
                     String blockNum = parsePortToBlock(thisPort.toString());
                     String keyNum = parsePortToKey(thisPort.toString(), thisPortNot.toString());
                     int result = Integer.valueOf(blockNum) + (Integer.valueOf(keyNum));
 
-                    Accessory.write(Accessory.CONFIG_WITHOUT_MODELLING_PATH, (String.valueOf(result)));
+                    KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH).addKey(result);
                 }
             }
         }
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH).flush();
     }
 
     public static void ExportKeysFromSchemeWithIndication() throws IOException, FunctionalException {
@@ -92,85 +97,173 @@ public class ExportKeys {
     }
 
     /**
-     * Method to extract keys from cell, uses scheme to indicate used nets.
+     * Method to extract keys from cell, uses scheme to indicate used nets. The
+     * first pass classifies arcs by prototype of block and collects ports to
+     * indicate from declaration tables, the second pass indicates nets of
+     * every block in parallel, all found arcs are replaced by one Job.
      *
+     * @return started Job which replaces arcs of used nets.
      * @throws java.io.IOException
      */
-    public static void ExportKeysFromSchemeWithIndication(Cell curcell, boolean fromScheme) throws IOException, FunctionalException {
-        Accessory.cleanFile(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
+    public static Job ExportKeysFromSchemeWithIndication(Cell curcell, boolean fromScheme) throws IOException, FunctionalException {
+        long startTime = System.currentTimeMillis();
+        KeyConfiguration configuration = KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
+        configuration.clear();
+        Cell currentCell = Accessory.getCurrentCell();
         if (curcell == null) {
-            curcell = Job.getUserInterface().getCurrentCell();
+            curcell = currentCell;
         }
 
+        GraphImage image = GraphImage.getImage();
+        Map<NodeProto, String> kinds = new IdentityHashMap<>();
+        Map<NodeInst, List<PortInst>> blockPorts = new LinkedHashMap<>();
         Iterator<ArcInst> itr = curcell.getArcs();
         while (itr.hasNext()) {
             ArcInst ai = itr.next();
             PortInst thisPort = ai.getPortInst(0);
             PortInst thisPortNot = ai.getPortInst(1);
-            if ((!thisPort.toString().contains("Wire_Pin")) && (!thisPortNot.toString().contains("Wire_Pin"))) {
-                Pattern p = Pattern.compile(".*(CB<)+.*(\\.n)+(.*)");
-                Pattern ppc = Pattern.compile(".*(PPC<)+.*(\\.n)+(.*)");
-                Pattern cau = Pattern.compile(".*(CAU<)+.*(\\.n)+(.*)");
-                Pattern pau = Pattern.compile(".*(PAU<)+.*(\\.n)+(.*)");
-                Pattern spm = Pattern.compile(".*(SPM<)+.*(\\.[noprstuvw])+(.*)");
-                if (p.matcher(thisPort.toString()).matches()) {
-                    String blockNum = parsePortToBlock(thisPort.toString());
-                    String keyNum = parsePortToKey(thisPort.toString(), thisPortNot.toString());
-                    int result = Integer.valueOf(blockNum) + (Integer.valueOf(keyNum));
-                    NodeInst ni = thisPort.getNodeInst();
-                    PortInst[] piArray = getPortsToIndicate(keyNum, ni);
-                    for (PortInst pi : piArray) {
-                        if (pi.getConnections() != null) {
-                            Iterator<Connection> itr2 = pi.getConnections();
-                            while (itr2.hasNext()) {
-                                Connection cntn = itr2.next();
-                                doMakeWide(cntn.getArc(), pi);
-                            }
-                        }
+            String kind = getKind(thisPort.getNodeInst().getProto(), kinds);
+            if (kind == WIRE_PIN || getKind(thisPortNot.getNodeInst().getProto(), kinds) == WIRE_PIN
+                    || !isKeyPort(kind, thisPort.getPortProto().getName())) {
+                continue;
+            }
+            String blockNum = parsePortToBlock(thisPort.toString());
+            String keyNum = parsePortToKey(thisPort.toString(), thisPortNot.toString());
+            int key = Integer.valueOf(keyNum);
+            NodeInst ni = thisPort.getNodeInst();
+            String[] names = kind.equals("CB") ? image.getCBKeyPorts(key) : image.getBlockKeyNames(kind, key);
+            List<PortInst> ports = blockPorts.get(ni);
+            for (String name : names) {
+                if (kind.equals("CB") && !EXTERNAL_PINS.contains(name)) {
+                    continue;
+                }
+                PortInst pi = ni.findPortInst(name);
+                if (pi != null) {
+                    if (ports == null) {
+                        ports = new ArrayList<>();
+                        blockPorts.put(ni, ports);
                     }
-                    Accessory.write(Accessory.CONFIG_WITHOUT_MODELLING_PATH, (String.valueOf(result)));
-                } else if (indicationWithPattern(ppc, thisPort, thisPortNot, Accessory.PPC_PATH)); else if (indicationWithPattern(cau, thisPort, thisPortNot, Accessory.CAU_PATH)); else if (indicationWithPattern(pau, thisPort, thisPortNot, Accessory.PAU_PATH)); else if (indicationWithPattern(spm, thisPort, thisPortNot, Accessory.SPM_PATH));
+                    ports.add(pi);
+                }
             }
+            configuration.addKey(Integer.valueOf(blockNum) + key);
         }
+        configuration.flush();
+
+        Set<ArcInst> wide = new HashSet<>();            // surrounds of path
+        Set<ArcInst> red = new HashSet<>();             // direct path
+        for (Indication indication : indicate(blockPorts, getArcsByName((currentCell != null) ? currentCell : curcell))) {
+            wide.addAll(indication.wide);
+            red.addAll(indication.red);
+        }
+        System.out.println("Export Keys: " + blockPorts.size() + " blocks indicated in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+
+        ArcChangeBatch batch = new ArcChangeBatch("Replace Schematic Arcs");
         if(fromScheme) {
-            new ReplaceArcs(aiList, false);       // only surrounds of path
-            new ReplaceArcs(arcRedList, true);    // only direct path
+            batch.addReplacement(wide, false);       // only surrounds of path
+            batch.addReplacement(red, true);    // only direct path
         } else {
-            //new ReplaceArcsForAutotracing(aiList, false);       // only surrounds of path
-            new ReplaceArcsForAutotracing(arcRedList, true);    // only direct path
+            //new ReplaceArcsForAutotracing(wide, false);       // only surrounds of path
+            batch.addReplacement(red, true);    // only direct path
         }
+        batch.start();
+        return batch;
+    }
 
-        
+    /**
+     * Method to get kind of block by prototype: CB, PPC, CAU, PAU, SPM,
+     * Wire_Pin or empty string, kind of every prototype is found once.
+     */
+    private static String getKind(NodeProto np, Map<NodeProto, String> kinds) {
+        String kind = kinds.get(np);
+        if (kind == null) {
+            kind = "";
+            String name = np.getName();
+            if (name.contains(WIRE_PIN)) {
+                kind = WIRE_PIN;
+            } else {
+                for (String type : BLOCK_TYPES) {
+                    if (name.contains(type + "<")) {
+                        kind = type;
+                        break;
+                    }
+                }
+            }
+            kinds.put(np, kind);
+        }
+        return kind;
+    }
 
+    /**
+     * Method to check if port of block is port of key: n-ports of blocks and
+     * address domain ports of SPM.
+     */
+    private static boolean isKeyPort(String kind, String portName) {
+        if (kind.isEmpty() || portName.isEmpty()) {
+            return false;
+        }
+        char letter = portName.charAt(0);
+        return kind.equals("SPM") ? "noprstuvw".indexOf(letter) >= 0 : letter == 'n';
+    }
 
-        aiList = new HashSet<>();
-        arcRedList = new HashSet<>();
+    /**
+     * Method to map names of arcs of cell to arcs, the first arc with name is
+     * used as it was found by search in cell.
+     */
+    private static Map<String, ArcInst> getArcsByName(Cell cell) {
+        Map<String, ArcInst> arcsByName = new HashMap<>();
+        Iterator<ArcInst> itrArc = cell.getArcs();
+        while (itrArc.hasNext()) {
+            ArcInst ai = itrArc.next();
+            arcsByName.putIfAbsent(ai.toString(), ai);
+        }
+        return arcsByName;
     }
 
     /**
-     * Method implemets indication with not CB block (others are PPC, CAU, PAU).
+     * Method to indicate nets of all blocks, every block is indicated by it's
+     * own Indication in thread pool. Failure of any block is thrown after all
+     * tasks are finished.
      */
-    private static boolean indicationWithPattern(Pattern pat, PortInst thisPort, PortInst thisPortNot, String PATH) throws IOException, FunctionalException {
-        if (pat.matcher(thisPort.toString()).matches()) {
-            String blockNum = parsePortToBlock(thisPort.toString());
-            String keyNum = parsePortToKey(thisPort.toString(), thisPortNot.toString());
-            int result = Integer.valueOf(blockNum) + (Integer.valueOf(keyNum));
-            NodeInst ni = thisPort.getNodeInst();
-            PortInst[] piArray = getPortsToIndicateOther(keyNum, ni, PATH);
-            //PortInst[] piArray = getPortsToIndicate(keyNum, ni);
-            for (PortInst pi : piArray) {
-                if (pi.getConnections() != null) {
-                    Iterator<Connection> itr2 = pi.getConnections();
-                    while (itr2.hasNext()) {
-                        Connection cntn = itr2.next();
-                        doMakeWide(cntn.getArc(), pi);
+    private static Indication[] indicate(Map<NodeInst, List<PortInst>> blockPorts, final Map<String, ArcInst> arcsByName) throws FunctionalException {
+        final List<List<PortInst>> work = new ArrayList<>(blockPorts.values());
+        final Indication[] indications = new Indication[work.size()];
+        final RuntimeException[] errors = new RuntimeException[work.size()];      // failure of i-th block, null if indicated
+        if (work.isEmpty()) {
+            return indications;
+        }
+        PForJob<BlockedRange1D> job = new PForJob<>(new BlockedRange1D(0, work.size(), 1), new PForTask<BlockedRange1D>() {
+            @Override
+            public void execute() {
+                for (int i = range.start(); i < range.end(); i++) {
+                    try {
+                        Indication indication = new Indication(arcsByName);
+                        for (PortInst pi : work.get(i)) {
+                            Iterator<Connection> itr = pi.getConnections();
+                            while (itr.hasNext()) {
+                                indication.doMakeWide(itr.next().getArc(), pi);
+                            }
+                        }
+                        indications[i] = indication;
+                    } catch (RuntimeException e) {
+                        errors[i] = e;
                     }
                 }
             }
-            Accessory.write(Accessory.CONFIG_WITHOUT_MODELLING_PATH, (String.valueOf(result)));
-            return true;
+        }, SimpleAutotracing.getThreadPool());
+        try {
+            job.execute();
+        } finally {
+            SimpleAutotracing.shutdownThreadPool();
+        }
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                NodeInst ni = work.get(i).get(0).getNodeInst();
+                throw new FunctionalException("Indication of " + ni.describe(false) + " failed: " + errors[i], errors[i]);
+            }
         }
-        return false;
+        return indications;
     }
 
     /**
@@ -214,70 +307,6 @@ public class ExportKeys {
         return null;
     }
 
-    /**
-     * Method to get ports that is near arcs should be indicated.
-     */
-    private static PortInst[] getPortsToIndicate(String KeyNumber, NodeInst ni) throws IOException {
-        PortInst[] a;
-        try (BufferedReader getPortReader = new BufferedReader(new FileReader(Accessory.CB_PATH))) {
-            String line;
-            List<PortInst> portList = new ArrayList<>();
-            while ((line = getPortReader.readLine()) != null) {
-                String[] divided = line.split(" : ");
-                if (divided[1].equals(KeyNumber)) {
-                    String[] externalPin = checkLineForExternalPins(divided[0]);
-                    if (externalPin.length != 0) {
-                        for (String ep : externalPin) {
-                            portList.add(ni.findPortInst(ep));
-                        }
-                    }
-                }
-            }
-            a = new PortInst[0];
-            a = portList.toArray(a);
-        }
-        return a;
-    }
-
-    /**
-     * Method to get ports that is near arcs should be indicated, PPC ONLY.
-     */
-    private static PortInst[] getPortsToIndicateOther(String KeyNumber, NodeInst ni, String PATH) throws IOException {
-        PortInst[] a;
-        try (BufferedReader getPortReader = new BufferedReader(new FileReader(PATH))) {
-            String line;
-            List<PortInst> portList = new ArrayList<>();
-            while ((line = getPortReader.readLine()) != null) {
-                String[] divided = line.split(" -- ");
-                if (divided[1].equals(KeyNumber)) {
-                    portList.add(ni.findPortInst(divided[0]));
-                }
-            }
-            a = new PortInst[0];
-            a = portList.toArray(a);
-        }
-        return a;
-    }
-
-    /**
-     * Method to check line if it has external pin or not, it returns all
-     * external pins.
-     */
-    private static String[] checkLineForExternalPins(String pins) {
-        List<String> portNames = new ArrayList<>();
-        String[] divided = pins.split(" -- ");
-        for (String vert : globVerts) {
-            for (String div : divided) {
-                if (div.equals(vert)) {
-                    portNames.add(vert);
-                }
-            }
-        }
-        String[] a = new String[0];
-        a = portNames.toArray(a);
-        return a;
-    }
-
     /**
      * Method to get external PortInst from NodeInst internal PortInst and check
      * if it connects.
@@ -422,214 +451,139 @@ public class ExportKeys {
     }
 
     /**
-     * Method to make ArcInst @ai wide and orange,
-     *
-     * @Param choice is the width of new arc.
-     */
-    private static void makeWide(ArcInst ai) {
-        Cell curcell = Job.getUserInterface().getCurrentCell();
-        Iterator<ArcInst> itrArc = curcell.getArcs();
-        while (itrArc.hasNext()) {
-            ArcInst ainew = itrArc.next();
-            if (ainew.toString().equals(ai.toString())) {
-                aiList.add(ainew);
-                break;
-            }
-        }
-    }
-
-    /**
-     * Method to recursively do all arcs connected to each other wide,
-     *
-     * @Param ais shows the ArcInst we're investigating now,
-     * @Param pis shows one of the PortInsts of ais to implement direction.
-     */
-    private static boolean findMoreArcs(ArcInst ais, PortInst pis, Set<ArcInst> arcList) {
-        boolean allRes = false;
-        boolean allResForReturn = false;
-        boolean isRed;
-        makeWide(ais);
-        Iterator<Connection> itr = pis.getConnections();
-        while (itr.hasNext()) {
-            int head = 0;
-            ArcInst ai = itr.next().getArc();
-            if (ai.toString().equals(ais.toString())) {
-                continue;
-            }
-            PortInst thisPort = ai.getPortInst(0);
-            PortInst thisPortNot = ai.getPortInst(1);
-            if (pis.toString().equals(thisPort.toString())) {
-                head = 1;
-            }
-
-            if (head == 1) {
-                if ((!thisPortNot.toString().contains("Wire_Pin")) && (!thisPortNot.toString().contains(".X'")) && (!thisPortNot.toString().contains(".Y'"))) {
-                    boolean res = getStarted(thisPortNot);
-                    if (res) {
-                        allRes = true;
-                        arcList.add(ai);
-                    }
-                    makeWide(ai);
-                } else if ((thisPortNot.toString().contains(".X'")) || (thisPortNot.toString().contains(".Y'"))) {
-                    boolean res = getStarted(thisPortNot);
-                    if (res) {
-                        allRes = true;
-                    }
-                    makeWide(ai);
-                    isRed = findMoreArcs(ai, thisPortNot, arcList);
-                    if (isRed) {
-                        allRes = true;
-                    }
-                } else {
-                    isRed = findMoreArcs(ai, thisPortNot, arcList);
-                    if (isRed) {
-                        allRes = true;
-                    }
-                }
-            } else {
-                if ((!thisPort.toString().contains("Wire_Pin")) && ((!thisPort.toString().contains(".X'")) && (!thisPort.toString().contains(".Y'")))) {
-                    boolean res = getStarted(thisPort);
-                    if (res) {
-                        allRes = true;
-                        arcList.add(ai);
-                    }
-                    makeWide(ai);
-                } else if ((thisPort.toString().contains(".X'")) || (thisPort.toString().contains(".Y'"))) {
-                    boolean res = getStarted(thisPort);
-                    if (res) {
-                        allRes = true;
-                    }
-                    makeWide(ai);
-                    isRed = findMoreArcs(ai, thisPort, arcList);
-                    if (isRed) {
-                        allRes = true;
-                    }
-                } else {
-                    isRed = findMoreArcs(ai, thisPort, arcList);
-                    if (isRed) {
-                        allRes = true;
-                    }
-                }
-            }
-
-            if (allRes) {
-                arcList.add(ais);
-                allResForReturn = true;
-            }
-            allRes = false;
-        }
-
-        return allResForReturn;
-    }
-
-    /**
-     * Controller method to do arcs connected to @TheArc wide and red.
+     * This class keeps arcs found by indication of one block, indications of
+     * blocks are done in parallel and merged after it.
      */
-    private static void doMakeWide(ArcInst theArc, PortInst internalPortInst) {
-        ArcInst current = theArc;
+    private static final class Indication {
 
-        Set<ArcInst> arcList = new HashSet<>();
-        PortInst thisPort = current.getPortInst(0);
-        PortInst thisPortNot = current.getPortInst(1);
+        private final Map<String, ArcInst> arcsByName;         // arcs of current cell by name
+        private final Set<ArcInst> wide = new HashSet<>();      // arcs to make wide
+        private final Set<ArcInst> red = new HashSet<>();       // arcs to make red
 
-        if (thisPort.toString().equals(internalPortInst.toString())) {
-            findMoreArcs(current, thisPortNot, arcList);
-        } else {
-            findMoreArcs(current, thisPort, arcList);
+        Indication(Map<String, ArcInst> arcsByName) {
+            this.arcsByName = arcsByName;
         }
 
-        if ((!thisPort.toString().contains(".wire")) && (!thisPortNot.toString().contains(".wire"))) {
-            if (getStarted(thisPort) && getStarted(thisPortNot)) {
-                makeWide(current);
-                arcList.add(current);
+        /**
+         * Method to make ArcInst @ai wide and orange,
+         *
+         * @Param choice is the width of new arc.
+         */
+        private void makeWide(ArcInst ai) {
+            ArcInst ainew = arcsByName.get(ai.toString());
+            if (ainew != null) {
+                wide.add(ainew);
             }
         }
 
-        for (ArcInst aili : arcList) {
-            arcRedList.add(aili);
-        }
-    }
-
-    /**
-     * Class for "replaceArc"
-     */
-    private static class ReplaceArcs extends Job {
-
-        private final Set<ArcInst> aiList;
-        private final boolean isRed;
-
         /**
+         * Method to recursively do all arcs connected to each other wide,
          *
+         * @Param ais shows the ArcInst we're investigating now,
+         * @Param pis shows one of the PortInsts of ais to implement direction.
          */
-        public ReplaceArcs(Set<ArcInst> aiList, boolean isRed) {
-            super("Replace Schematic Arcs", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            this.aiList = aiList;
-            this.isRed = isRed;
-            startJob();
-        }
-
-        @Override
-        public boolean doIt() throws JobException {
-            System.out.println("Replace Schematic Arcs");
-            replace(aiList);
-            return true;
-        }
-        
-        private void replace(Set<ArcInst> set) {
-            EditingPreferences ep = EditingPreferences.getInstance();
-            ArcProto arc = Generic.tech().universal_arc;
-            Iterator<ArcInst> itr = set.iterator();
+        private boolean findMoreArcs(ArcInst ais, PortInst pis, Set<ArcInst> arcList) {
+            boolean allRes = false;
+            boolean allResForReturn = false;
+            boolean isRed;
+            makeWide(ais);
+            Iterator<Connection> itr = pis.getConnections();
             while (itr.hasNext()) {
-                ArcInst ai = itr.next();
-                if (!ai.getProto().getName().equals(arc.getName())) {
-                    ai.setLambdaBaseWidth(0.5);
+                int head = 0;
+                ArcInst ai = itr.next().getArc();
+                if (ai.toString().equals(ais.toString())) {
+                    continue;
                 }
-                if (isRed) {
-                    ai.replace(arc, ep);
-                    ai.setLambdaBaseWidth(1);
+                PortInst thisPort = ai.getPortInst(0);
+                PortInst thisPortNot = ai.getPortInst(1);
+                if (pis.toString().equals(thisPort.toString())) {
+                    head = 1;
                 }
+
+                if (head == 1) {
+                    if ((!thisPortNot.toString().contains("Wire_Pin")) && (!thisPortNot.toString().contains(".X'")) && (!thisPortNot.toString().contains(".Y'"))) {
+                        boolean res = getStarted(thisPortNot);
+                        if (res) {
+                            allRes = true;
+                            arcList.add(ai);
+                        }
+                        makeWide(ai);
+                    } else if ((thisPortNot.toString().contains(".X'")) || (thisPortNot.toString().contains(".Y'"))) {
+                        boolean res = getStarted(thisPortNot);
+                        if (res) {
+                            allRes = true;
+                        }
+                        makeWide(ai);
+                        isRed = findMoreArcs(ai, thisPortNot, arcList);
+                        if (isRed) {
+                            allRes = true;
+                        }
+                    } else {
+                        isRed = findMoreArcs(ai, thisPortNot, arcList);
+                        if (isRed) {
+                            allRes = true;
+                        }
+                    }
+                } else {
+                    if ((!thisPort.toString().contains("Wire_Pin")) && ((!thisPort.toString().contains(".X'")) && (!thisPort.toString().contains(".Y'")))) {
+                        boolean res = getStarted(thisPort);
+                        if (res) {
+                            allRes = true;
+                            arcList.add(ai);
+                        }
+                        makeWide(ai);
+                    } else if ((thisPort.toString().contains(".X'")) || (thisPort.toString().contains(".Y'"))) {
+                        boolean res = getStarted(thisPort);
+                        if (res) {
+                            allRes = true;
+                        }
+                        makeWide(ai);
+                        isRed = findMoreArcs(ai, thisPort, arcList);
+                        if (isRed) {
+                            allRes = true;
+                        }
+                    } else {
+                        isRed = findMoreArcs(ai, thisPort, arcList);
+                        if (isRed) {
+                            allRes = true;
+                        }
+                    }
+                }
+
+                if (allRes) {
+                    arcList.add(ais);
+                    allResForReturn = true;
+                }
+                allRes = false;
             }
-        }
-    }
-    
-    /**
-     * Class for "replaceArc"
-     */
-    private static class ReplaceArcsForAutotracing extends Job {
 
-        private final transient Set<ArcInst> aiList;
-        private final boolean isRed;
+            return allResForReturn;
+        }
 
         /**
-         *
+         * Controller method to do arcs connected to @TheArc wide and red.
          */
-        public ReplaceArcsForAutotracing(Set<ArcInst> aiList, boolean isRed) {
-            super("Replace Schematic Arcs", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            this.aiList = aiList;
-            this.isRed = isRed;
-            startJob();
-        }
+        void doMakeWide(ArcInst theArc, PortInst internalPortInst) {
+            ArcInst current = theArc;
 
-        @Override
-        public boolean doIt() throws JobException {
-            replace(aiList);
-            return true;
-        }
-        
-        private void replace(Set<ArcInst> set) {
-            EditingPreferences ep = EditingPreferences.getInstance();
-            ArcProto arc = Generic.tech().universal_arc;
-            Iterator<ArcInst> itr = set.iterator();
-            while (itr.hasNext()) {
-                ArcInst ai = itr.next();
-                if (!ai.getProto().getName().equals(arc.getName())) {
-                    ai.setLambdaBaseWidth(0.5);
-                }
-                if (isRed) {
-                    ai.replace(arc, ep);
-                    ai.setLambdaBaseWidth(1);
+            Set<ArcInst> arcList = new HashSet<>();
+            PortInst thisPort = current.getPortInst(0);
+            PortInst thisPortNot = current.getPortInst(1);
+
+            if (thisPort.toString().equals(internalPortInst.toString())) {
+                findMoreArcs(current, thisPortNot, arcList);
+            } else {
+                findMoreArcs(current, thisPort, arcList);
+            }
+
+            if ((!thisPort.toString().contains(".wire")) && (!thisPortNot.toString().contains(".wire"))) {
+                if (getStarted(thisPort) && getStarted(thisPortNot)) {
+                    makeWide(current);
+                    arcList.add(current);
                 }
             }
+
+            red.addAll(arcList);
         }
     }
 
@@ -641,36 +595,27 @@ public class ExportKeys {
         Cell cell;
 
         /**
+         * Constructor: job is started by startJobAfter() with Job which
+         * creates arcs of imported keys.
          *
+         * @param cell
          */
         public ExportAfter(Cell cell) {
             super("Export Keys", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
             this.cell = cell;
             System.out.println("ExportAfter");
-            startJob();
         }
 
         @Override
         public boolean doIt() throws JobException {
-            Iterator<Job> itrJob = Job.getAllJobs();
-            while (itrJob.hasNext()) {
-                Job job = itrJob.next();
-                if (job.toString().contains("Create")) {
-                    while (!job.isFinished()) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(100);
-                        } catch (Exception e) {
-                        }
-                    }
-                }
-            }
+            Job replace = null;
             try {
-                ExportKeysFromSchemeWithIndication(cell, false);
+                replace = ExportKeysFromSchemeWithIndication(cell, false);
             } catch (Exception e) {
                 System.out.println("Something went wrong.");
             }
 
-            new DeleteUnusedPart.DeleteUnusedArcs(cell);
+            new DeleteUnusedPart.DeleteUnusedArcs(cell).startJobAfter(replace);
             return true;
         }
     }
@@ -0,0 +1,454 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: GraphImage.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps declarations of chip (globalGraph.trc, AutotraCB.trc,
+ * PPC.trc, SPM.trc, CAU.trc, PAU.trc and allBlocks.trc) in one binary image:
+ * table of interned strings, entries of every chain in compressed sparse row
+ * form and tables key -> ports for every declaration of block. Image is read
+ * with memory mapped file while all text files are not changed, otherwise
+ * text files are parsed and image is written again. Links matrix of CB is kept
+ * by CBTemplate in it's own cache.
+ */
+final class GraphImage {
+
+    private static final int MAGIC = 0x54524349;                   // "TRCI"
+    private static final int VERSION = 1;
+    private static final String IMAGE_PATH = Accessory.PATH + "/autotracing/graphImage.bin";
+    private static final String[] BLOCK_TYPES = {"PPC", "SPM", "CAU", "PAU"};
+    private static final String[] NO_STRINGS = new String[0];
+    private static GraphImage image;
+
+    private final long[] sourceStamps;                              // lastModified and length of every source file
+    private final String[] strings;                                 // interned strings
+    private final int[] chainLines;                                 // chain -> string id of line
+    private final int[] chainOffsets;                               // chain -> first index in chainEntries
+    private final int[] chainEntries;                               // string ids of entries of every chain
+    private final KeyTable cbKeys;                                  // key of CB -> X and Y ports of key
+    private final Map<String, KeyTable> blockKeys;                  // block type -> key -> declarations of key
+    private final int[] allBlocks;                                  // string ids of lines of allBlocks.trc
+    private int[][] parsedEntries;                                  // string id -> parsed entry, null for not entries
+
+    /**
+     * Method to get image of declarations, image is made again if one of text
+     * files was changed.
+     *
+     * @return
+     */
+    static synchronized GraphImage getImage() {
+        long[] stamps = getSourceStamps();
+        if ((image == null) || !Arrays.equals(image.sourceStamps, stamps)) {
+            image = readOrCompile(stamps);
+        }
+        return image;
+    }
+
+    private GraphImage(long[] sourceStamps, String[] strings, int[] chainLines, int[] chainOffsets, int[] chainEntries,
+            KeyTable cbKeys, Map<String, KeyTable> blockKeys, int[] allBlocks) {
+        this.sourceStamps = sourceStamps;
+        this.strings = strings;
+        this.chainLines = chainLines;
+        this.chainOffsets = chainOffsets;
+        this.chainEntries = chainEntries;
+        this.cbKeys = cbKeys;
+        this.blockKeys = blockKeys;
+        this.allBlocks = allBlocks;
+    }
+
+    /**
+     * Method to get the number of chains of global graph.
+     *
+     * @return
+     */
+    int getChainCount() {
+        return chainLines.length;
+    }
+
+    /**
+     * Method to create chain of global graph, every different entry is
+     * parsed once for all chains.
+     *
+     * @param chain
+     * @return
+     */
+    synchronized Chain createChain(int chain) {
+        if (parsedEntries == null) {
+            parsedEntries = new int[strings.length][];
+        }
+        int from = chainOffsets[chain];
+        int count = chainOffsets[chain + 1] - from;
+        String[] verts = new String[count];
+        int[][] parsed = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int id = chainEntries[from + i];
+            verts[i] = strings[id];
+            if (parsedEntries[id] == null) {
+                parsedEntries[id] = BlockSymbolTable.parseEntry(verts[i]);
+            }
+            parsed[i] = parsedEntries[id];
+        }
+        return new Chain(strings[chainLines[chain]], verts[0], verts, parsed);
+    }
+
+    /**
+     * Method to get X and Y ports of CB those are connected by key.
+     *
+     * @param key
+     * @return
+     */
+    String[] getCBKeyPorts(int key) {
+        return cbKeys.get(key, strings);
+    }
+
+    /**
+     * Method to get declarations of block those are connected by key.
+     *
+     * @param blockType PPC, SPM, CAU or PAU.
+     * @param key
+     * @return
+     */
+    String[] getBlockKeyNames(String blockType, int key) {
+        KeyTable table = blockKeys.get(blockType);
+        return (table == null) ? NO_STRINGS : table.get(key, strings);
+    }
+
+    /**
+     * Method to get lines of allBlocks.trc.
+     *
+     * @return
+     */
+    String[] getAllBlocks() {
+        String[] lines = new String[allBlocks.length];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = strings[allBlocks[i]];
+        }
+        return lines;
+    }
+
+    private static File[] getSources() {
+        File[] sources = new File[3 + BLOCK_TYPES.length];
+        sources[0] = new File(Accessory.GLOBAL_PATH);
+        sources[1] = new File(Accessory.CB_PATH);
+        sources[2] = new File(Accessory.ALL_BLOCKS);
+        for (int i = 0; i < BLOCK_TYPES.length; i++) {
+            sources[3 + i] = new File(Accessory.getPathToDeclaration(BLOCK_TYPES[i]));
+        }
+        return sources;
+    }
+
+    private static long[] getSourceStamps() {
+        File[] sources = getSources();
+        long[] stamps = new long[sources.length * 2];
+        for (int i = 0; i < sources.length; i++) {
+            stamps[2 * i] = sources[i].lastModified();
+            stamps[2 * i + 1] = sources[i].length();
+        }
+        return stamps;
+    }
+
+    private static GraphImage readOrCompile(long[] stamps) {
+        File file = new File(IMAGE_PATH);
+        if (file.exists()) {
+            try {
+                GraphImage read = read(file, stamps);
+                if (read != null) {
+                    return read;
+                }
+            } catch (IOException | RuntimeException e) {
+                Accessory.printLog("Graph image is not read: " + e.getMessage());
+            }
+        }
+        GraphImage compiled;
+        try {
+            compiled = compile(stamps);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Declarations of chip are not compiled", ioe);
+        }
+        File temp = Accessory.getTempFile(file);
+        try {
+            compiled.write(temp);
+            Accessory.replaceFile(temp, file);
+        } catch (IOException ioe) {
+            Accessory.printLog("Graph image is not written: " + ioe.getMessage());
+        }
+        return compiled;
+    }
+
+    /**
+     * This method parses text files: line of global graph is chain with
+     * entries separated by " ", line of AutotraCB.trc is "port -- port : key",
+     * line of other declarations is "name -- key".
+     */
+    private static GraphImage compile(long[] stamps) throws IOException {
+        File[] sources = getSources();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        List<Integer> lines = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>();
+        if (sources[0].exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(sources[0]))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(intern(line, ids, strings));
+                    offsets.add(entries.size());
+                    for (String entry : line.split(" ")) {
+                        entries.add(intern(entry, ids, strings));
+                    }
+                }
+            }
+        } else {
+            System.err.println("Global graph " + sources[0] + " is not found.");
+        }
+        offsets.add(entries.size());
+
+        List<int[]> cbPairs = new ArrayList<>();
+        if (sources[1].exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(sources[1]))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] spl = line.split(" : ");
+                    int key = Integer.parseInt(spl[1]);
+                    for (String item : spl[0].split(" -- ")) {
+                        if (item.startsWith("X") || item.startsWith("Y")) {
+                            cbPairs.add(new int[]{key, intern(item, ids, strings)});
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Integer> blocks = new ArrayList<>();
+        if (sources[2].exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(sources[2]))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    blocks.add(intern(line, ids, strings));
+                }
+            }
+        }
+
+        Map<String, KeyTable> blockKeys = new HashMap<>();
+        for (int i = 0; i < BLOCK_TYPES.length; i++) {
+            List<int[]> pairs = new ArrayList<>();
+            if (sources[3 + i].exists()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(sources[3 + i]))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] spl = line.split(" -- ");
+                        pairs.add(new int[]{Integer.parseInt(spl[1]), intern(spl[0], ids, strings)});
+                    }
+                }
+            }
+            blockKeys.put(BLOCK_TYPES[i], KeyTable.build(pairs));
+        }
+        return new GraphImage(stamps, strings.toArray(new String[strings.size()]), toArray(lines), toArray(offsets),
+                toArray(entries), KeyTable.build(cbPairs), blockKeys, toArray(blocks));
+    }
+
+    /**
+     * This method reads image using memory mapped file, returns null if image
+     * is made from other text files. Header is checked by usual reading, so
+     * stale image isn't mapped while it is written again.
+     */
+    private static GraphImage read(File file, long[] stamps) throws IOException {
+        if (!isCurrent(file, stamps)) {
+            return null;                                                    // stale image
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.position(12 + 8 * stamps.length);                           // magic, version and stamps
+            String[] strings = new String[buf.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int[] chainLines = readInts(buf);
+            int[] chainOffsets = readInts(buf);
+            int[] chainEntries = readInts(buf);
+            KeyTable cbKeys = new KeyTable(readInts(buf), readInts(buf));
+            Map<String, KeyTable> blockKeys = new HashMap<>();
+            for (String blockType : BLOCK_TYPES) {
+                blockKeys.put(blockType, new KeyTable(readInts(buf), readInts(buf)));
+            }
+            int[] allBlocks = readInts(buf);
+            return new GraphImage(stamps, strings, chainLines, chainOffsets, chainEntries, cbKeys, blockKeys, allBlocks);
+        }
+    }
+
+    /**
+     * This method checks magic, version and stamps of image.
+     */
+    private static boolean isCurrent(File file, long[] stamps) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readInt() != stamps.length)) {
+                return false;
+            }
+            for (long stamp : stamps) {
+                if (in.readLong() != stamp) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * This method writes image: magic, version, stamps of text files, strings
+     * and int arrays, every array is written as length and values.
+     */
+    private void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sourceStamps.length);
+            for (long stamp : sourceStamps) {
+                out.writeLong(stamp);
+            }
+            out.writeInt(strings.length);
+            for (String str : strings) {
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            writeInts(out, chainLines);
+            writeInts(out, chainOffsets);
+            writeInts(out, chainEntries);
+            writeInts(out, cbKeys.offsets);
+            writeInts(out, cbKeys.ids);
+            for (String blockType : BLOCK_TYPES) {
+                KeyTable table = blockKeys.get(blockType);
+                writeInts(out, table.offsets);
+                writeInts(out, table.ids);
+            }
+            writeInts(out, allBlocks);
+        }
+    }
+
+    private static int intern(String str, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.get(str);
+        if (id == null) {
+            id = strings.size();
+            strings.add(str);
+            ids.put(str, id);
+        }
+        return id;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static int[] readInts(ByteBuffer buf) {
+        int[] array = new int[buf.getInt()];
+        buf.asIntBuffer().get(array);
+        buf.position(buf.position() + array.length * 4);
+        return array;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * This class keeps string ids of every key in compressed sparse row form,
+     * ids of one key are in order of text file.
+     */
+    private static final class KeyTable {
+
+        private final int[] offsets;                // key -> first index in ids
+        private final int[] ids;                    // string ids of every key
+
+        private KeyTable(int[] offsets, int[] ids) {
+            this.offsets = offsets;
+            this.ids = ids;
+        }
+
+        /**
+         * Method to build table from pairs {key, string id}.
+         */
+        private static KeyTable build(List<int[]> pairs) {
+            List<int[]> valid = new ArrayList<>(pairs.size());
+            int maxKey = -1;
+            for (int[] pair : pairs) {
+                if (pair[0] >= 0) {                                     // negative key is never asked
+                    valid.add(pair);
+                    maxKey = Math.max(maxKey, pair[0]);
+                }
+            }
+            int[] offsets = new int[maxKey + 2];
+            for (int[] pair : valid) {
+                offsets[pair[0] + 1]++;
+            }
+            for (int key = 0; key <= maxKey; key++) {
+                offsets[key + 1] += offsets[key];
+            }
+            int[] ids = new int[valid.size()];
+            int[] next = Arrays.copyOf(offsets, offsets.length);
+            for (int[] pair : valid) {
+                ids[next[pair[0]]++] = pair[1];
+            }
+            return new KeyTable(offsets, ids);
+        }
+
+        private String[] get(int key, String[] strings) {
+            if ((key < 0) || (key + 1 >= offsets.length)) {
+                return NO_STRINGS;
+            }
+            String[] result = new String[offsets[key + 1] - offsets[key]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = strings[ids[offsets[key] + i]];
+            }
+            return result;
+        }
+    }
+}
@@ -22,7 +22,6 @@ package com.sun.electric.tool.autotracing;
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.technology.ArcProto;
 import com.sun.electric.technology.technologies.Generic;
-import com.sun.electric.database.EditingPreferences;
 
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Export;
@@ -42,10 +41,11 @@ import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
 import com.sun.electric.tool.user.User;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -55,23 +55,6 @@ import javax.swing.JFileChooser;
  */
 public class ImportKeys {
 
-    private static float getStringCount(File file) {
-        float qr = 0;
-        BufferedReader bufferedReader;
-        try {
-            FileReader fileReader = new FileReader(file);
-            bufferedReader = new BufferedReader(fileReader);
-            while (bufferedReader.readLine() != null) {
-                qr += 1;
-            }
-            bufferedReader.close();
-            return qr;
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
-        return 0;
-    }
-
     // just sort
     private static int equality(int a, int b, int keyNumber) {
         if ((a >= b) && (a <= keyNumber)) {
@@ -98,50 +81,84 @@ public class ImportKeys {
         int keyin = keyFind * 2 + 1;
         return keyin;
     }
-    // find instance which is the closest to key but less or equal
+    private static final String GLOBAL_SCHEME_PATH = "c:\\CYGELENG\\electric\\global_scheme.info";
 
-    private static int findInst(int alis) {
-        int bika = 0;
-        String cname;
-        try {
-            BufferedReader br2 = new BufferedReader(new FileReader("c:\\CYGELENG\\electric\\global_scheme.info"));
-            String line;
-            while ((line = br2.readLine()) != null) {
-                cname = line;
-                String[] parts = cname.split("<");
-                String part2 = parts[1];
-                bika = equality(Integer.parseInt(part2), bika, alis);
+    /**
+     * Sorted base addresses of all blocks from global_scheme.info, loaded in
+     * one pass and kept while file is not changed.
+     */
+    private static final class BlockIndex {
+
+        private static BlockIndex index;
+
+        private final long modified;
+        private final long length;
+        private final int[] bases;                  // ascending base addresses
+        private final String[] names;               // block name of every base, the first one in file
+
+        private BlockIndex(File file) throws IOException {
+            modified = file.lastModified();
+            length = file.length();
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            Integer[] order = new Integer[lines.size()];
+            int[] allBases = new int[lines.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                allBases[i] = Integer.parseInt(lines.get(i).split("<")[1]);
+            }
+            Arrays.sort(order, (x, y) -> Integer.compare(allBases[x], allBases[y]));   // stable, first line wins
+            int[] sortedBases = new int[order.length];
+            String[] sortedNames = new String[order.length];
+            int count = 0;
+            for (Integer i : order) {
+                if ((count > 0) && (sortedBases[count - 1] == allBases[i])) {
+                    continue;
+                }
+                sortedBases[count] = allBases[i];
+                sortedNames[count++] = lines.get(i);
             }
-            br2.close();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+            bases = Arrays.copyOf(sortedBases, count);
+            names = Arrays.copyOf(sortedNames, count);
         }
 
-        return bika;
-    }
-    // return the name of instance that key belongs to
+        /**
+         * Method to get index of global_scheme.info, file is read again only if
+         * it was changed.
+         */
+        private static synchronized BlockIndex getIndex() throws IOException {
+            File file = new File(GLOBAL_SCHEME_PATH);
+            if ((index == null) || (index.modified != file.lastModified()) || (index.length != file.length())) {
+                index = new BlockIndex(file);
+            }
+            return index;
+        }
 
-    private static String findbika(int bika) {
-        int i = 0;
-        String cname;
-        try {
-            BufferedReader br3 = new BufferedReader(new FileReader("c:\\CYGELENG\\electric\\global_scheme.info"));
-            String line;
-            while ((line = br3.readLine()) != null) {
-                cname = line;
-                String[] parts = cname.split("<");
-                String part2 = parts[1];
-                if (Integer.parseInt(part2) == bika) {
-                    //return i;
-                    return cname;
-                }
-                i++;
+        /**
+         * Method to find base of instance which is the closest to key but less
+         * or equal, 0 if there is no such instance.
+         */
+        private int findInst(int alis) {
+            int pos = Arrays.binarySearch(bases, alis);
+            if (pos < 0) {
+                pos = -pos - 2;
             }
-            br3.close();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+            return (pos < 0) ? 0 : bases[pos];
+        }
+
+        /**
+         * Method to get the name of instance with this base, null if there is
+         * no such instance.
+         */
+        private String findbika(int bika) {
+            int pos = Arrays.binarySearch(bases, bika);
+            return (pos < 0) ? null : names[pos];
         }
-        return null;
     }
 
     /**
@@ -152,7 +169,9 @@ public class ImportKeys {
      */
     public static void controller(Cell cell) throws IOException {
         System.out.println(Thread.currentThread().getName());
+        KeyConfiguration.flushAll();                                    // keys found by autotracing must be in file
         HashMap<PortInst, PortInst> arcsToImport = new HashMap<>();
+        ArcChangeBatch batch = new ArcChangeBatch("Create New Arcs");      // all arcs of import are created by one job
         //System.out.println("Script started");
         boolean nextAuto = true;
         String DirF = Accessory.CONFIG_PATH;
@@ -160,7 +179,7 @@ public class ImportKeys {
         Cell curcell;
         if (cell == null) {
             nextAuto = false;
-            curcell = Job.getUserInterface().getCurrentCell();
+            curcell = Accessory.getCurrentCell();
             JFileChooser chooser = new JFileChooser();
             File Dir = new File("c:\\CYGELENG\\config");
             chooser.setCurrentDirectory(Dir);
@@ -185,11 +204,22 @@ public class ImportKeys {
         }
 
         File f = new File(DirF);
-        float count = getStringCount(f);
+        float count = f.length();
+        BlockIndex blockIndex = null;
+        try {
+            blockIndex = BlockIndex.getIndex();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        Map<String, List<NodeInst>> nodesByProto = new HashMap<>();
+        Iterator<NodeInst> cellNodeItr = curcell.getNodes();
+        while (cellNodeItr.hasNext()) {
+            NodeInst node = cellNodeItr.next();
+            nodesByProto.computeIfAbsent(node.getProto().getName(), name -> new ArrayList<>()).add(node);
+        }
 
-        int k = 0;
         double size = 0.5;
-        String[] key = new String[50000];
+        String key;
         int keyquant;
         String keyName;
         // each string from import.txt is checking for key and instance(from global_scheme)
@@ -198,18 +228,19 @@ public class ImportKeys {
             int percentage_last = 0;
             String line;
             while ((line = br.readLine()) != null) {
+                count_cont += line.length() + 1;                        // progress is counted in bytes, file isn't read twice
                 if (line.equals("")) {
                     continue;
                 }
                 boolean needExtended = true;
                 // That isn't really good solution coz it's always exception when key is from ++ version.
                 try {
-                    key[k] = line;
-                    keyquant = findInst(Integer.parseInt(key[k]));
-                    keyName = findbika(keyquant);
-                    int diff_import = Integer.parseInt(key[k]) - keyquant;
-                    String diff_key_not_SPM = ("n" + ((Integer.parseInt(key[k]) - keyquant) * 2 + 1));
-                    String diff_key_not_SPM_1 = ("n" + ((Integer.parseInt(key[k]) - keyquant) * 2 + 2));
+                    key = line;
+                    keyquant = blockIndex.findInst(Integer.parseInt(key));
+                    keyName = blockIndex.findbika(keyquant);
+                    int diff_import = Integer.parseInt(key) - keyquant;
+                    String diff_key_not_SPM = ("n" + ((Integer.parseInt(key) - keyquant) * 2 + 1));
+                    String diff_key_not_SPM_1 = ("n" + ((Integer.parseInt(key) - keyquant) * 2 + 2));
                     String SPM_check = keyName.substring(0, 3);
                     String diff_key_SPM = "";
                     String diff_key_SPM_1 = "";
@@ -218,81 +249,76 @@ public class ImportKeys {
                             diff_key_SPM = diff_key_not_SPM;
                             diff_key_SPM_1 = diff_key_not_SPM_1;
                         } else if ((diff_import > 107) && (diff_import <= 279)) {
-                            diff_key_SPM = ("o" + (((Integer.parseInt(key[k]) - keyquant) - 108) * 2 + 1));
-                            diff_key_SPM_1 = ("o" + (((Integer.parseInt(key[k]) - keyquant) - 108) * 2 + 2));
+                            diff_key_SPM = ("o" + (((Integer.parseInt(key) - keyquant) - 108) * 2 + 1));
+                            diff_key_SPM_1 = ("o" + (((Integer.parseInt(key) - keyquant) - 108) * 2 + 2));
                         } else if ((diff_import > 279) && (diff_import <= 507)) {
-                            diff_key_SPM = ("p" + (((Integer.parseInt(key[k]) - keyquant) - 280) * 2 + 1));
-                            diff_key_SPM_1 = ("p" + (((Integer.parseInt(key[k]) - keyquant) - 280) * 2 + 2));
+                            diff_key_SPM = ("p" + (((Integer.parseInt(key) - keyquant) - 280) * 2 + 1));
+                            diff_key_SPM_1 = ("p" + (((Integer.parseInt(key) - keyquant) - 280) * 2 + 2));
                         } else if ((diff_import > 507) && (diff_import <= 679)) {
-                            diff_key_SPM = ("q" + (((Integer.parseInt(key[k]) - keyquant) - 508) * 2 + 1));
-                            diff_key_SPM_1 = ("q" + (((Integer.parseInt(key[k]) - keyquant) - 508) * 2 + 2));
+                            diff_key_SPM = ("q" + (((Integer.parseInt(key) - keyquant) - 508) * 2 + 1));
+                            diff_key_SPM_1 = ("q" + (((Integer.parseInt(key) - keyquant) - 508) * 2 + 2));
                         } else if ((diff_import > 679) && (diff_import <= 907)) {
-                            diff_key_SPM = ("r" + (((Integer.parseInt(key[k]) - keyquant) - 680) * 2 + 1));
-                            diff_key_SPM_1 = ("r" + (((Integer.parseInt(key[k]) - keyquant) - 680) * 2 + 2));
+                            diff_key_SPM = ("r" + (((Integer.parseInt(key) - keyquant) - 680) * 2 + 1));
+                            diff_key_SPM_1 = ("r" + (((Integer.parseInt(key) - keyquant) - 680) * 2 + 2));
                         } else if ((diff_import > 907) && (diff_import <= 1079)) {
-                            diff_key_SPM = ("s" + (((Integer.parseInt(key[k]) - keyquant) - 908) * 2 + 1));
-                            diff_key_SPM_1 = ("s" + (((Integer.parseInt(key[k]) - keyquant) - 908) * 2 + 2));
+                            diff_key_SPM = ("s" + (((Integer.parseInt(key) - keyquant) - 908) * 2 + 1));
+                            diff_key_SPM_1 = ("s" + (((Integer.parseInt(key) - keyquant) - 908) * 2 + 2));
                         } else if ((diff_import > 1079) && (diff_import <= 1307)) {
-                            diff_key_SPM = ("t" + (((Integer.parseInt(key[k]) - keyquant) - 1080) * 2 + 1));
-                            diff_key_SPM_1 = ("t" + (((Integer.parseInt(key[k]) - keyquant) - 1080) * 2 + 2));
+                            diff_key_SPM = ("t" + (((Integer.parseInt(key) - keyquant) - 1080) * 2 + 1));
+                            diff_key_SPM_1 = ("t" + (((Integer.parseInt(key) - keyquant) - 1080) * 2 + 2));
                         } else if ((diff_import > 1307) && (diff_import <= 1479)) {
-                            diff_key_SPM = ("u" + (((Integer.parseInt(key[k]) - keyquant) - 1308) * 2 + 1));
-                            diff_key_SPM_1 = ("u" + (((Integer.parseInt(key[k]) - keyquant) - 1308) * 2 + 2));
+                            diff_key_SPM = ("u" + (((Integer.parseInt(key) - keyquant) - 1308) * 2 + 1));
+                            diff_key_SPM_1 = ("u" + (((Integer.parseInt(key) - keyquant) - 1308) * 2 + 2));
                         } else if ((diff_import > 1479) && (diff_import <= 1707)) {
-                            diff_key_SPM = ("v" + (((Integer.parseInt(key[k]) - keyquant) - 1480) * 2 + 1));
-                            diff_key_SPM_1 = ("v" + (((Integer.parseInt(key[k]) - keyquant) - 1480) * 2 + 2));
+                            diff_key_SPM = ("v" + (((Integer.parseInt(key) - keyquant) - 1480) * 2 + 1));
+                            diff_key_SPM_1 = ("v" + (((Integer.parseInt(key) - keyquant) - 1480) * 2 + 2));
                         } else if ((diff_import > 1707) && (diff_import <= 1815)) {
-                            diff_key_SPM = ("w" + (((Integer.parseInt(key[k]) - keyquant) - 1708) * 2 + 1));
-                            diff_key_SPM_1 = ("w" + (((Integer.parseInt(key[k]) - keyquant) - 1708) * 2 + 2));
+                            diff_key_SPM = ("w" + (((Integer.parseInt(key) - keyquant) - 1708) * 2 + 1));
+                            diff_key_SPM_1 = ("w" + (((Integer.parseInt(key) - keyquant) - 1708) * 2 + 2));
                         }
                     }
 
-                    NodeInst z;
-                    Iterator<NodeInst> nodeItr = curcell.getNodes();
-                    while (nodeItr.hasNext()) {
-                        z = nodeItr.next();
-                        if (z.getProto().getName().equals(keyName)) {
-                            int expnum = z.getNumPortInsts();
-                            int j = 0;
-                            while (j < expnum) {
-                                PortInst z_exp1 = z.getPortInst(j);
-                                j++;
-                                String myString = z_exp1.toString();
-                                String[] parts1 = myString.split("].");
-                                String name1 = parts1[1];
-                                if (name1.equals(diff_key_not_SPM + "'")) {
-                                    int q = 0;
-                                    while (q < expnum) {
-                                        PortInst z_exp2 = z.getPortInst(q);
-                                        String myString2 = z_exp2.toString();
-                                        String[] parts2 = myString2.split("].");
-                                        String name2 = parts2[1];
-                                        if (name2.equals(diff_key_not_SPM_1 + "'")) {
-                                            //ArcProto arc = Generic.tech().universal_arc;
-                                            //new CreateNewArc(arc, z_exp1, z_exp2, size);
-                                            arcsToImport.put(z_exp1, z_exp2);
-                                            needExtended = false;
-                                        }
-                                        q++;
+                    for (NodeInst z : nodesByProto.getOrDefault(keyName, new ArrayList<>())) {
+                        int expnum = z.getNumPortInsts();
+                        int j = 0;
+                        while (j < expnum) {
+                            PortInst z_exp1 = z.getPortInst(j);
+                            j++;
+                            String myString = z_exp1.toString();
+                            String[] parts1 = myString.split("].");
+                            String name1 = parts1[1];
+                            if (name1.equals(diff_key_not_SPM + "'")) {
+                                int q = 0;
+                                while (q < expnum) {
+                                    PortInst z_exp2 = z.getPortInst(q);
+                                    String myString2 = z_exp2.toString();
+                                    String[] parts2 = myString2.split("].");
+                                    String name2 = parts2[1];
+                                    if (name2.equals(diff_key_not_SPM_1 + "'")) {
+                                        //ArcProto arc = Generic.tech().universal_arc;
+                                        //new CreateNewArc(arc, z_exp1, z_exp2, size);
+                                        arcsToImport.put(z_exp1, z_exp2);
+                                        needExtended = false;
                                     }
+                                    q++;
                                 }
-                                if (name1.equals(diff_key_SPM + "'")) {
-                                    int q = 0;
-                                    while (q < expnum) {
-                                        PortInst z_exp2 = z.getPortInst(q);
-                                        String myString2 = z_exp2.toString();
-                                        String[] parts2 = myString2.split("].");
-                                        String name2 = parts2[1];
-                                        if (name2.equals(diff_key_SPM_1 + "'")) {
-                                            //ArcProto arc = Generic.tech().universal_arc;
-                                            //Job job = new CreateNewArc(arc, z_exp1, z_exp2, size);
-                                            arcsToImport.put(z_exp1, z_exp2);
-                                            needExtended = false;
-                                            /*while (job.getStatus().equals("done")) {
-                                        }*/
-                                        }
-                                        q++;
+                            }
+                            if (name1.equals(diff_key_SPM + "'")) {
+                                int q = 0;
+                                while (q < expnum) {
+                                    PortInst z_exp2 = z.getPortInst(q);
+                                    String myString2 = z_exp2.toString();
+                                    String[] parts2 = myString2.split("].");
+                                    String name2 = parts2[1];
+                                    if (name2.equals(diff_key_SPM_1 + "'")) {
+                                        //ArcProto arc = Generic.tech().universal_arc;
+                                        //Job job = new CreateNewArc(arc, z_exp1, z_exp2, size);
+                                        arcsToImport.put(z_exp1, z_exp2);
+                                        needExtended = false;
+                                        /*while (job.getStatus().equals("done")) {
+                                    }*/
                                     }
+                                    q++;
                                 }
                             }
                         }
@@ -302,7 +328,7 @@ public class ImportKeys {
                 }
                 if (needExtended) {
                     //Accessory.printLog("needExtended");
-                    int keyNum = Integer.valueOf(key[k]);
+                    int keyNum = Integer.valueOf(line);
                     Iterator<NodeInst> niItr = curcell.getNodes();
                     while (niItr.hasNext()) {
                         NodeInst node = niItr.next();
@@ -316,7 +342,7 @@ public class ImportKeys {
 
                         if (keyNode != null) {
                             try {
-                                closeKey(node, keyNode);
+                                closeKey(node, keyNode, batch);
                             } catch (FunctionalException fe) {
                                 fe.printStackTrace();
                             }
@@ -325,7 +351,6 @@ public class ImportKeys {
                     }
                 }
 
-                count_cont += 1;
                 if (percentage_last != ((int) ((count_cont / count) * 100))) {
                     System.out.println((int) ((count_cont / count) * 100) + "%");
                     percentage_last = ((int) ((count_cont / count) * 100));
@@ -334,10 +359,12 @@ public class ImportKeys {
             }
         }
         System.out.println("Starting import to scheme");
-        ArcProto arc = Generic.tech().universal_arc;
-        Job job = new CreateLotsOfNewArcs(arc, arcsToImport, size);
+        for (Map.Entry<PortInst, PortInst> entry : arcsToImport.entrySet()) {
+            batch.addArc(entry.getKey(), entry.getValue(), size);
+        }
+        batch.start();
         if (nextAuto) {
-            new NextStepForAutotracing(cell);
+            new ExportKeys.ExportAfter(cell).startJobAfter(batch);
         }
 
     }
@@ -383,7 +410,7 @@ public class ImportKeys {
     * THERE SHOULDN'T BE MORE THAN 1 
     * @Param key SHOULD BE ONLY KEY, ONLY WITH PORTS X,Y,M1,M2.
      */
-    private static boolean closeKey(NodeInst ni, NodeInst key) throws FunctionalException {
+    private static boolean closeKey(NodeInst ni, NodeInst key, ArcChangeBatch batch) throws FunctionalException {
         Iterator<PortInst> itrPorts = key.getPortInsts();
         PortInst outsidePort1 = null;
         PortInst outsidePort2 = null;
@@ -448,8 +475,7 @@ public class ImportKeys {
 
         if ((outsidePort1 != null) && (outsidePort2 != null)) {
             double size = 0.5;
-            ArcProto arc = Generic.tech().universal_arc;
-            new CreateNewArc(arc, outsidePort1, outsidePort2, size);
+            batch.addArc(outsidePort1, outsidePort2, size);
             return true;
         }
 
@@ -502,107 +528,4 @@ public class ImportKeys {
         }
     }
 
-    /**
-     * Class for "CreateNewArc", class realises createNewArc Job to avoid
-     * "database changes are forbidden" error.
-     */
-    private static class CreateNewArc extends Job {
-
-        ArcProto ap;
-        double size;
-        PortInst firstPort;
-        PortInst secondPort;
-
-        public CreateNewArc(ArcProto arc, PortInst firstPort, PortInst secondPort, double size) {
-            super("Create New Arc", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            this.ap = arc;
-            this.firstPort = firstPort;
-            this.secondPort = secondPort;
-            this.size = size;
-            startJob();
-        }
-
-        @Override
-        public boolean doIt() throws JobException {
-            EditingPreferences ep = EditingPreferences.getInstance();
-            ArcInst newArc = ArcInst.makeInstance(ap, ep, firstPort, secondPort);
-            newArc.setLambdaBaseWidth(size);
-            return true;
-        }
-    }
-
-    /**
-     * Class for "CreateNewArc", class realises createNewArc Job to avoid
-     * "database changes are forbidden" error.
-     */
-    private static class NextStepForAutotracing extends Job {
-
-        Cell cell;
-
-        public NextStepForAutotracing(Cell cell) {
-            super("Next Step For Autotracing", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            this.cell = cell;
-            startJob();
-        }
-
-        @Override
-        public boolean doIt() throws JobException {
-            Iterator<Job> itrJob = Job.getAllJobs();
-            while (itrJob.hasNext()) {
-                Job job = itrJob.next();
-                if (job.toString().contains("Create New Arc")) {
-                    while (!job.isFinished()) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(100);
-                        } catch (Exception e) {
-                        }
-                    }
-                }
-            }
-            new ExportKeys.ExportAfter(cell);
-            return true;
-        }
-    }
-
-    /**
-     * Class for "CreateNewArc", class realises createNewArc Job to avoid
-     * "database changes are forbidden" error.
-     */
-    private static class CreateLotsOfNewArcs extends Job {
-
-        private ArcProto ap;
-        private double size;
-        private final HashMap<PortInst, PortInst> mapOfPortPairs;
-
-        public CreateLotsOfNewArcs(ArcProto arc, HashMap<PortInst, PortInst> setOfPortPairs, double size) {
-            super("Create New Arc", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
-            this.ap = arc;
-            this.mapOfPortPairs = setOfPortPairs;
-            this.size = size;
-            startJob();
-        }
-
-        @Override
-        public boolean doIt() throws JobException {
-            EditingPreferences ep = EditingPreferences.getInstance();
-            mapOfPortPairs.entrySet().stream().map((entry) -> {
-                PortInst port1 = entry.getKey();
-                PortInst port2 = entry.getValue();
-                ArcInst newArc = ArcInst.makeInstance(ap, ep, port1, port2);
-                return newArc;
-            }).forEachOrdered((newArc) -> {
-                newArc.setLambdaBaseWidth(size);
-            });
-            /*mapOfPortPairs.stream().map((portsPair) -> {
-                PortInst firstPort = portsPair.getFirstObject();
-                PortInst secondPort = portsPair.getSecondObject();
-                ArcInst newArc = ArcInst.makeInstance(ap, ep, firstPort, secondPort);
-                return newArc;
-            }).forEachOrdered((newArc) -> {
-                newArc.setLambdaBaseWidth(size);
-            });*/
-            return true;
-        }
-    }
-
 }
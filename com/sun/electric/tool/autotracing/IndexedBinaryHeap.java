@@ -0,0 +1,188 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: IndexedBinaryHeap.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.Arrays;
+
+/**
+ * This class implements the same min-heap as BinaryHeapNew, but keys are
+ * limited to [0, capacity) and kept in primitive arrays with a position map,
+ * so lookup of existing key is O(1) and decrease-key is O(log n).
+ */
+public class IndexedBinaryHeap {
+
+    private final int[] heapKeys;           // heap order -> key
+    private final int[] heapValues;         // heap order -> value
+    private final int[] positions;          // key -> heap order, -1 if key is not in heap
+    private int size;
+    private int operations;                 // adds and extractions, used for metrics of search
+    private int extracted;                  // keys taken from heap
+
+    /**
+     * Constructor: keys those can be added to heap are 0..capacity-1.
+     *
+     * @param capacity
+     */
+    public IndexedBinaryHeap(int capacity) {
+        heapKeys = new int[capacity];
+        heapValues = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    /**
+     * Method to get full size of heap
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to check if key is waiting in heap.
+     *
+     * @param key
+     * @return
+     */
+    public boolean contains(int key) {
+        return positions[key] != -1;
+    }
+
+    /**
+     * Method to add element to heap, Method is using key-value pair as element.
+     * If key is already in heap, value is only decreased.
+     *
+     * @param value
+     * @param key
+     */
+    public void add(int value, int key) {
+        operations++;
+        int pos = positions[key];
+        if (pos != -1) {
+            if (value < heapValues[pos]) {
+                heapValues[pos] = value;
+                heapifyUp(pos);
+            }
+            return;
+        }
+        heapKeys[size] = key;
+        heapValues[size] = value;
+        positions[key] = size;
+        size++;
+        heapifyUp(size - 1);
+    }
+
+    /**
+     * Method to get minimum key of elements.
+     *
+     * @return -1 if heap is empty.
+     */
+    public int getMinKey() {
+        if (size == 0) {
+            return -1;
+        }
+        operations++;
+        extracted++;
+        int result = heapKeys[0];
+        positions[result] = -1;
+        size--;
+        if (size > 0) {
+            heapKeys[0] = heapKeys[size];
+            heapValues[0] = heapValues[size];
+            positions[heapKeys[0]] = 0;
+            heapifyDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Method to get number of adds and extractions since heap was created.
+     *
+     * @return
+     */
+    public int getOperations() {
+        return operations;
+    }
+
+    /**
+     * Method to get number of keys taken from heap since heap was created,
+     * it is the number of vertices settled by search.
+     *
+     * @return
+     */
+    public int getExtracted() {
+        return extracted;
+    }
+
+    /**
+     * Method to remove all elements, heap can be reused after that.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heapKeys[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void heapifyUp(int i) {
+        int parent = (i - 1) / 2;
+        while (i > 0 && heapValues[parent] > heapValues[i]) {
+            swap(i, parent);
+            i = parent;
+            parent = (i - 1) / 2;
+        }
+    }
+
+    /**
+     * Typical heapify with key comparator.
+     */
+    private void heapifyDown(int i) {
+        for (;;) {
+            int leftChild = 2 * i + 1;
+            int rightChild = 2 * i + 2;
+            int smallestChild = i;
+
+            if (leftChild < size && heapValues[leftChild] < heapValues[smallestChild]) {
+                smallestChild = leftChild;
+            }
+            if (rightChild < size && heapValues[rightChild] < heapValues[smallestChild]) {
+                smallestChild = rightChild;
+            }
+            if (smallestChild == i) {
+                break;
+            }
+            swap(i, smallestChild);
+            i = smallestChild;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int tempKey = heapKeys[i];
+        int tempValue = heapValues[i];
+        heapKeys[i] = heapKeys[j];
+        heapValues[i] = heapValues[j];
+        heapKeys[j] = tempKey;
+        heapValues[j] = tempValue;
+        positions[heapKeys[i]] = i;
+        positions[heapKeys[j]] = j;
+    }
+}
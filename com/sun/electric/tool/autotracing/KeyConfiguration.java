@@ -0,0 +1,257 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: KeyConfiguration.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps keys of configuration file (Autotracing.txt,
+ * wmconfig.txt) in memory. Keys are added without opening file, set of keys
+ * is sorted and has no duplicates, file is written once by flush, so the
+ * same configuration always gives the same file. While autotracing attempt
+ * of portfolio mode is active in thread, attempt gets it's own copy of
+ * configuration, which is never written to file. Length and modification
+ * time of file are kept with keys, so keys are loaded again if file was
+ * changed by somebody else.
+ */
+public final class KeyConfiguration {
+
+    private static final Map<String, KeyConfiguration> configurations = new HashMap<>();
+
+    private final File file;
+    private final BitSet keys;
+    private final boolean detached;                                 // copy of autotracing attempt, file isn't touched
+    private boolean dirty = false;                                  // keys are changed after last flush
+    private long fileLength = -1;                                   // length of file when keys were loaded or written
+    private long fileModified = -1;                                 // modification time of file when keys were loaded or written
+
+    /**
+     * Method to get configuration of file, keys those are already in file are
+     * loaded when configuration is used first time or when file was changed
+     * after keys were loaded.
+     *
+     * @param fileName
+     * @return
+     */
+    public static KeyConfiguration getConfiguration(String fileName) {
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            return attempt.getConfiguration(fileName);
+        }
+        return getSharedConfiguration(fileName);
+    }
+
+    /**
+     * Method to get configuration of file which is shared by all threads.
+     *
+     * @param fileName
+     * @return
+     */
+    static synchronized KeyConfiguration getSharedConfiguration(String fileName) {
+        KeyConfiguration configuration = configurations.get(fileName);
+        if (configuration == null) {
+            configuration = new KeyConfiguration(new File(fileName));
+            configurations.put(fileName, configuration);
+        } else {
+            configuration.reloadIfChanged();
+        }
+        return configuration;
+    }
+
+    /**
+     * Method to write all changed configurations to their files.
+     */
+    public static synchronized void flushAll() {
+        for (KeyConfiguration configuration : configurations.values()) {
+            configuration.flush();
+        }
+    }
+
+    private KeyConfiguration(File file) {
+        this.file = file;
+        this.keys = new BitSet();
+        this.detached = false;
+        load();
+    }
+
+    private KeyConfiguration(KeyConfiguration source) {
+        synchronized (source) {
+            this.file = source.file;
+            this.keys = (BitSet) source.keys.clone();
+        }
+        this.detached = true;
+    }
+
+    /**
+     * Method to load keys from file, keys in memory are replaced.
+     */
+    private synchronized void load() {
+        keys.clear();
+        dirty = false;
+        rememberFileStamp();
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        keys.set(Integer.parseInt(line));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Configuration " + file + " is not loaded: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to load keys again if file was changed after keys were loaded or
+     * written. Keys changed after last flush are kept, they will replace file
+     * by next flush.
+     */
+    private synchronized void reloadIfChanged() {
+        if (dirty || ((file.length() == fileLength) && (file.lastModified() == fileModified))) {
+            return;
+        }
+        load();
+    }
+
+    /**
+     * Method to remember length and modification time of file, both are 0 if
+     * file doesn't exist.
+     */
+    private void rememberFileStamp() {
+        fileLength = file.length();
+        fileModified = file.lastModified();
+    }
+
+    /**
+     * Method to create copy of configuration for autotracing attempt, copy
+     * never writes file.
+     *
+     * @return
+     */
+    KeyConfiguration createDetachedCopy() {
+        return new KeyConfiguration(this);
+    }
+
+    /**
+     * Method to replace keys with keys of another configuration, it is used
+     * to take keys of winning autotracing attempt.
+     *
+     * @param source
+     */
+    void replaceKeys(KeyConfiguration source) {
+        BitSet copy;
+        synchronized (source) {
+            copy = (BitSet) source.keys.clone();
+        }
+        synchronized (this) {
+            if (!keys.equals(copy)) {
+                keys.clear();
+                keys.or(copy);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Method to add key to configuration.
+     *
+     * @param key
+     */
+    public synchronized void addKey(int key) {
+        if (!keys.get(key)) {
+            keys.set(key);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Method to check if key is in configuration.
+     *
+     * @param key
+     * @return
+     */
+    public synchronized boolean containsKey(int key) {
+        return keys.get(key);
+    }
+
+    /**
+     * Method to get all keys in ascending order.
+     *
+     * @return
+     */
+    public synchronized int[] getKeys() {
+        return keys.stream().toArray();
+    }
+
+    /**
+     * Method to get keys from..to-1 in ascending order.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public synchronized int[] getKeys(int from, int to) {
+        return keys.get(from, to).stream().map(key -> key + from).toArray();
+    }
+
+    /**
+     * Method to remove all keys, file is cleaned at once.
+     */
+    public synchronized void clear() {
+        keys.clear();
+        dirty = false;
+        if (!detached) {
+            Accessory.cleanFile(file.getPath());
+            rememberFileStamp();
+        }
+    }
+
+    /**
+     * Method to write keys to file, one key per line in ascending order, file
+     * is written only if keys were changed.
+     */
+    public synchronized void flush() {
+        if (!dirty || detached) {
+            return;
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int key = keys.nextSetBit(0); key >= 0; key = keys.nextSetBit(key + 1)) {
+                writer.write(Integer.toString(key));
+                writer.newLine();
+            }
+            dirty = false;
+        } catch (IOException ioe) {
+            System.err.println("IOException: " + ioe.getMessage());
+            return;
+        }
+        rememberFileStamp();
+    }
+}
@@ -0,0 +1,119 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: LandmarkTable.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps hop distances from several landmark chains to every chain
+ * of global graph, it is used as lower bound of the way length in A* search.
+ * Every link between chains costs at least one key in CB, so the number of
+ * hops is never greater than the real length of the way. Chains can only be
+ * deleted after table is built, so hop distances can only grow and the bound
+ * stays admissible.
+ */
+final class LandmarkTable {
+
+    private static final int LANDMARK_COUNT = 8;
+    private static final int MIN_LINK_WEIGHT = 1;           // the smallest weight of link between chains
+    private static final int UNREACHABLE = -1;
+
+    private final int[][] hops;                             // landmark -> hop distance of every chain, UNREACHABLE if no way
+
+    /**
+     * Constructor: landmarks are chosen one by one as the chain farthest from
+     * landmarks chosen before.
+     *
+     * @param adjacency
+     * @param vertexArray
+     * @param vertexCount
+     */
+    LandmarkTable(ChainAdjacency adjacency, Chain[] vertexArray, int vertexCount) {
+        int first = -1;
+        for (int v = 0; v < vertexCount; v++) {
+            if (vertexArray[v] != null) {
+                first = v;
+                break;
+            }
+        }
+        int[][] table = new int[LANDMARK_COUNT][];
+        int count = 0;
+        int[] closest = new int[vertexCount];                       // hops to the closest landmark
+        Arrays.fill(closest, Integer.MAX_VALUE);
+        int landmark = first;
+        while ((landmark != -1) && (count < LANDMARK_COUNT)) {
+            int[] row = countHops(adjacency, landmark, vertexArray.length, vertexCount);
+            table[count++] = row;
+            int farthest = -1;
+            for (int v = 0; v < vertexCount; v++) {
+                if ((vertexArray[v] == null) || (row[v] == UNREACHABLE)) {
+                    continue;
+                }
+                closest[v] = Math.min(closest[v], row[v]);
+                if ((closest[v] > 0) && ((farthest == -1) || (closest[v] > closest[farthest]))) {
+                    farthest = v;
+                }
+            }
+            landmark = farthest;
+        }
+        hops = Arrays.copyOf(table, count);
+    }
+
+    /**
+     * Method to get lower bound of the way length between two chains.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    int getLowerBound(int from, int to) {
+        int bound = 0;
+        for (int[] row : hops) {
+            if ((row[from] == UNREACHABLE) || (row[to] == UNREACHABLE)) {
+                continue;
+            }
+            bound = Math.max(bound, Math.abs(row[from] - row[to]));
+        }
+        return bound * MIN_LINK_WEIGHT;
+    }
+
+    /**
+     * Method counts hop distances from one chain using breadth-first search.
+     */
+    private static int[] countHops(ChainAdjacency adjacency, int start, int length, int vertexCount) {
+        int[] row = new int[length];
+        Arrays.fill(row, UNREACHABLE);
+        int[] queue = new int[vertexCount];
+        int head = 0;
+        int tail = 0;
+        row[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int u : adjacency.expand(v, null)) {
+                if (row[u] == UNREACHABLE) {
+                    row[u] = row[v] + 1;
+                    queue[tail++] = u;
+                }
+            }
+        }
+        return row;
+    }
+}
@@ -22,12 +22,8 @@ package com.sun.electric.tool.autotracing;
 import java.util.ArrayList;
 import java.util.List;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.File;
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Objects;
 
 /**
  * This class is used to describe local CB graph, this global graph is the
@@ -36,14 +32,19 @@ import java.util.Objects;
 public final class NonOrientedCBGraph extends NonOrientedGraph {
 
     private final int VERTEX_MAX = 54;
-    private final int GLOBAL_VERTS = 26;
-    private final String[] globVerts = {"X11", "X12", "X13", "X14", "X15", "X16", "X21", "X22", "X23", "X24", "X25", "X26",
-        "Y11", "Y12", "Y13", "Y14", "Y15", "Y16", "Y21", "Y22", "Y23", "Y24", "Y25", "Y26",
-        "X", "Y"};
+    private final int GLOBAL_VERTS = BlockSymbolTable.GLOBAL_CB_PORTS.length;   // port id of global vertex is it's index in links matrix
 
     private int[][] matrix; // Adjacency matrix
-    private String[][] keyMatrix; // matrix for key values (key number in CB.trc)
+    private int[][] keyMatrix; // matrix for key values (key number in CB.trc)
     private int linksMatrix[][];
+    private int[] vertexPorts = new int[0]; // vertex -> port id
+    private int[] portVertices = new int[0]; // port id -> vertex, -1 if there is no such vertex
+    private final int blockNumber; // "216" for "CB<216"
+    private final CBTemplate template; // the same structure of every CB
+    private boolean modified = false; // true if vertex was deleted, links matrix of template can't be used
+    private int[][] distRows = new int[GLOBAL_VERTS][]; // global port -> path counts of all verteces from it, null if not counted
+    private boolean distKnown = false; // true if distRows are counted for every alive global vertex
+    private List<Integer> deletedSinceRefresh = new ArrayList<>(); // verteces deleted after last refresh of links matrix
 
     private List<Integer> VertToDeleteList = new ArrayList<>();
     private final NonOrientedGlobalGraph creator;
@@ -56,28 +57,78 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
     public NonOrientedCBGraph(String graphName, NonOrientedGlobalGraph creator) {
         super(graphName);
         this.creator = creator;
+        this.blockNumber = BlockSymbolTable.parseBlockIndex(graphName);
         Init(VERTEX_MAX);
-        importGraphFromFile();
+        template = CBTemplate.getTemplate();
+        importGraphFromTemplate();
         linksMatrix = new int[GLOBAL_VERTS][GLOBAL_VERTS];
-        for (int i = 0; i < GLOBAL_VERTS; i++) {
-            for (int j = 0; j < GLOBAL_VERTS; j++) {
-                this.linksMatrix[i][j] = 0;
+        template.copyLinksMatrix(linksMatrix);
+        UseSchemeConfiguration(blockNumber);
+    }
+
+    /**
+     * Constructor: graph of template without keys of scheme configuration and
+     * without global graph, used by NonOrientedCBGraphTest. Only verteces
+     * which aren't used by autotracing can be deleted.
+     *
+     * @param graphName
+     * @param template
+     */
+    NonOrientedCBGraph(String graphName, CBTemplate template) {
+        super(graphName);
+        this.creator = null;
+        this.blockNumber = BlockSymbolTable.parseBlockIndex(graphName);
+        Init(VERTEX_MAX);
+        this.template = template;
+        importGraphFromTemplate();
+        linksMatrix = new int[GLOBAL_VERTS][GLOBAL_VERTS];
+        template.copyLinksMatrix(linksMatrix);
+    }
+
+    /**
+     * Constructor: copy constructor, copy is linked to another global graph,
+     * used by search overlay of global graph before changing CB graph.
+     *
+     * @param graphToCopy
+     * @param creator
+     */
+    public NonOrientedCBGraph(NonOrientedCBGraph graphToCopy, NonOrientedGlobalGraph creator) {
+        super(graphToCopy.getLabel());
+        this.creator = creator;
+        this.blockNumber = graphToCopy.blockNumber;
+        this.template = graphToCopy.template;
+        this.modified = graphToCopy.modified;
+        this.distRows = graphToCopy.distRows.clone();           // rows are replaced, never changed
+        this.distKnown = graphToCopy.distKnown;
+        this.deletedSinceRefresh = new ArrayList<>(graphToCopy.deletedSinceRefresh);
+        this.vertexCount = graphToCopy.vertexCount;
+        this.matrix = new int[VERTEX_MAX][];
+        for (int i = 0; i < VERTEX_MAX; i++) {
+            this.matrix[i] = graphToCopy.matrix[i].clone();
+        }
+        this.keyMatrix = graphToCopy.keyMatrix;                 // never changed after import
+        this.vertexPorts = graphToCopy.vertexPorts;
+        this.portVertices = graphToCopy.portVertices;
+        this.vertexArray = new Vertex[VERTEX_MAX];
+        for (int i = 0; i < vertexCount; i++) {
+            if (graphToCopy.vertexArray[i] != null) {
+                this.vertexArray[i] = new Vertex(graphToCopy.vertexArray[i].getLabel());
             }
         }
-        try {
-            UseSchemeConfiguration(graphName);
-        } catch (IOException ioe) {
-            System.out.println("IOException found.");
-            ioe.printStackTrace();
+        this.linksMatrix = new int[GLOBAL_VERTS][];
+        for (int i = 0; i < GLOBAL_VERTS; i++) {
+            this.linksMatrix[i] = graphToCopy.linksMatrix[i].clone();
         }
+        this.VertToDeleteList = new ArrayList<>(graphToCopy.VertToDeleteList);
     }
 
     /**
      * Method is deleting verteces from local CB graph according to keys.
      *
-     * @param key
+     * @param key port id of vertex.
+     * @param forAuto
      */
-    public void deleteKeyFromCBGraph(String key, boolean forAuto) {
+    public void deleteKeyFromCBGraph(int key, boolean forAuto) {
         int keyNum = findVertex(key);
         if (keyNum != -1) {
             if(forAuto) {
@@ -110,10 +161,10 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
      * @param elemFrom
      * @param elemTo
      * @return
-     * @Params elemFrom, elemTo mean .
+     * @Params elemFrom, elemTo are port ids of global CB vertices.
      */
-    public int getWeight(String elemFrom, String elemTo) {
-        return linksMatrix[findIntForLinksMatrix(elemFrom)][findIntForLinksMatrix(elemTo)];
+    public int getWeight(int elemFrom, int elemTo) {
+        return linksMatrix[elemFrom][elemTo];
     }
 
     /**
@@ -121,9 +172,9 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
      *
      * @param elemFrom
      * @param elemTo
-     * @Params elemFrom, elemTo mean.
+     * @Params elemFrom, elemTo are port ids of global CB vertices.
      */
-    public void getConfigurationPath(String elemFrom, String elemTo) {
+    public void getConfigurationPath(int elemFrom, int elemTo) {
         deikstra(findVertex(elemFrom));
         deikstra_backway_with_config(findVertex(elemTo), findVertex(elemFrom), true);  // was false doDelete();
         resetVertices();
@@ -145,22 +196,69 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
 
     /**
      * Method using deikstra algorith to find weights between global CB vertices
-     * and refresh links matrix.
+     * and refresh links matrix. Only lines whose ways could use verteces
+     * deleted after previous refresh are counted again.
      */
     public void refreshLinksMatrix() {
-        for (int i = 0; i < GLOBAL_VERTS; i++) {
-            for (int j = 0; j < GLOBAL_VERTS; j++) {
-                this.linksMatrix[i][j] = 0;
+        if (!modified) {
+            template.copyLinksMatrix(linksMatrix);                  // nothing deleted, template ways are the same
+            deletedSinceRefresh.clear();
+            return;
+        }
+        if (!distKnown) {
+            refreshFullLinksMatrix();
+            return;
+        }
+        boolean[] affected = new boolean[GLOBAL_VERTS];
+        for (int deleted : deletedSinceRefresh) {
+            int deletedPort = vertexPorts[deleted];
+            if (BlockSymbolTable.isGlobalCBPort(deletedPort)) {
+                clearLine(deletedPort);
+                distRows[deletedPort] = null;
+            }
+            for (int from = 0; from < GLOBAL_VERTS; from++) {
+                if (!affected[from] && (distRows[from] != null)) {
+                    affected[from] = isOnShortestWay(from, deleted);
+                }
             }
         }
-        for (String vert : globVerts) {
-            int vertNum = findVertex(vert);
-            if (vertNum != -1) {
-                deikstraFindAll(vertNum);
+        deletedSinceRefresh.clear();
+        for (int from = 0; from < GLOBAL_VERTS; from++) {
+            if (affected[from]) {
+                clearLine(from);
+                distRows[from] = null;
+                int vertNum = findVertex(from);
+                if (vertNum != -1) {
+                    deikstraFindAll(vertNum);
+                }
             }
         }
     }
 
+    /**
+     * Only developer method, method to check that links matrix counted after
+     * deletions is the same as fully counted one, it is used by
+     * NonOrientedCBGraphTest.
+     *
+     * @return true if links matrix is the same as fully counted one
+     */
+    boolean checkLinksMatrix() {
+        int[][] refreshed = new int[GLOBAL_VERTS][];
+        for (int i = 0; i < GLOBAL_VERTS; i++) {
+            refreshed[i] = linksMatrix[i].clone();
+        }
+        int[][] oldDistRows = distRows;
+        boolean oldDistKnown = distKnown;
+        refreshFullLinksMatrix();
+        boolean equal = Arrays.deepEquals(refreshed, linksMatrix);
+        for (int i = 0; i < GLOBAL_VERTS; i++) {
+            linksMatrix[i] = refreshed[i];          // keep the state as it was without assertions
+        }
+        distRows = oldDistRows;
+        distKnown = oldDistKnown;
+        return equal;
+    }
+
     /**
      * Reset for using in another Global graph.
      */
@@ -177,19 +275,12 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
     @Override
     protected void Init(int VERTEX_MAX) {
         matrix = new int[VERTEX_MAX][VERTEX_MAX];
-        keyMatrix = new String[VERTEX_MAX][VERTEX_MAX];
         vertexArray = new Vertex[VERTEX_MAX];
-        for (int i = 0; i < VERTEX_MAX; i++) {
-            for (int j = 0; j < VERTEX_MAX; j++) {
-                matrix[i][j] = 0;
-                keyMatrix[i][j] = "";
-            }
-        }
     }
 
     /**
-     * Method to form new vertex in graph, TODO: remove check-for-same-label
-     * block.
+     * Method to form new vertex in graph, vertex with the same label is not
+     * added twice.
      *
      * @param vertexInfo
      * @param label
@@ -197,14 +288,16 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
      */
     @Override
     protected boolean addVertex(String vertexInfo, String label) {
-        //check for same label
-        for (int j = 0; j < vertexCount; j++) {
-            if (vertexArray[j] != null) {
-                if (vertexArray[j].getLabel().equals(label)) {
-                    return false;
-                }
-            }
+        int port = BlockSymbolTable.internPort(label);
+        if (findVertex(port) != -1) {
+            return false;
         }
+        int oldLength = portVertices.length;
+        portVertices = Arrays.copyOf(portVertices, Math.max(oldLength, Math.max(port + 1, BlockSymbolTable.getPortCount())));
+        Arrays.fill(portVertices, oldLength, portVertices.length, -1);
+        vertexPorts = Arrays.copyOf(vertexPorts, VERTEX_MAX);                   // port maps can be shared with template
+        portVertices[port] = vertexCount;
+        vertexPorts[vertexCount] = port;
         vertexArray[vertexCount++] = new Vertex(label);
         return true;
     }
@@ -227,9 +320,11 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
             }
             String label = vertexArray[count].getLabel();
             vertexArray[count] = null;
+            modified = true;
+            deletedSinceRefresh.add(count);
             Accessory.printLog(graphName);
             Accessory.printLog("label " + label);
-            creator.deleteChainCozUsedVertex(graphName, label);
+            creator.deleteChainCozUsedVertex(blockNumber, vertexPorts[count]);
         }
     }
     
@@ -249,6 +344,8 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
                 matrix[count][i] = 0;
             }
             vertexArray[count] = null;
+            modified = true;
+            deletedSinceRefresh.add(count);
         }
     }
 
@@ -296,43 +393,29 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
      * Method is using extracting keys (ExportKeysFromScheme -- ExportKeys
      * class) method to dynamically change the state of local CB graphs,
      *
-     * @Param graphName is used to find the number of block.
+     * @Param localNumber is the number of block.
      */
-    private void UseSchemeConfiguration(String graphName) throws IOException {
-        String[] p = graphName.split("<");																					// graphName xxx<1234
-        Integer localNumber = Integer.valueOf(p[1]);
-        try (BufferedReader localConfigurationReader = new BufferedReader(new FileReader(new File(Accessory.CONFIG_WITHOUT_MODELLING_PATH)))) {
-            String line;
-            while ((line = localConfigurationReader.readLine()) != null) {
-                Integer f = Integer.valueOf(line);
-                if ((f < (localNumber + Accessory.CB_PATH_LENGTH)) && (f >= localNumber)) {
-                    deleteKeyFromCBGraph(f - localNumber);
-                }
-            }
+    private void UseSchemeConfiguration(int localNumber) {
+        KeyConfiguration configuration = KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
+        for (int f : configuration.getKeys(localNumber, localNumber + Accessory.CB_PATH_LENGTH)) {
+            deleteKeyFromCBGraph(f - localNumber);
         }
     }
 
     /**
      * Method is deleting verteces from local CB graph according to keys,
-     * additive method to UseSchemeConfiguration.
+     * additive method to UseSchemeConfiguration, verteces of key are taken
+     * from template instead of reading CB file again.
      */
-    private void deleteKeyFromCBGraph(Integer key) throws IOException {
-        try (BufferedReader autotraReader = new BufferedReader(new FileReader(new File(Accessory.CB_PATH)))) {
-            String line;
-            while ((line = autotraReader.readLine()) != null) {
-                String[] p = line.split(" : ");
-                if (Objects.equals(Integer.valueOf(p[1]), key)) {
-                    String[] s = p[0].split(" -- ");
-                    deleteVertex(findVertex(s[0]));
-                    deleteVertex(findVertex(s[1]));
-                }
-            }
+    private void deleteKeyFromCBGraph(Integer key) {
+        for (int vertex : template.getKeyVertices(key)) {
+            deleteVertex(vertex);
         }
     }
 
     /**
      * Method is used to cover full graph from 1 point and to count lengths of
-     * the ways,
+     * the ways, path counts of all verteces are kept for next refresh,
      *
      * @Param startPoint shows the number of vertice in main matrix, method used
      * in cycle to cover all vertices.
@@ -340,17 +423,78 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
     private void deikstraFindAll(int startPoint) {
         deikstra(startPoint);
         renewOneLineForLinksMatrix(startPoint);
+        int[] dist = new int[VERTEX_MAX];
+        for (int i = 0; i < VERTEX_MAX; i++) {
+            dist[i] = ((i < vertexCount) && (vertexArray[i] != null)) ? vertexArray[i].getPathCount() : Vertex.MAXPATHCOUNT;
+        }
+        distRows[vertexPorts[startPoint]] = dist;
         resetVertices();
     }
 
+    /**
+     * Method to count links matrix from every global vertex.
+     */
+    private void refreshFullLinksMatrix() {
+        for (int i = 0; i < GLOBAL_VERTS; i++) {
+            for (int j = 0; j < GLOBAL_VERTS; j++) {
+                this.linksMatrix[i][j] = 0;
+            }
+        }
+        distRows = new int[GLOBAL_VERTS][];
+        for (int vert = 0; vert < GLOBAL_VERTS; vert++) {
+            int vertNum = findVertex(vert);
+            if (vertNum != -1) {
+                deikstraFindAll(vertNum);
+            }
+        }
+        distKnown = true;
+        deletedSinceRefresh.clear();
+    }
+
+    /**
+     * Method to check if deleted vertex could be used by shortest way from
+     * global vertex to another global vertex. Path counts kept from previous
+     * refreshes can only be less than real ones, so check never misses the
+     * line which should be counted again.
+     *
+     * @Param from is port id of global vertex.
+     * @Param deleted is the number of deleted vertex.
+     */
+    private boolean isOnShortestWay(int from, int deleted) {
+        int toDeleted = distRows[from][deleted];
+        if (toDeleted == Vertex.MAXPATHCOUNT) {
+            return false;                                           // was not reachable before
+        }
+        for (int to = 0; to < GLOBAL_VERTS; to++) {
+            if ((to == from) || (distRows[to] == null) || (linksMatrix[from][to] == 0)) {
+                continue;
+            }
+            int fromDeleted = distRows[to][deleted];
+            if ((fromDeleted != Vertex.MAXPATHCOUNT) && (toDeleted + fromDeleted <= linksMatrix[from][to])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to clear line and column of global vertex in links matrix.
+     */
+    private void clearLine(int port) {
+        for (int i = 0; i < GLOBAL_VERTS; i++) {
+            linksMatrix[port][i] = 0;
+            linksMatrix[i][port] = 0;
+        }
+    }
+
     /**
      * Method is used to cover full graph from 1 point and to count the length
      * of the ways, one of the local deikstraFindAll methods.
      */
     private void deikstra(int startPoint) {
-        BinaryHeapNew heap = new BinaryHeapNew();
+        IndexedBinaryHeap heap = new IndexedBinaryHeap(vertexArray.length);
         int curPathCount;
-        Integer closestVertex;
+        int closestVertex;
         int currentVertex = startPoint;
 
         vertexArray[currentVertex].setVisited(true);
@@ -377,6 +521,7 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
                 heap.add(vertexArray[currentVertex].getPathCount(), currentVertex);
             }
         }
+        TracingMetrics.addSearch(heap);
         for (int j = 0; j < vertexCount; j++) {
             if (vertexArray[j] != null) {
                 vertexArray[j].setVisited(false);
@@ -400,9 +545,8 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
             a = getCloseVerteces(currentVertex);
             for (Integer a1 : a) {
                 if (((vertexArray[currentVertex].getPathCount() - vertexArray[a1].getPathCount()) == matrix[currentVertex][a1]) && (matrix[currentVertex][a1] != 0)) {
-                    int labelNumber = Integer.parseInt(this.getLabel().split("<")[1]);
-                    labelNumber += Integer.parseInt(keyMatrix[currentVertex][a1]);
-                    Accessory.write(Accessory.CONFIG_PATH, String.valueOf(labelNumber));
+                    int labelNumber = blockNumber + keyMatrix[currentVertex][a1];
+                    KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).addKey(labelNumber);
                     currentVertex = a1;
                     VertToDeleteList.add(currentVertex);
                     break;
@@ -414,15 +558,19 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
     }
 
     /**
-     * Overloaded parent method, imports CB graph file.
+     * Method to fill graph with verteces and edges of CB template, matrix of
+     * keys and port maps are shared with template because they are never
+     * changed.
      */
-    private void importGraphFromFile() {
-        File fileForImport = new File(Accessory.CB_PATH);
-        try {
-            importGraphFromFile(fileForImport);
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+    private void importGraphFromTemplate() {
+        for (int i = 0; i < template.getVertexCount(); i++) {
+            vertexArray[i] = new Vertex(template.getLabel(i));
         }
+        vertexCount = template.getVertexCount();
+        template.copyMatrix(matrix);
+        keyMatrix = template.getKeyMatrix();
+        vertexPorts = template.getVertexPorts();
+        portVertices = template.getPortVertices();
     }
 
     /**
@@ -433,101 +581,42 @@ public final class NonOrientedCBGraph extends NonOrientedGraph {
      * @Param startPoint shows the number of vertice in main matrix.
      */
     private void renewOneLineForLinksMatrix(int startPoint) {
-        int internalInt = findIntForLinksMatrix(vertexArray[startPoint].getLabel());
+        int internalInt = vertexPorts[startPoint];
         int InternalSecondInt;
         for (int i = 0; i < vertexCount; i++) {
             if ((vertexArray[i] != null) && (i != startPoint)) {
-                for (String vert : globVerts) {
-                    if (vertexArray[i].getLabel().equals(vert)) {
-                        // linksMatrix element is 0 if there is no path.
-                        if (vertexArray[i].getPathCount() == vertexArray[i].MAXPATHCOUNT) {
-                            continue;
-                        }
-
-                        InternalSecondInt = findIntForLinksMatrix(vertexArray[i].getLabel());
-                        linksMatrix[internalInt][InternalSecondInt] = vertexArray[i].getPathCount();
-                        linksMatrix[InternalSecondInt][internalInt] = vertexArray[i].getPathCount();
+                InternalSecondInt = vertexPorts[i];
+                if (BlockSymbolTable.isGlobalCBPort(InternalSecondInt)) {
+                    // linksMatrix element is 0 if there is no path.
+                    if (vertexArray[i].getPathCount() == Vertex.MAXPATHCOUNT) {
+                        continue;
                     }
+                    linksMatrix[internalInt][InternalSecondInt] = vertexArray[i].getPathCount();
+                    linksMatrix[InternalSecondInt][internalInt] = vertexArray[i].getPathCount();
                 }
             }
         }
     }
 
-    /**
-     * Method finds the number of vertice in internal links matrix,
-     *
-     * @Param find this is the label of vertex in arrays.
-     */
-    private int findIntForLinksMatrix(String findThis) {
-        for (int j = 0; j < globVerts.length; j++) {
-            String vert = globVerts[j];
-            if (findThis.equals(vert)) {
-                return j;
-            }
-        }
-        Accessory.printLog("Something went wrong, variable is " + findThis);
-        return -1;
-    }
-
-    // Next will be internal methods to create new objects
-    /**
-     * Method to add edge to adj matrix.
-     */
-    private void addPoint(int begin, int end, int weight) {
-        matrix[begin][end] = weight;
-        matrix[end][begin] = weight;
-    }
-
-    /**
-     * Method to add edge to key values matrix.
-     */
-    private void addKeyPoint(int begin, int end, String weight) {
-        keyMatrix[begin][end] = weight;
-        keyMatrix[end][begin] = weight;
-    }
-
     /**
      * Method to find the number of vertex from it's label.
      */
     private int findVertex(String label) {
-        for (int i = 0; i < vertexCount; i++) {
-            if ((vertexArray[i] != null) && (vertexArray[i].getLabel().equals(label))) {
-                return i;
-            }
-        }
-        return -1;
+        return findVertex(BlockSymbolTable.getPortId(label));
     }
 
     /**
-     * This method creates graph, adding vertices and points using data from
-     * file,
-     *
-     * @Param graphList is file with adj list.
+     * Method to find the number of vertex from it's port id.
      */
-    private void importGraphFromFile(File graphList) throws IOException {
-        BufferedReader graphListBufReader = new BufferedReader(new FileReader(graphList));
-
-        String line;
-        while ((line = graphListBufReader.readLine()) != null) {
-            String[] connectsAndNumbers = line.split(" : "); 							// X11 - a3 : 35
-            String[] connectedVertices = connectsAndNumbers[0].split(" -- ");
-            int conVertsLength = connectedVertices.length;
-            int[] numConnectedVertices = new int[conVertsLength];
-            for (int i = 0; i < conVertsLength; i++) {
-                addVertex(null, connectedVertices[i]);
-                numConnectedVertices[i] = findVertex(connectedVertices[i]);
-                assert (numConnectedVertices[i] >= 0);
-            }
-
-            for (int i = 0; i < conVertsLength; i++) {
-                for (int j = 0; j < conVertsLength; j++) {
-                    if ((numConnectedVertices[i] < numConnectedVertices[j]) && (Math.abs(i - j) == 1)) {
-                        addPoint(numConnectedVertices[i], numConnectedVertices[j], 1);
-                        addKeyPoint(numConnectedVertices[i], numConnectedVertices[j], connectsAndNumbers[1]);
-                    }
-                }
-            }
+    private int findVertex(int port) {
+        if ((port < 0) || (port >= portVertices.length)) {
+            return -1;
+        }
+        int v = portVertices[port];
+        if ((v == -1) || (vertexArray[v] == null)) {
+            return -1;
         }
+        return v;
     }
 
 }
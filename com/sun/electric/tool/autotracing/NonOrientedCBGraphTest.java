@@ -0,0 +1,118 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: NonOrientedCBGraphTest.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A simple regression test for links matrix of CB graph: random verteces of
+ * random CB templates are deleted and links matrix counted after every
+ * deletion is compared with fully counted one.
+ */
+public class NonOrientedCBGraphTest {
+
+    private static final int MAX_INTERNAL = 28;                     // CB graph has 54 verteces, 26 of them are global
+
+    public static void main(String[] s) throws Exception {
+        if (s.length != 3) {
+            System.err.println("");
+            System.err.println("usage: java " + NonOrientedCBGraphTest.class.getName() + " <templates> <deletions> <seed>");
+            System.err.println("");
+            System.err.println("  Creates random CB templates and deletes random verteces of their graphs.");
+            System.err.println("  Reports any disagreement of links matrix with fully counted one.");
+            System.err.println("");
+            System.err.println("    <templates> number of random templates");
+            System.err.println("    <deletions> number of deleted verteces of every template");
+            System.err.println("    <seed>      seed for random number generator, in hex");
+            System.err.println("");
+            System.exit(-1);
+        }
+        Random rand = new Random(Integer.parseInt(s[2], 16));
+        int templates = Integer.parseInt(s[0]);
+        int deletions = Integer.parseInt(s[1]);
+        File file = File.createTempFile("AutotraCB", ".trc");
+        try {
+            for (int t = 0; t < templates; t++) {
+                List<String> labels = writeRandomTemplate(file, rand);
+                NonOrientedCBGraph graph = new NonOrientedCBGraph("CB<1", CBTemplate.importFrom(file));
+                if (!graph.checkLinksMatrix()) {
+                    throw new RuntimeException("  template " + t + ": links matrix differs from fully counted one");
+                }
+                Collections.shuffle(labels, rand);
+                for (int d = 0; d < Math.min(deletions, labels.size()); d++) {
+                    graph.deleteKeyFromCBGraph(BlockSymbolTable.getPortId(labels.get(d)), false);
+                    if (!graph.checkLinksMatrix()) {
+                        throw new RuntimeException("  template " + t + ": links matrix differs from fully counted one after deletion of "
+                                + labels.subList(0, d + 1));
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        System.out.println("NonOrientedCBGraphTest passed");
+    }
+
+    /**
+     * Method to write random template: every global port is connected with
+     * one or two internal verteces, internal verteces are connected with each
+     * other at random.
+     *
+     * @return labels of all verteces.
+     */
+    private static List<String> writeRandomTemplate(File file, Random rand) throws IOException {
+        List<String> internal = new ArrayList<>();
+        int internalCount = 2 + rand.nextInt(MAX_INTERNAL - 1);
+        for (int i = 0; i < internalCount; i++) {
+            internal.add("T" + i);
+        }
+        List<String> labels = new ArrayList<>(internal);
+        int key = 1;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (String port : BlockSymbolTable.GLOBAL_CB_PORTS) {
+                if (rand.nextInt(8) == 0) {
+                    continue;                                       // global port isn't used by CB
+                }
+                labels.add(port);
+                int links = 1 + rand.nextInt(2);
+                for (int i = 0; i < links; i++) {
+                    writer.write(port + " -- " + internal.get(rand.nextInt(internalCount)) + " : " + key++);
+                    writer.newLine();
+                }
+            }
+            for (int i = 0; i < internalCount; i++) {
+                for (int j = i + 1; j < internalCount; j++) {
+                    if (rand.nextInt(internalCount) < 3) {
+                        writer.write(internal.get(i) + " -- " + internal.get(j) + " : " + key++);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+        return labels;
+    }
+}
@@ -25,10 +25,14 @@ import java.io.File;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -38,13 +42,21 @@ import java.util.regex.Pattern;
 public final class NonOrientedGlobalGraph extends NonOrientedGraph {
 
     private Chain[] vertexArray; 															// Array of Vertices
+    private ChainAdjacency adjacency;                                                                                       // Chains connected through the same CB
+    private int[] pathCounts;                                                                                               // Deikstra path counts of chains
+    private boolean[] visited;                                                                                              // Deikstra visited marks of chains
+    private boolean[] chainShared;                                                                                          // Chain object is shared with copy of graph, clone before change
+    private final NonOrientedGlobalGraph base;                                                                              // Graph under search overlay, null for usual graph
+    private LandmarkTable landmarks;                                                                                        // Lower bounds for A* search, built on first use
     private Set<String> UsedBlockList = new HashSet<>();							// Used to avoid double-using blocks in autotracing
     private List<NonOrientedCBGraph> noCBgList = new ArrayList<>();		// List of all local(CB) graphs linked to this global graph
+    private Map<Integer, NonOrientedCBGraph> noCBgMap = new HashMap<>();                            // Local(CB) graphs by number of CB
     private List<Integer> VertToDeleteList = new ArrayList<>();						//
     private List<Integer> VertToAffectList = new ArrayList<>();	                                        // For SPM double-used ports
     private List<Integer> VertToIncreaseList = new ArrayList<>();					//
     private final int VERTEX_MAX = 950;  													// 867 is the real number of verteces.
     private int startingPoint, endingPoint;													// set points those describe (vertexArray[int]) chain
+    private int[] lastWay;                                                                                                  // Chains of the last found way from end to start
 
     /**
      * Constructor: base constructor to create new global graph object, forming
@@ -53,32 +65,93 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * @param graphName
      */
     public NonOrientedGlobalGraph(String graphName) {
+        this(graphName, new File(Accessory.GLOBAL_PATH));
+    }
+
+    /**
+     * Constructor: global graph imported from another file, it is used for
+     * synthetic graphs of benchmarks. Graph grows if file has more chains
+     * than real chip.
+     *
+     * @param graphName
+     * @param fileForImport
+     */
+    NonOrientedGlobalGraph(String graphName, File fileForImport) {
         super(graphName);
+        this.base = null;
         Init(VERTEX_MAX);
-        File fileForImport = new File(Accessory.GLOBAL_PATH);
-        try {
-            integrateChains(fileForImport);
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+        if (fileForImport.getPath().equals(Accessory.GLOBAL_PATH)) {
+            GraphImage image = GraphImage.getImage();
+            for (int i = 0; i < image.getChainCount(); i++) {
+                addChain(image.createChain(i));
+            }
+        } else {
+            try {
+                integrateChains(fileForImport);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
         }
+        adjacency = new ChainAdjacency(vertexArray, vertexCount);
     }
 
     /**
      * Constructor: copy constructor (copy chain objects only, others are
-     * typical).
+     * typical). Unchanged chain objects are shared by both graphs and cloned
+     * by the graph which changes them first, affected and deleted chains are
+     * copied at once because copy is not affected and not deleted.
      *
      * @param noggToCopy
      */
     public NonOrientedGlobalGraph(NonOrientedGlobalGraph noggToCopy) {
         super(noggToCopy.getLabel());
-        Init(VERTEX_MAX);
-        for (Chain chain : noggToCopy.getVertexArray()) {
+        this.base = null;
+        Init(noggToCopy.vertexArray.length);
+        Chain[] chainsToCopy = noggToCopy.getVertexArray();
+        for (int i = 0; i < chainsToCopy.length; i++) {
+            Chain chain = chainsToCopy[i];
             if (chain == null) {
                 this.vertexArray[vertexCount++] = null;
-            } else {
+            } else if (chain.isAffected() || chain.isDeleted()) {
                 this.vertexArray[vertexCount++] = new Chain(chain);
+            } else {
+                this.vertexArray[vertexCount++] = chain;
+                this.chainShared[i] = true;
+                noggToCopy.chainShared[i] = true;
             }
         }
+        this.adjacency = new ChainAdjacency(noggToCopy.adjacency);
+        this.landmarks = noggToCopy.landmarks;                                                                              // copy can't have shorter ways
+    }
+
+    /**
+     * Constructor: search overlay of graph. Overlay shares chains, CB graphs
+     * and used blocks with base graph and has it's own path counts, visited
+     * marks, deleted chains and lists, so speculative deikstra can be done
+     * without copying of chains. CB graph of base is copied into overlay only
+     * when overlay changes it. Base graph mustn't be changed while overlay
+     * is in use, several overlays of one base can be used in parallel.
+     */
+    private NonOrientedGlobalGraph(NonOrientedGlobalGraph base, boolean overlay) {
+        super(base.getLabel());
+        assert overlay;
+        this.base = base;
+        Init(base.vertexArray.length);
+        System.arraycopy(base.vertexArray, 0, vertexArray, 0, vertexArray.length);
+        Arrays.fill(chainShared, true);
+        this.vertexCount = base.vertexCount;
+        this.adjacency = new ChainAdjacency(base.adjacency);
+        this.UsedBlockList = base.UsedBlockList;
+    }
+
+    /**
+     * Method to create search overlay of this graph, overlay is used for
+     * speculative deikstra without copying of chains and CB graphs.
+     *
+     * @return
+     */
+    public NonOrientedGlobalGraph createSearchOverlay() {
+        return new NonOrientedGlobalGraph(this, true);
     }
 
     /**
@@ -270,10 +343,31 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * @Param startPoint shows the edges labels of needed way.
      */
     public Pair<String, Integer> deikstra(int startPoint, String niName, String param, boolean doDelete, boolean doWrite, boolean SPMAffected) {
-        BinaryHeapNew heap = new BinaryHeapNew();
+        return deikstra(startPoint, niName, param, doDelete, doWrite, SPMAffected, null);
+    }
+
+    /**
+     * This method implements the deikstra algorithm to find the optimal way
+     * through graph, search is stopped when the way can't be shorter than
+     * bound, bound may be decreased by another thread while search is going.
+     *
+     * @param startPoint
+     * @param niName
+     * @param param
+     * @param doDelete
+     * @param doWrite
+     * @param SPMAffected
+     * @param bound length of the best way found by other searches, null if
+     * search isn't bounded.
+     * @return (null, -1) if nothing found or found way is longer than bound,
+     * way as long as bound is returned, so caller decides ties itself.
+     */
+    public Pair<String, Integer> deikstra(int startPoint, String niName, String param, boolean doDelete, boolean doWrite, boolean SPMAffected, AtomicInteger bound) {
+        IndexedBinaryHeap heap = new IndexedBinaryHeap(vertexArray.length);
         boolean ion = niName.contains("ION");
+        boolean prune = Constants.isAStarSearch();                      // stop when found way can't be improved
         int curPathCount;
-        Integer closestVertex;
+        int closestVertex;
         int currentVertex = startPoint;
         int endPoint = -1;
         boolean endIsFound = false;
@@ -282,15 +376,15 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         String result;
         String lastResult = null;
 
-        vertexArray[currentVertex].setVisited(true);
-        vertexArray[currentVertex].setPathCount(0);
-        heap.add(vertexArray[currentVertex].getPathCount(), currentVertex);
+        visited[currentVertex] = true;
+        pathCounts[currentVertex] = 0;
+        heap.add(pathCounts[currentVertex], currentVertex);
 
         // we should check first Chain first
         result = vertexArray[currentVertex].searchForPattern(niName);   // method optimized
         if (!checkForUsed(result, niName)) {                            // if result == 0, checkForUsed returns false
             if ((result != null)) {
-                count = vertexArray[currentVertex].getPathCount();
+                count = pathCounts[currentVertex];
                 if (lastCount == -1) {
                     lastCount = count;
                     endPoint = currentVertex;
@@ -298,6 +392,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                     lastResult = result;
                     // added 21.05.2018 to avoid SPM crossing with other tracing
                     VertToDeleteList.add(currentVertex);
+                    lastWay = new int[]{currentVertex};
                     resetVertices();
                     Pair<String, Integer> pair = new Pair<>(lastResult, lastCount);
                     return pair;
@@ -306,12 +401,15 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         }
 
         while (((closestVertex = heap.getMinKey()) != -1)) {
-            vertexArray[closestVertex].setVisited(true);
-            Integer[] a = getCloseVerteces(closestVertex);
-            if (a == null) {
-                continue;
+            if (prune && endIsFound && (pathCounts[closestVertex] >= lastCount)) {
+                break;                                                  // every next chain is farther than found one
+            }
+            if ((bound != null) && (pathCounts[closestVertex] > bound.get())) {
+                break;                                                  // ways through farther chains are longer than found one
             }
-            for (Integer a1 : a) {
+            visited[closestVertex] = true;
+            int[] a = adjacency.expand(closestVertex, visited);
+            for (int a1 : a) {
                 if (!ion) {
                     if (vertexArray[a1].checkForContainsION()) { // method to optimize checkForContains("ION")
                         continue;
@@ -329,15 +427,15 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                 if (prewe == -1) {
                     continue;
                 }
-                if ((vertexArray[currentVertex].getPathCount()) > (curPathCount = (vertexArray[closestVertex].getPathCount()
+                if ((pathCounts[currentVertex]) > (curPathCount = (pathCounts[closestVertex]
                         + weight))) {
 
-                    vertexArray[currentVertex].setPathCount(curPathCount);
+                    pathCounts[currentVertex] = curPathCount;
                     // maybe should be for each chain, not only with lower path
                     result = vertexArray[currentVertex].searchForPattern(niName);   // method optimized
                     if (!checkForUsed(result, niName)) {                            // if result == 0, checkForUsed returns false
                         if ((result != null)) {
-                            count = vertexArray[currentVertex].getPathCount();
+                            count = pathCounts[currentVertex];
                             if (lastCount == -1) {
                                 lastCount = count;
                                 endPoint = currentVertex;
@@ -353,18 +451,19 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                         }
                     }
                 }
-                heap.add(vertexArray[currentVertex].getPathCount(), currentVertex);
+                heap.add(pathCounts[currentVertex], currentVertex);
             }
         }
+        TracingMetrics.addSearch(heap);
 
         for (int j = 0; j < vertexCount; j++) {
             if (vertexArray[j] != null) {
-                vertexArray[j].setVisited(false);
+                visited[j] = false;
             }
         }
 
-        if (!endIsFound) {
-            Pair<String, Integer> pair = new Pair<>(null, -1);
+        if (!endIsFound || ((bound != null) && (lastCount > bound.get()))) {
+            Pair<String, Integer> pair = new Pair<>(null, -1);            // partial result of stopped search is dropped
             resetVertices();
             return pair;
         }
@@ -427,66 +526,66 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
     public void applyWeightChanges() {
         if (!VertToIncreaseList.isEmpty()) {
             for (Integer vert : VertToIncreaseList) {
-                vertexArray[vert].addWeight();
+                getChainForChange(vert).addWeight();
             }
             VertToIncreaseList = new ArrayList<>();
         }
     }
 
     /**
-     * Method has a role of the getCloseVertex function to use it in global
-     * tracing, method Overrides getCloseVertex(int).
+     * Method to create costs for negotiated congestion autotracing of this
+     * graph.
      *
-     * @param v
      * @return
      */
-    @Override
-    protected Integer[] getCloseVerteces(int v) {
-        String[] CBLabel = getCloseCBs(v);
-        Integer[] a = getCloseChains(CBLabel);
-        return a;
+    CongestionCosts createCongestionCosts() {
+        return new CongestionCosts(vertexArray.length);
     }
 
     /**
-     * Method has a role of the getCloseVertex function to use it in global
-     * tracing, method returns two CBs those are connected to chain.
+     * Change weight variables after non-delete autotracing using negotiated
+     * congestion costs instead of constant increase, every chain in
+     * VertToIncreaseList was used by one net.
      *
-     * @param v
-     * @return
+     * @param costs
      */
-    protected String[] getCloseCBs(int v) {
-        return vertexArray[v].searchForCB();
+    void applyNegotiatedCosts(CongestionCosts costs) {
+        int[] usage = new int[vertexArray.length];
+        for (Integer vert : VertToIncreaseList) {
+            usage[vert]++;
+        }
+        VertToIncreaseList = new ArrayList<>();
+        costs.addHistory(usage);
+        for (int i = 0; i < vertexCount; i++) {
+            if ((vertexArray[i] == null) || vertexArray[i].isDeleted()) {
+                continue;
+            }
+            int weight = costs.getCost(i, vertexArray[i].getWeight(), usage[i]);
+            if (weight != vertexArray[i].getWeight()) {
+                getChainForChange(i).setWeight(weight);
+            }
+        }
     }
 
     /**
      * Method has a role of the getCloseVertex function to use it in global
-     * tracing, method realises second step of autotracing, method returns the
-     * array of closest verteces using connected CB blocks.
+     * tracing, method Overrides getCloseVertex(int), method returns the array
+     * of not visited chains connected to the same CB blocks using adjacency.
      *
-     * @param CBLabel
+     * @param v
      * @return
      */
-    protected Integer[] getCloseChains(String[] CBLabel) {
-        Set<Integer> cbChains = new HashSet<>();
-        for (int v = 0; v < vertexCount; v++) {
-            if (vertexArray[v] == null) {
-                continue;
-            }
-            if (vertexArray[v].getVisited() == true) {
-                continue;
-            }
-            for (String cbl : CBLabel) {
-                if (vertexArray[v].checkForContains(cbl)) {
-                    cbChains.add(v);
-                }
-            }
+    @Override
+    protected Integer[] getCloseVerteces(int v) {
+        int[] chains = adjacency.expand(v, visited);
+        if (chains.length == 0) {
+            return null;
         }
-        if (cbChains.size() > 0) {
-            Integer[] a = new Integer[0];
-            a = cbChains.toArray(a);
-            return a;
+        Integer[] a = new Integer[chains.length];
+        for (int i = 0; i < chains.length; i++) {
+            a[i] = chains[i];
         }
-        return null;
+        return a;
     }
 
     /**
@@ -498,10 +597,25 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      */
     @Override
     protected boolean addVertex(String line, String label) {
-        vertexArray[vertexCount++] = new Chain(line, label);
+        addChain(new Chain(line, label));
         return true;
     }
 
+    /**
+     * Method to add chain to graph, graph grows if it is full.
+     */
+    private void addChain(Chain chain) {
+        if (vertexCount == vertexArray.length) {
+            int capacity = vertexArray.length * 2;
+            vertexArray = Arrays.copyOf(vertexArray, capacity);
+            pathCounts = Arrays.copyOf(pathCounts, capacity);
+            Arrays.fill(pathCounts, vertexCount, capacity, Vertex.MAXPATHCOUNT);
+            visited = Arrays.copyOf(visited, capacity);
+            chainShared = Arrays.copyOf(chainShared, capacity);
+        }
+        vertexArray[vertexCount++] = chain;
+    }
+
     /**
      * Method to delete vertex from graph,
      *
@@ -513,15 +627,14 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         assert count >= 0;
         if (vertexArray[count] != null) {
             Accessory.printLog("Deleted Vertex " + vertexArray[count].getLine());
-            String[] conVerts = vertexArray[count].getConnectedVerteces();
+            int[][] conVerts = vertexArray[count].getConnectedEntries();
             vertexArray[count] = null;
-            for (String vert : conVerts) {
-                String spl = Accessory.parsePortToBlock(vert);
-                String port = Accessory.parsePortToPort(vert);
-                if (spl.split("<")[0].equals("CB")) {                                      // Only CB's verteces should be deleted
-                    NonOrientedCBGraph noCBg = getOrCreateLocalGraph(spl);
-                    Accessory.printLog(spl + " toDelete");
-                    noCBg.deleteKeyFromCBGraph(port, true);
+            adjacency.removeChain(count);
+            for (int[] vert : conVerts) {
+                if (vert[0] == BlockSymbolTable.CB) {                                      // Only CB's verteces should be deleted
+                    NonOrientedCBGraph noCBg = getOrCreateLocalGraph(vert[1]);
+                    Accessory.printLog(noCBg.getLabel() + " toDelete");
+                    noCBg.deleteKeyFromCBGraph(vert[2], true);
                     /*if(vertexArray[count].isXYGlobal()) {
                         noCBg.deleteKeyFromCBGraph(spl, Accessory.parsePortToPort(vert));
                     }*/
@@ -542,7 +655,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         assert count >= 0;
         if (vertexArray[count] != null) {
             Accessory.printLog("Affected Vertex " + vertexArray[count].getLine());
-            vertexArray[count].setAffected();
+            getChainForChange(count).setAffected();
         }
     }
 
@@ -555,6 +668,37 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
     @Override
     protected void Init(int VERTEX_MAX) {
         vertexArray = new Chain[VERTEX_MAX];
+        pathCounts = new int[VERTEX_MAX];
+        visited = new boolean[VERTEX_MAX];
+        chainShared = new boolean[VERTEX_MAX];
+        Arrays.fill(pathCounts, Vertex.MAXPATHCOUNT);
+    }
+
+    /**
+     * Method to get lower bounds for A* search, overlay uses bounds of base
+     * graph because it's ways can't be shorter.
+     */
+    private LandmarkTable getLandmarks() {
+        if (base != null) {
+            return base.getLandmarks();
+        }
+        synchronized (this) {
+            if (landmarks == null) {
+                landmarks = new LandmarkTable(adjacency, vertexArray, vertexCount);
+            }
+            return landmarks;
+        }
+    }
+
+    /**
+     * Method to get chain which can be changed, shared chain is cloned first.
+     */
+    private Chain getChainForChange(int i) {
+        if (chainShared[i]) {
+            vertexArray[i] = new Chain(vertexArray[i]);
+            chainShared[i] = false;
+        }
+        return vertexArray[i];
     }
 
     /**
@@ -566,7 +710,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         }
         for (String cursor : UsedBlockList) {
             if (cursor.contains("PPC")) {
-                Pattern ppc = Pattern.compile(cursor);
+                Pattern ppc = PatternCache.getPattern(cursor);
                 if (ppc.matcher(block).find()) {
                     if (!isOld.contains("<")) {
                         return true;
@@ -597,21 +741,19 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * using external file with list of CBs.
      */
     private void initiateCBs() throws IOException {
-        String line;
-        try (BufferedReader allCBsReader = new BufferedReader(new FileReader(new File(Accessory.ALL_BLOCKS)))) {
-            while ((line = allCBsReader.readLine()) != null) {
-                if (line.contains("CB")) {
-                    getOrCreateLocalGraph(line);
-                    prepareChains(line);
-                } else if (line.contains("PPC")) {
-                    prepareChains(line);
-                } else if (line.contains("SPM")) {
-                    prepareChains(line);
-                } else if (line.contains("CAU")) {
-                    prepareChains(line);
-                } else if (line.contains("PAU")) {
-                    prepareChains(line);
-                }
+        GraphImage image = GraphImage.getImage();
+        for (String line : image.getAllBlocks()) {
+            if (line.contains("CB")) {
+                getOrCreateLocalGraph(line);
+                prepareChains(image, line);
+            } else if (line.contains("PPC")) {
+                prepareChains(image, line);
+            } else if (line.contains("SPM")) {
+                prepareChains(image, line);
+            } else if (line.contains("CAU")) {
+                prepareChains(image, line);
+            } else if (line.contains("PAU")) {
+                prepareChains(image, line);
             }
         }
     }
@@ -621,11 +763,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      */
     @Override
     protected void resetVertices() {
-        for (int i = 0; i < vertexCount; i++) {
-            if (vertexArray[i] != null) {
-                vertexArray[i].resetPathCount();
-            }
-        }
+        Arrays.fill(pathCounts, 0, vertexCount, Vertex.MAXPATHCOUNT);
     }
 
     /**
@@ -681,6 +819,38 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         }
     }
 
+    /**
+     * Method to search way between two chains on search overlay of graph, so
+     * graph isn't changed and search can be repeated, it is used by
+     * benchmarks.
+     *
+     * @param startPoint
+     * @param endPoint
+     * @return true if way is found.
+     */
+    boolean searchWay(int startPoint, int endPoint) {
+        return createSearchOverlay().deikstra(startPoint, endPoint, false);
+    }
+
+    /**
+     * Method to get the number of chains imported from file.
+     *
+     * @return
+     */
+    int getChainCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Method to get the number of CBs connected by chain.
+     *
+     * @param chain
+     * @return
+     */
+    int getCBCount(int chain) {
+        return vertexArray[chain].getCBCount();
+    }
+
     /**
      * This method implements the deikstra algorithm to find the optimal way
      * through graph, this method can delete vertices to dynamic modification of
@@ -690,30 +860,28 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * @Params startPoint and endPoint show the edges labels of needed way.
      */
     private boolean deikstra(int startPoint, int endPoint, boolean doDelete) {
-        BinaryHeapNew heap = new BinaryHeapNew();
+        IndexedBinaryHeap heap = new IndexedBinaryHeap(vertexArray.length);
+        LandmarkTable bounds = Constants.isAStarSearch() ? getLandmarks() : null;           // null for usual deikstra
         int curPathCount;
-        Integer closestVertex;
+        int closestVertex;
         int currentVertex = startPoint;
         boolean endIsFound = false;
         int counter = 0;
 
-        vertexArray[currentVertex].setVisited(true);
-        vertexArray[currentVertex].setPathCount(0);
+        visited[currentVertex] = true;
+        pathCounts[currentVertex] = 0;
 
-        heap.add(vertexArray[currentVertex].getPathCount(), currentVertex);
+        heap.add(pathCounts[currentVertex], currentVertex);
 
         while (((closestVertex = heap.getMinKey()) != -1)) {
             if (closestVertex == endPoint) {
                 break;									// not sure if this is still optimal solution
             }
             counter++;
-            assert counter < 1000;
-            vertexArray[closestVertex].setVisited(true);
-            Integer[] a = getCloseVerteces(closestVertex);
-            if (a == null) {
-                continue;
-            }
-            for (Integer a1 : a) {
+            assert counter <= vertexCount;                      // every chain is settled once
+            visited[closestVertex] = true;
+            int[] a = adjacency.expand(closestVertex, visited);
+            for (int a1 : a) {
                 assert a.length < 30000;
                 currentVertex = a1;
                 int prewe = getWeight(currentVertex, closestVertex);
@@ -721,21 +889,26 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                 if (prewe == -1) {
                     continue;
                 }
-                if ((vertexArray[currentVertex].getPathCount()) > (curPathCount = (vertexArray[closestVertex].getPathCount()
+                if ((pathCounts[currentVertex]) > (curPathCount = (pathCounts[closestVertex]
                         + weight))) {
-                    vertexArray[currentVertex].setPathCount(curPathCount);
+                    pathCounts[currentVertex] = curPathCount;
 
                     if (currentVertex == endPoint) {
                         endIsFound = true;
                     }
                 }
-                heap.add(vertexArray[currentVertex].getPathCount(), currentVertex);
+                if (bounds == null) {
+                    heap.add(pathCounts[currentVertex], currentVertex);
+                } else {
+                    heap.add(pathCounts[currentVertex] + bounds.getLowerBound(currentVertex, endPoint), currentVertex);
+                }
             }
 
         }
+        TracingMetrics.addSearch(heap);
         for (int j = 0; j < vertexCount; j++) {
             if (vertexArray[j] != null) {
-                vertexArray[j].setVisited(false);
+                visited[j] = false;
             }
         }
         if (!endIsFound) {
@@ -765,17 +938,19 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         }
 
         int counter = 1;
-        Integer[] a;
+        int[] way = new int[16];
+        way[0] = currentVertex;
+        int[] a;
         do {
-            a = getCloseVerteces(currentVertex);
-            for (Integer a1 : a) {
+            a = adjacency.expand(currentVertex, null);
+            for (int a1 : a) {
                 int preWe = getWeight(currentVertex, a1);
                 int weight;
                 if (preWe == -1) {
                     continue;
                 }
                 weight = preWe + vertexArray[currentVertex].getWeight();
-                if ((vertexArray[currentVertex].getPathCount() - vertexArray[a1].getPathCount()) == weight) {
+                if ((pathCounts[currentVertex] - pathCounts[a1]) == weight) {
                     if (doWrite) {
                         getConfigurationKeys(currentVertex, a1);
                     }
@@ -785,7 +960,10 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                         VertToDeleteList.add(currentVertex);
                     }
                     currentVertex = a1;
-                    counter++;
+                    if (counter == way.length) {
+                        way = Arrays.copyOf(way, counter * 2);
+                    }
+                    way[counter++] = currentVertex;
                     if (currentVertex == startPoint) {
                         if (doDelete) {
                             if ((SPMAffected) && (vertexArray[currentVertex].searchForPattern("SPM") != null)) {
@@ -805,19 +983,140 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
         /*if (doDelete) {
             doDelete();
         }*/
+        lastWay = Arrays.copyOf(way, counter);
         return counter;
     }
 
+    /**
+     * Method to get chains of the last way found by deikstra or used by
+     * replayWay, the first chain is the end of the way and the last chain is
+     * the start of the way.
+     *
+     * @return
+     */
+    int[] getLastWay() {
+        return lastWay;
+    }
+
+    /**
+     * Method to check if way found earlier can be used again in current graph:
+     * all chains are alive and linked through CBs, the end of the way is not
+     * used by other block and deikstra could walk through every chain.
+     *
+     * @param way chains from the end to the start of the way.
+     * @param niName
+     * @return
+     */
+    boolean isWayValid(int[] way, String niName) {
+        if ((way == null) || (way.length == 0)) {
+            return false;
+        }
+        boolean ion = niName.contains("ION");
+        for (int i = 0; i < way.length; i++) {
+            int v = way[i];
+            if ((v < 0) || (v >= vertexCount) || (vertexArray[v] == null)) {
+                return false;
+            }
+            if (i == way.length - 1) {
+                break;                                                  // starting chain isn't checked by deikstra
+            }
+            if (!ion && vertexArray[v].checkForContainsION()) {
+                return false;
+            }
+            if (vertexArray[v].isAffected() && (vertexArray[v].searchForPattern(niName) == null)) {
+                return false;
+            }
+        }
+        for (int i = 0; i + 1 < way.length; i++) {
+            int v = way[i];
+            int u = way[i + 1];
+            if ((vertexArray[u] == null) || !haveCommonCB(vertexArray[v], vertexArray[u]) || (getWeight(v, u) == -1)) {
+                return false;
+            }
+        }
+        String result = vertexArray[way[0]].searchForPattern(niName);
+        return (result != null) && !checkForUsed(result, niName);
+    }
+
+    /**
+     * Method to use way found earlier instead of deikstra search, chains and
+     * keys of the way are marked and written the same way as deikstra backway
+     * does it.
+     *
+     * @param way chains from the end to the start of the way.
+     * @param niName
+     * @param doDelete
+     * @param doWrite
+     * @param SPMAffected
+     * @return (null, -1) if way can't be used in current graph.
+     */
+    Pair<String, Integer> replayWay(int[] way, String niName, boolean doDelete, boolean doWrite, boolean SPMAffected) {
+        if (!isWayValid(way, niName)) {
+            return new Pair<>(null, -1);
+        }
+        String result = vertexArray[way[0]].searchForPattern(niName);
+        lastWay = way.clone();
+        if (way.length == 1) {
+            VertToDeleteList.add(way[0]);                           // the same as one chain way of deikstra
+            return new Pair<>(result, 0);
+        }
+        int length = 0;
+        for (int i = 0; i + 1 < way.length; i++) {
+            length += getWeight(way[i], way[i + 1]) + vertexArray[way[i]].getWeight();
+        }
+        int endPoint = way[0];
+        int startPoint = way[way.length - 1];
+        if (doDelete) {
+            if ((SPMAffected) && (vertexArray[endPoint].checkForContains("SPM"))) {
+                VertToAffectList.add(endPoint);
+            } else {
+                VertToDeleteList.add(endPoint);
+            }
+        }
+        for (int i = 0; i + 1 < way.length; i++) {
+            if (doWrite) {
+                getConfigurationKeys(way[i], way[i + 1]);
+            }
+            if (!doDelete) {
+                VertToIncreaseList.add(way[i]);
+            } else {
+                VertToDeleteList.add(way[i]);
+            }
+        }
+        if (doDelete) {
+            if ((SPMAffected) && (vertexArray[startPoint].searchForPattern("SPM") != null)) {
+                VertToAffectList.add(startPoint);
+            } else {
+                VertToDeleteList.add(startPoint);
+            }
+        }
+        return new Pair<>(result, length);
+    }
+
+    /**
+     * Method to check if two chains are connected to the same CB.
+     */
+    private static boolean haveCommonCB(Chain first, Chain second) {
+        for (int i = 0; i < first.getCBCount(); i++) {
+            for (int j = 0; j < second.getCBCount(); j++) {
+                if (first.getCBIndex(i) == second.getCBIndex(j)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Method to get weight of this link, used to get the number of needed keys
      * in CB to go from @currentVertex to @closestVertex.
      */
     private int getWeight(int currentVertex, int closestVertex) {
-        String[] array = getStringParamsFromChain(currentVertex, closestVertex);
-        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[2]);
+        int[] array = getParamsFromChain(currentVertex, closestVertex);
+        NonOrientedCBGraph localGraphic = getLocalGraphForRead(array[2]);
         int result = localGraphic.getWeight(array[0], array[1]);
         if (array.length > 3) {
-            NonOrientedCBGraph localGraphic2 = getOrCreateLocalGraph(array[5]);
+            NonOrientedCBGraph localGraphic2 = getLocalGraphForRead(array[5]);
             int result2Equal = localGraphic2.getWeight(array[3], array[4]);
             if ((result2Equal < result) && (result2Equal != 0)) {
                 return result2Equal;
@@ -837,7 +1136,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * @currentVertex to @closestVertex.
      */
     private void getConfigurationKeys(int currentVertex, int closestVertex) {
-        String[] array = getStringParamsFromChain(currentVertex, closestVertex);
+        int[] array = getParamsFromChain(currentVertex, closestVertex);
         NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[2]);
         int result = localGraphic.getWeight(array[0], array[1]);
         if (array.length > 3) {                                                               // 2nd CB found
@@ -853,41 +1152,42 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
     }
 
     /**
-     * Method to find current CB's label and elemFrom - elemTo labels,
+     * Method to find current CB's number and elemFrom - elemTo port ids,
      *
      * @currentVertex and @closestVertex are connected to one CB block. Get CB's
-     * label and outer (e.g. X16-X11) verteces' labels.
+     * number and outer (e.g. X16-X11) verteces' port ids.
      */
-    private String[] getStringParamsFromChain(int currentVertex, int closestVertex) {
-        String elemFrom = null;
-        String elemTo = null;
-        String graphLabel = null;
-        String elemFrom2EqualCB = null;
-        String elemTo2EqualCB = null;
-        String graphLabel2EqualCB = null;
-        String[] currentSearch = vertexArray[currentVertex].searchForCB();
-        String[] closestSearch = vertexArray[closestVertex].searchForCB();
-        for (int i = 0; i < currentSearch.length; i += 2) {
-            for (int j = 0; j < closestSearch.length; j += 2) {
-                if (currentSearch[i].equals(closestSearch[j])) {
-                    if (graphLabel != null) {
-                        graphLabel2EqualCB = currentSearch[i];
-                        elemFrom2EqualCB = currentSearch[i + 1];
-                        elemTo2EqualCB = closestSearch[j + 1];
+    private int[] getParamsFromChain(int currentVertex, int closestVertex) {
+        int elemFrom = -1;
+        int elemTo = -1;
+        int graphNumber = -1;
+        int elemFrom2EqualCB = -1;
+        int elemTo2EqualCB = -1;
+        int graphNumber2EqualCB = -1;
+        Chain current = vertexArray[currentVertex];
+        Chain closest = vertexArray[closestVertex];
+        for (int i = 0; i < current.getCBCount(); i++) {
+            for (int j = 0; j < closest.getCBCount(); j++) {
+                if (current.getCBIndex(i) == closest.getCBIndex(j)) {
+                    if (graphNumber != -1) {
+                        graphNumber2EqualCB = current.getCBIndex(i);
+                        elemFrom2EqualCB = current.getCBPort(i);
+                        elemTo2EqualCB = closest.getCBPort(j);
                         break;
                     } else {
-                        graphLabel = currentSearch[i];
-                        elemFrom = currentSearch[i + 1];
-                        elemTo = closestSearch[j + 1];
+                        graphNumber = current.getCBIndex(i);
+                        elemFrom = current.getCBPort(i);
+                        elemTo = closest.getCBPort(j);
                     }
                 }
             }
         }
-        if (graphLabel2EqualCB != null) {
-            String[] array = {elemFrom, elemTo, graphLabel, elemFrom2EqualCB, elemTo2EqualCB, graphLabel2EqualCB};
+        assert graphNumber != -1;
+        if (graphNumber2EqualCB != -1) {
+            int[] array = {elemFrom, elemTo, graphNumber, elemFrom2EqualCB, elemTo2EqualCB, graphNumber2EqualCB};
             return array;
         }
-        String[] array = {elemFrom, elemTo, graphLabel};
+        int[] array = {elemFrom, elemTo, graphNumber};
         return array;
     }
 
@@ -897,55 +1197,70 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * @Param graphLabel is the "CB<216" type of label.
      */
     private NonOrientedCBGraph getOrCreateLocalGraph(String graphLabel) {
-        int graphExists;
-        for (int z = 0; z < noCBgList.size(); z++) {
-            if (noCBgList.get(z).getLabel().equals(graphLabel)) {
-                graphExists = z;
-                return noCBgList.get(graphExists);
-            }
+        return getOrCreateLocalGraph(BlockSymbolTable.parseBlockIndex(graphLabel));
+    }
+
+    /**
+     * Method to get or create (if nothing found) local graph,
+     *
+     * @Param graphNumber is the "216" of "CB<216" label.
+     */
+    private NonOrientedCBGraph getOrCreateLocalGraph(int graphNumber) {
+        NonOrientedCBGraph localGraphic = noCBgMap.get(graphNumber);
+        if (localGraphic != null) {
+            return localGraphic;
         }
 
-        NonOrientedCBGraph localGraphic = new NonOrientedCBGraph(graphLabel, this);
-        localGraphic.refreshLinksMatrix();
+        NonOrientedCBGraph baseGraphic = (base == null) ? null : base.noCBgMap.get(graphNumber);
+        if (baseGraphic != null) {
+            localGraphic = new NonOrientedCBGraph(baseGraphic, this);      // overlay changes it's own copy
+        } else {
+            localGraphic = new NonOrientedCBGraph(BlockSymbolTable.getBlockLabel(BlockSymbolTable.CB, graphNumber), this);
+            localGraphic.refreshLinksMatrix();
+        }
         noCBgList.add(localGraphic);
+        noCBgMap.put(graphNumber, localGraphic);
         return localGraphic;
     }
 
+    /**
+     * Method to get local graph only to read weights from it, overlay reads
+     * CB graph of base graph without copying it.
+     *
+     * @Param graphNumber is the "216" of "CB<216" label.
+     */
+    private NonOrientedCBGraph getLocalGraphForRead(int graphNumber) {
+        if (base != null) {
+            NonOrientedCBGraph localGraphic = noCBgMap.get(graphNumber);
+            if (localGraphic == null) {
+                localGraphic = base.noCBgMap.get(graphNumber);
+            }
+            if (localGraphic != null) {
+                return localGraphic;
+            }
+        }
+        return getOrCreateLocalGraph(graphNumber);
+    }
+
     /**
      * Method is using extracting keys (ExportKeysFromScheme -- ExportKeys
      * class) method to dynamically change the state of local CB graphs, methods
      * is used only in "point to point".
      */
-    private void prepareChains(String blockName) throws IOException {
+    private void prepareChains(GraphImage image, String blockName) throws IOException {
         String[] p = blockName.split("<");
         assert p.length > 1; 																								// blockName xxx<1234
         Integer localNumber = Integer.valueOf(p[1]);
-        try (BufferedReader localConfigurationReader = new BufferedReader(new FileReader(new File(Accessory.CONFIG_WITHOUT_MODELLING_PATH)))) {
-            String line;
-            if (p[0].equals("CB")) {
-                while ((line = localConfigurationReader.readLine()) != null) {
-                    Integer f = Integer.valueOf(line);
-                    if ((f <= (localNumber + 148)) && (f >= localNumber)) {
-                        int key = f - localNumber;
-                        try (BufferedReader CBReader = new BufferedReader(new FileReader(new File(Accessory.CB_PATH)))) {
-                            String CBline;
-                            while ((CBline = CBReader.readLine()) != null) {
-                                String[] spl = CBline.split(" : ");
-                                if (Integer.valueOf(spl[1]) == key) {
-                                    String[] s = spl[0].split(" -- ");
-                                    for (String item : s) {
-                                        if ((item.substring(0, 1).equals("X")) || (item.substring(0, 1).equals("Y"))) {
-                                            deleteChainAndRelatedVerteces(localNumber, item, key);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+        KeyConfiguration configuration = KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
+        if (p[0].equals("CB")) {
+            for (int f : configuration.getKeys(localNumber, localNumber + 149)) {
+                int key = f - localNumber;
+                for (String item : image.getCBKeyPorts(key)) {
+                    deleteChainAndRelatedVerteces(localNumber, item, key);
                 }
-            } else {
-                prepareChainsForBlock(p[0], localConfigurationReader, localNumber);
             }
+        } else {
+            prepareChainsForBlock(image, p[0], configuration, localNumber);
         }
     }
 
@@ -953,7 +1268,7 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * Method is using by prepareChains method to deal with other blocks than
      * CB, methods is used only in "point to point".
      */
-    private void prepareChainsForBlock(String blockName, BufferedReader localConfigurationReader, Integer localNumber) throws IOException {
+    private void prepareChainsForBlock(GraphImage image, String blockName, KeyConfiguration configuration, Integer localNumber) throws IOException {
         int numberOfKeys = -1;
         switch (blockName) {
             case "PPC":
@@ -971,21 +1286,10 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
             default:
                 assert false;
         }
-        String line;
-        while ((line = localConfigurationReader.readLine()) != null) {
-            Integer f = Integer.valueOf(line);
-            if ((f <= (localNumber + numberOfKeys)) && (f >= localNumber)) {
-                int key = f - localNumber;
-                try (BufferedReader CBReader = new BufferedReader(new FileReader(new File(Accessory.getPathToDeclaration(blockName))))) {
-                    String CBline;
-                    while ((CBline = CBReader.readLine()) != null) {
-                        String[] spl = CBline.split(" -- ");
-                        if (Integer.valueOf(spl[1]) == key) {
-                            String s = spl[0];
-                            deleteChainFromBlock(localNumber, s, blockName);
-                        }
-                    }
-                }
+        for (int f : configuration.getKeys(localNumber, localNumber + numberOfKeys + 1)) {
+            int key = f - localNumber;
+            for (String s : image.getBlockKeyNames(blockName, key)) {
+                deleteChainFromBlock(localNumber, s, blockName);
             }
         }
     }
@@ -1004,15 +1308,15 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
                     if ((startingPoint == i) || (endingPoint == i)) {
                         continue;
                     }
-                    String[] array = vertexArray[i].searchForCB();
-                    if (array.length > 2) {
-                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[2]);
-                        localGraphic.deleteKeyFromCBGraph(array[3], false);
-                        localGraphic = getOrCreateLocalGraph(array[0]);
-                        localGraphic.deleteKeyFromCBGraph(array[1], false);
-                    } else if (array.length > 0) {
-                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[0]);
-                        localGraphic.deleteKeyFromCBGraph(array[1], false);
+                    Chain chain = vertexArray[i];
+                    if (chain.getCBCount() > 1) {
+                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(chain.getCBIndex(1));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(1), false);
+                        localGraphic = getOrCreateLocalGraph(chain.getCBIndex(0));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(0), false);
+                    } else if (chain.getCBCount() > 0) {
+                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(chain.getCBIndex(0));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(0), false);
                     }
                 }
             }
@@ -1024,30 +1328,29 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
      * these CB's verteces.
      */
     private void deleteChainAndRelatedVerteces(int localNumber, String key, int keyToDelete) throws IOException {
-        String block = "CB" + "<" + String.valueOf(localNumber);
-        //String newElem = block + "." + key;
+        int keyPort = BlockSymbolTable.getPortId(key);
         for (int i = 0; i < vertexArray.length; i++) {
-            if (vertexArray[i] != null) {
+            Chain chain = vertexArray[i];
+            if (chain != null) {
                 // don't delete if it's 1 of the starting points
                 if ((startingPoint == i) || (endingPoint == i)) {
                     continue;
                 }
-                String[] array = vertexArray[i].searchForCB();
-                if ((array.length > 4) && (!vertexArray[i].isDeleted())) {
-                    for (int j = 0; j < array.length; j += 2) {
-                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[j]);
-                        localGraphic.deleteKeyFromCBGraph(array[j + 1], false);
+                if ((chain.getCBCount() > 2) && (!chain.isDeleted())) {
+                    for (int j = 0; j < chain.getCBCount(); j++) {
+                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(chain.getCBIndex(j));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(j), false);
                     }
-                    vertexArray[i].setDeleted();
-                } else if ((array.length > 2) && (!vertexArray[i].isDeleted())) {
-                    if ((array[0].equals(block)) && (array[1].equals(key))) {
-                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[2]);
-                        localGraphic.deleteKeyFromCBGraph(array[3], false);
-                    } else if ((array[2].equals(block)) && (array[3].equals(key))) {
-                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(array[0]);
-                        localGraphic.deleteKeyFromCBGraph(array[1], false);
+                    getChainForChange(i).setDeleted();
+                } else if ((chain.getCBCount() > 1) && (!chain.isDeleted())) {
+                    if ((chain.getCBIndex(0) == localNumber) && (chain.getCBPort(0) == keyPort)) {
+                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(chain.getCBIndex(1));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(1), false);
+                    } else if ((chain.getCBIndex(1) == localNumber) && (chain.getCBPort(1) == keyPort)) {
+                        NonOrientedCBGraph localGraphic = getOrCreateLocalGraph(chain.getCBIndex(0));
+                        localGraphic.deleteKeyFromCBGraph(chain.getCBPort(0), false);
                     }
-                    vertexArray[i].setDeleted();
+                    getChainForChange(i).setDeleted();
                 }
             }
         }
@@ -1056,13 +1359,15 @@ public final class NonOrientedGlobalGraph extends NonOrientedGraph {
     /**
      * Method is used by CB graph to dynamically delete chains when external CB
      * port is used.
+     *
+     * @param CBNumber is the "216" of "CB<216" label.
+     * @param port is port id of used CB vertex.
      */
-    public void deleteChainCozUsedVertex(String CBname, String port) {
+    public void deleteChainCozUsedVertex(int CBNumber, int port) {
         for (int i = 0; i < vertexArray.length; i++) {
             Chain chain = vertexArray[i];
             if (chain != null) {
-                String find = CBname + "\\." + port;
-                if (chain.searchForPatternMatch(find) != null) {
+                if (chain.checkForContains(BlockSymbolTable.CB, CBNumber, port)) {
                     deleteVertex(i);
                     return;
                 }
@@ -0,0 +1,96 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: PatternCache.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * This class keeps compiled patterns those are used to search in chains,
+ * the same pattern is searched in every chain of global graph, so it is
+ * compiled only once. Cache is bounded, the least recently used pattern is
+ * removed first.
+ */
+final class PatternCache {
+
+    /**
+     * Block type prefixes those are indexed in every chain.
+     */
+    static final String[] BLOCK_PREFIXES = {"CB", "PPC", "SPM", "CAU", "PAU", "ION"};
+
+    private static final int CACHE_SIZE = 512;
+    private static final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * private constructor prohibits creating objects of this class.
+     */
+    private PatternCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Method to get compiled pattern, pattern is compiled if it is not in
+     * cache.
+     *
+     * @param regex
+     * @return
+     */
+    static Pattern getPattern(String regex) {
+        synchronized (patterns) {
+            Pattern p = patterns.get(regex);
+            if (p == null) {
+                p = Pattern.compile(regex);
+                patterns.put(regex, p);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Method to get block type prefix every match of regex must contain, null
+     * if regex doesn't start with one of BLOCK_PREFIXES.
+     *
+     * @param regex
+     * @return
+     */
+    static String getBlockPrefix(String regex) {
+        if (regex.indexOf('|') != -1) {
+            return null;
+        }
+        for (String prefix : BLOCK_PREFIXES) {
+            if (regex.startsWith(prefix)) {
+                if (regex.length() > prefix.length()) {
+                    char next = regex.charAt(prefix.length());
+                    if ((next == '?') || (next == '*') || (next == '+') || (next == '{')) {
+                        return null;    // last letter of prefix is optional
+                    }
+                }
+                return prefix;
+            }
+        }
+        return null;
+    }
+}
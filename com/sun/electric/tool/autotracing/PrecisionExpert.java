@@ -20,12 +20,22 @@
 package com.sun.electric.tool.autotracing;
 
 import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.tool.util.concurrent.patterns.PForJob;
+import com.sun.electric.tool.util.concurrent.patterns.PForTask;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
+
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -33,55 +43,89 @@ import com.sun.electric.database.topology.NodeInst;
  */
 public class PrecisionExpert {
 
-    private HashSet<String> usedPortList = new HashSet<>();
+    private final BitSet usedPorts = new BitSet();                  // ids of used ports in connectivity
+    private Connectivity connectivity;                              // connectivity of traced cell
     private final Set<NodeInst> nodeList = new HashSet<>();
-    private HashSet<String> usedNodeList = new HashSet<>();
-    private ArrayList<Segment> segmentList = new ArrayList<>();
-    
-    private static PrecisionExpert instance;
+    private final Set<String> usedNodeList = new HashSet<>();
+    private final List<Segment> segmentList = new ArrayList<>();
 
-    private PrecisionExpert() {
-        
-    }
-    
     /**
-     * Return Singleton instance.
-     *
-     * @return
+     * Every advice is made by it's own object, so state of table is never
+     * shared between threads.
      */
-    private static synchronized PrecisionExpert getInstance() {
-        if (instance == null) {
-            instance = new PrecisionExpert();
-        }
-        return instance;
+    private PrecisionExpert() {
     }
 
     /**
-     * method to start Expert System.
+     * method to start Expert System. Table is built in this thread, then
+     * segments are handled in parallel and advice is given at once.
      */
     public static void getAdvice() {
-        instance = getInstance();
-        instance.renewLists();
-        instance.createTable();
-        instance.checkTable();
+        PrecisionExpert expert = new PrecisionExpert();
+        expert.createTable();
+        giveAdvice(expert.checkTable());
     }
-    
-    private void renewLists() {
-        usedPortList = new HashSet<>();
-        usedNodeList = new HashSet<>();
-        segmentList = new ArrayList<>();
-        assert (nodeList.isEmpty());
+
+    /**
+     * method to handle all segments of table in thread pool.
+     *
+     * @return advice in order of segments.
+     */
+    private List<Segment.Advice> checkTable() {
+        final Segment[] segments = segmentList.toArray(new Segment[segmentList.size()]);
+        final Queue<Segment.Advice> sink = new ConcurrentLinkedQueue<>();
+        if (segments.length > 0) {
+            PForJob<BlockedRange1D> job = new PForJob<>(new BlockedRange1D(0, segments.length, 1), new PForTask<BlockedRange1D>() {
+                @Override
+                public void execute() {
+                    for (int i = range.start(); i < range.end(); i++) {
+                        segments[i].handle(i, sink);
+                    }
+                }
+            }, SimpleAutotracing.getThreadPool());
+            try {
+                job.execute();
+            } finally {
+                SimpleAutotracing.shutdownThreadPool();
+            }
+        }
+        List<Segment.Advice> advices = new ArrayList<>(sink);
+        advices.sort(Comparator.comparingInt(Segment.Advice::getSegment));     // stable, order inside segment is kept
+        return advices;
     }
 
     /**
-     * method to check table manually by printing all internals.
+     * Method to print advice and to show it by one message, all advised ports
+     * are highlighted by one update in event dispatch thread.
      */
-    private void checkTable() {
-        Iterator<Segment> itr = segmentList.iterator();
-        while (itr.hasNext()) {
-            Segment segment = itr.next();
-            segment.handle();
+    private static void giveAdvice(List<Segment.Advice> advices) {
+        if (advices.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        final List<PortInst> ports = new ArrayList<>();
+        for (Segment.Advice advice : advices) {
+            System.out.println(advice.getMessage());
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(advice.getMessage());
+            if (advice.getPort() != null) {
+                ports.add(advice.getPort());
+            }
+        }
+        final String message = sb.toString();
+        if (Accessory.isBatchMode()) {
+            Accessory.showMessage(message);
+            return;
         }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                Segment.highlightAdvice(ports);
+                Accessory.showMessage(message);
+            }
+        });
     }
 
     /**
@@ -99,7 +143,7 @@ public class PrecisionExpert {
      * The main part of createTable method.
      */
     private void createOneTable(NodeInst startNi) {
-        PortInst[] piArray = Accessory.getNearByPortInsts(startNi.getPortInst(0), usedPortList);
+        PortInst[] piArray = Accessory.getNearByPortInsts(startNi.getPortInst(0));
         addSegment(startNi.getPortInst(0), piArray);
 
         while (!nodeList.isEmpty()) {
@@ -109,7 +153,7 @@ public class PrecisionExpert {
             while (itr2.hasNext()) {
                 pi = itr2.next();
                 if (!isPortUsed(pi)) {
-                    piArray = Accessory.getNearByPortInsts(pi, usedPortList);
+                    piArray = Accessory.getNearByPortInsts(pi);
                     addSegment(pi, piArray);
                 }
             }
@@ -144,14 +188,24 @@ public class PrecisionExpert {
      * Set port as used to avoid double-running.
      */
     private void setPortAsUsed(PortInst pi) {
-        usedPortList.add(pi.toString());
+        usedPorts.set(getPortId(pi));
     }
 
     /**
      * Check if port was used to avoid double-running.
      */
     private boolean isPortUsed(PortInst pi) {
-        return usedPortList.contains(pi.toString());
+        return usedPorts.get(getPortId(pi));
+    }
+
+    /**
+     * Method to get id of port in connectivity of traced cell.
+     */
+    private int getPortId(PortInst pi) {
+        if (connectivity == null) {
+            connectivity = Connectivity.getConnectivity(pi.getNodeInst().getParent());
+        }
+        return connectivity.getPortId(pi);
     }
 
 }
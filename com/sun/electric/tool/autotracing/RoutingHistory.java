@@ -0,0 +1,400 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: RoutingHistory.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.PortInst;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class keeps ways of nets from the last successful autotracing, so
+ * autotracing after small change of scheme searches ways only for changed
+ * nets. Way of net is the list of chains of global graph, keys of way are
+ * written again by CB graphs when way is used. Nets those have nodes changed
+ * since last autotracing are ripped up, way of other net is used only if it
+ * is still valid in current global graph, otherwise net is traced again.
+ * History is stored in routing.trc near configuration files. Autotracing
+ * attempt of portfolio mode reads ways of shared history and collects it's
+ * own new ways.
+ */
+final class RoutingHistory {
+
+    private static final String SEPARATOR = "\t";
+    private static RoutingHistory history;
+
+    private final File file;
+    private Map<String, Way> ways = new HashMap<>();                // ways of last successful autotracing
+    private Map<String, Way> newWays = new LinkedHashMap<>();       // ways of current autotracing step
+    private String cellName;                                        // cell of last successful autotracing
+    private long revisionDate;                                      // revision date of this cell
+    private CellRevision revision;                                  // revision of this cell, null if history is read from file
+    private long graphModified;                                     // globalGraph.trc those ways are found in
+    private long graphLength;
+    private Map<String, Way> negotiatedWays = new HashMap<>();      // ways of last non-delete negotiation step
+    private BitSet overusedChains = new BitSet();                   // chains used by several nets in that step
+    private boolean negotiating;                                    // non-delete negotiation step is running
+    private int reused;                                             // ways used again in current step
+    private int searched;                                           // ways searched in current step
+
+    /**
+     * Method to get history of autotracing, history is read from file when it
+     * is used first time.
+     *
+     * @return
+     */
+    static synchronized RoutingHistory getHistory() {
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            return attempt.getHistory();
+        }
+        if (history == null) {
+            history = new RoutingHistory(new File(Accessory.ROUTING_PATH));
+        }
+        return history;
+    }
+
+    /**
+     * Method to drop history kept in memory, it is read from file again when
+     * it is used next time.
+     */
+    static synchronized void dropHistory() {
+        history = null;
+    }
+
+    private RoutingHistory(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try {
+                read();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Routing history " + file + " is not loaded: " + e.getMessage());
+                ways.clear();
+                cellName = null;
+            }
+        }
+    }
+
+    private RoutingHistory(RoutingHistory shared) {
+        this.file = shared.file;
+        this.ways = shared.ways;
+        this.cellName = shared.cellName;
+        this.revisionDate = shared.revisionDate;
+        this.revision = shared.revision;
+        this.graphModified = shared.graphModified;
+        this.graphLength = shared.graphLength;
+    }
+
+    /**
+     * Method to create history of autotracing attempt, ways of this history
+     * mustn't be changed while attempt is running.
+     *
+     * @return
+     */
+    synchronized RoutingHistory createAttemptHistory() {
+        return new RoutingHistory(this);
+    }
+
+    /**
+     * Method to take new ways of winning autotracing attempt.
+     *
+     * @param attemptHistory
+     */
+    synchronized void adopt(RoutingHistory attemptHistory) {
+        synchronized (attemptHistory) {
+            newWays = attemptHistory.newWays;
+            reused = attemptHistory.reused;
+            searched = attemptHistory.searched;
+        }
+    }
+
+    /**
+     * Method to prepare history for autotracing of cell, ways of nets with
+     * changed nodes are ripped up, all ways are dropped if another cell or
+     * another global graph is traced.
+     *
+     * @param cell
+     */
+    synchronized void begin(Cell cell) {
+        File graph = new File(Accessory.GLOBAL_PATH);
+        CellRevision current = cell.backup().cellRevision;
+        if (!cell.libDescribe().equals(cellName) || (graph.lastModified() != graphModified) || (graph.length() != graphLength)) {
+            ways.clear();
+        } else if (revision != null) {
+            if (revision != current) {
+                Set<String> changedNodes = getChangedNodes(revision, current);
+                int ripped = 0;
+                for (Iterator<Way> itr = ways.values().iterator(); itr.hasNext();) {
+                    Way way = itr.next();
+                    if (changedNodes.contains(way.startNode) || changedNodes.contains(way.endNode)) {
+                        itr.remove();
+                        ripped++;
+                    }
+                }
+                System.out.println("Incremental autotracing: " + changedNodes.size() + " changed nodes, " + ripped + " nets ripped up");
+            }
+        } else if (cell.getRevisionDate().getTime() != revisionDate) {
+            System.out.println("Incremental autotracing: scheme was changed after " + file.getName() + " was written, only valid ways are used");
+        }
+        newWays = new LinkedHashMap<>();
+    }
+
+    /**
+     * Method to start new autotracing step.
+     */
+    synchronized void startStep() {
+        newWays = new LinkedHashMap<>();
+        reused = 0;
+        searched = 0;
+    }
+
+    /**
+     * Method to get way of net from last successful autotracing.
+     *
+     * @param from port the way starts from.
+     * @param to port the way comes to.
+     * @param niName name of block port the way comes to.
+     * @param param parameter of block the way starts from.
+     * @return chains from the end to the start of the way, null if there is no
+     * way.
+     */
+    synchronized int[] getWay(PortInst from, PortInst to, String niName, String param) {
+        String key = getKey(from, to, niName, param);
+        if (negotiating) {
+            Way negotiated = negotiatedWays.get(key);
+            if ((negotiated != null) && !negotiated.uses(overusedChains)) {
+                return negotiated.chains;                           // net isn't ripped up
+            }
+        }
+        if (!Constants.isIncrementalTracing()) {
+            return null;
+        }
+        Way way = ways.get(key);
+        return (way == null) ? null : way.chains;
+    }
+
+    /**
+     * Method to add way of net found or used in current step.
+     *
+     * @param from
+     * @param to
+     * @param niName
+     * @param param
+     * @param chains chains from the end to the start of the way.
+     * @param isReused true if way was taken from history.
+     */
+    synchronized void addWay(PortInst from, PortInst to, String niName, String param, int[] chains, boolean isReused) {
+        if (isReused) {
+            reused++;
+        } else {
+            searched++;
+        }
+        if (chains != null) {
+            newWays.put(getKey(from, to, niName, param),
+                    new Way(from.getNodeInst().getName(), to.getNodeInst().getName(), chains.clone()));
+        }
+    }
+
+    /**
+     * Method to start or finish non-delete step of negotiated congestion, while
+     * it runs nets whose ways of previous negotiation step don't use overused
+     * chains keep their ways, so only nets on overused chains are searched.
+     *
+     * @param negotiating
+     */
+    synchronized void setNegotiating(boolean negotiating) {
+        this.negotiating = negotiating;
+    }
+
+    /**
+     * Method to keep ways of non-delete negotiation step, which has just
+     * finished, for the next negotiation step.
+     *
+     * @param overused chains used by several nets in this step.
+     */
+    synchronized void keepNegotiatedWays(BitSet overused) {
+        negotiatedWays = new HashMap<>(newWays);
+        overusedChains = overused;
+    }
+
+    /**
+     * Method to keep ways of successful autotracing step as history of cell
+     * and write them to file.
+     *
+     * @param cell
+     */
+    synchronized void commit(Cell cell) {
+        File graph = new File(Accessory.GLOBAL_PATH);
+        ways = new HashMap<>(newWays);
+        cellName = cell.libDescribe();
+        revision = cell.backup().cellRevision;
+        revisionDate = cell.getRevisionDate().getTime();
+        graphModified = graph.lastModified();
+        graphLength = graph.length();
+        System.out.println("Incremental autotracing: " + reused + " ways used again, " + searched + " ways searched");
+        try {
+            write();
+        } catch (IOException ioe) {
+            System.err.println("IOException: " + ioe.getMessage());
+        }
+    }
+
+    private static String getKey(PortInst from, PortInst to, String niName, String param) {
+        return from.toString() + " -> " + to.toString() + " : " + niName + " : " + param;
+    }
+
+    /**
+     * Method to get names of nodes those are added, removed or changed
+     * between two revisions of cell, both nodes of changed arc are changed.
+     */
+    private static Set<String> getChangedNodes(CellRevision oldRevision, CellRevision newRevision) {
+        Set<String> changed = new HashSet<>();
+        for (ImmutableNodeInst n : newRevision.nodes) {
+            if (!oldRevision.hasNodeWithId(n.nodeId) || (oldRevision.getNodeById(n.nodeId) != n)) {
+                changed.add(n.name.toString());
+            }
+        }
+        for (ImmutableNodeInst n : oldRevision.nodes) {
+            if (!newRevision.hasNodeWithId(n.nodeId)) {
+                changed.add(n.name.toString());
+            }
+        }
+        for (ImmutableArcInst a : newRevision.arcs) {
+            if (oldRevision.getArcById(a.arcId) != a) {
+                addArcNodes(newRevision, a, changed);
+                ImmutableArcInst oldArc = oldRevision.getArcById(a.arcId);
+                if (oldArc != null) {
+                    addArcNodes(oldRevision, oldArc, changed);
+                }
+            }
+        }
+        for (ImmutableArcInst a : oldRevision.arcs) {
+            if (newRevision.getArcById(a.arcId) == null) {
+                addArcNodes(oldRevision, a, changed);
+            }
+        }
+        return changed;
+    }
+
+    private static void addArcNodes(CellRevision revision, ImmutableArcInst a, Set<String> changed) {
+        changed.add(revision.getNodeById(a.tailNodeId).name.toString());
+        changed.add(revision.getNodeById(a.headNodeId).name.toString());
+    }
+
+    /**
+     * This method reads history file: the first line is "cell revisionDate
+     * graphModified graphLength", every next line is "key startNode endNode
+     * chains" separated by tabs. List of chains is empty if the way doesn't
+     * pass any chain, wrong lines are skipped, other ways are kept.
+     */
+    private void read() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null) {
+                return;
+            }
+            String[] header = line.split(SEPARATOR);
+            cellName = header[0];
+            revisionDate = Long.parseLong(header[1]);
+            graphModified = Long.parseLong(header[2]);
+            graphLength = Long.parseLong(header[3]);
+            while ((line = reader.readLine()) != null) {
+                String[] split = line.split(SEPARATOR, -1);         // way without chains ends with empty field
+                if (split.length != 4) {
+                    System.err.println("Routing history " + file + ": wrong line is skipped: " + line);
+                    continue;
+                }
+                String[] chainNames = split[3].isEmpty() ? new String[0] : split[3].split(",");
+                int[] chains = new int[chainNames.length];
+                try {
+                    for (int i = 0; i < chains.length; i++) {
+                        chains[i] = Integer.parseInt(chainNames[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("Routing history " + file + ": wrong line is skipped: " + line);
+                    continue;
+                }
+                ways.put(split[0], new Way(split[1], split[2], chains));
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(cellName + SEPARATOR + revisionDate + SEPARATOR + graphModified + SEPARATOR + graphLength);
+            writer.newLine();
+            for (Map.Entry<String, Way> e : ways.entrySet()) {
+                Way way = e.getValue();
+                StringBuilder sb = new StringBuilder();
+                sb.append(e.getKey()).append(SEPARATOR).append(way.startNode).append(SEPARATOR).append(way.endNode).append(SEPARATOR);
+                for (int i = 0; i < way.chains.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(way.chains[i]);
+                }
+                writer.write(sb.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * This class keeps way of one net.
+     */
+    private static final class Way {
+
+        private final String startNode;         // name of node the way starts from
+        private final String endNode;           // name of node the way comes to
+        private final int[] chains;             // chains from the end to the start of the way
+
+        private Way(String startNode, String endNode, int[] chains) {
+            this.startNode = startNode;
+            this.endNode = endNode;
+            this.chains = chains;
+        }
+
+        /**
+         * Method to check if way goes through one of chains.
+         */
+        private boolean uses(BitSet chainSet) {
+            for (int chain : chains) {
+                if (chainSet.get(chain)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -30,15 +30,20 @@ public final class Scheme {
     private static Scheme instance;
     private final Map<String, String> elementsMap = new HashMap<>();     // PortInst
 
-    private Scheme() {
+    Scheme() {
     }
 
     /**
-     * Return Singleton instance.
+     * Return Singleton instance, autotracing attempt of portfolio mode has
+     * it's own instance.
      *
      * @return
      */
     public static synchronized Scheme getInstance() {
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            return attempt.getScheme();
+        }
         if (instance == null) {
             instance = new Scheme();
         }
@@ -66,6 +71,16 @@ public final class Scheme {
         return elementsMap.get(key);
     }
 
+    /**
+     * Method to replace all links with links of another Scheme.
+     *
+     * @param source
+     */
+    void copyFrom(Scheme source) {
+        elementsMap.clear();
+        elementsMap.putAll(source.elementsMap);
+    }
+
     /**
      * Method to reset Scheme.
      *
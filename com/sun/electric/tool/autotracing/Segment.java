@@ -20,7 +20,10 @@
 package com.sun.electric.tool.autotracing;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import com.sun.electric.database.topology.ArcInst;
 import com.sun.electric.database.topology.PortInst;
@@ -76,9 +79,28 @@ public class Segment {
     }
 
     /**
-     * Method to handle segment and to form advice
+     * Method to handle segment and to give advice at once.
      */
     public void handle() {
+        List<Advice> advices = new ArrayList<>();
+        handle(0, advices);
+        for (Advice advice : advices) {
+            giveAdvice(advice.getMessage());
+            if (advice.getPort() != null) {
+                highlightAdvice(advice.getPort());
+            }
+        }
+    }
+
+    /**
+     * Method to handle segment and to form advice. Segment is only read, so
+     * segments can be handled in parallel with concurrent sink.
+     *
+     * @param number number of segment, it orders advice of segments.
+     * @param sink collection for advice.
+     */
+    void handle(int number, Collection<Advice> sink) {
+        List<Advice> advices = new ArrayList<>();
         int res = 0;
         int pres = 0;
         int cap = 0;
@@ -151,8 +173,7 @@ public class Segment {
             if ((res >= 2) && (out == 1)) {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
-                        giveAdvice("Use 4-points in " + pi.toString());
-                        highlightAdvice(pi);
+                        advices.add(new Advice(number, "Use 4-points in " + pi.toString(), pi));
                         break;
                     }
                 }
@@ -161,8 +182,7 @@ public class Segment {
             if ((res >= 1) && (out == 1) && (output == 1)) {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
-                        giveAdvice("Use 4-points in " + pi.toString());
-                        highlightAdvice(pi);
+                        advices.add(new Advice(number, "Use 4-points in " + pi.toString(), pi));
                         break;
                     }
                 }
@@ -170,8 +190,7 @@ public class Segment {
             if ((out == 1) && (inp == 1) && (res == 1)) {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
-                        giveAdvice("Use 4-points in " + pi.toString());
-                        highlightAdvice(pi);
+                        advices.add(new Advice(number, "Use 4-points in " + pi.toString(), pi));
                         break;
                     }
                 }
@@ -179,8 +198,7 @@ public class Segment {
             if ((out == 1) && (inm == 1) && (res == 1)) {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
-                        giveAdvice("Use 4-points in " + pi.toString());
-                        highlightAdvice(pi);
+                        advices.add(new Advice(number, "Use 4-points in " + pi.toString(), pi));
                         break;
                     }
                 }
@@ -192,8 +210,7 @@ public class Segment {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
                         if ((Accessory.parsePortToBlock(pi.toString())).equals("PAU")) {
-                            giveAdvice("Use shunt " + pi.toString());
-                            highlightAdvice(pi);
+                            advices.add(new Advice(number, "Use shunt " + pi.toString(), pi));
                             break;
                         }
                     }
@@ -202,18 +219,18 @@ public class Segment {
         }
         if (inp == 0) {
             if ((outp == 1) || (outm == 1)) {
-                giveAdvice("bufferisation is needed.");
+                advices.add(new Advice(number, "bufferisation is needed.", null));
             }
             if ((res >= 2) && (out == 1)) {
                 for (PortInst pi : elementsList) {
                     if ((Accessory.parsePortToPortOld(pi.toString())).equals("OUT")) {
-                        giveAdvice("Use 4-points in " + pi.toString());
-                        highlightAdvice(pi);
+                        advices.add(new Advice(number, "Use 4-points in " + pi.toString(), pi));
                         break;
                     }
                 }
             }
         }
+        sink.addAll(advices);                   // advice of one segment stays in order
     }
 
     /**
@@ -222,9 +239,16 @@ public class Segment {
      * @param pi
      */
     public void highlightAdvice(PortInst pi) {
-        if (!pi.hasConnections()) {
-            return;
-        }
+        highlightAdvice(Collections.singletonList(pi));
+    }
+
+    /**
+     * Method to highlight arcs of all ports with one repaint, it should be
+     * called in event dispatch thread.
+     *
+     * @param ports
+     */
+    static void highlightAdvice(List<PortInst> ports) {
         EditWindow wnd = EditWindow.needCurrent();
         if (wnd == null) {
             return;
@@ -232,13 +256,43 @@ public class Segment {
         Cell cell = wnd.getCell();
         Highlighter highlighter = wnd.getHighlighter();
 
-        Iterator<Connection> itr = pi.getConnections();
-        while (itr.hasNext()) {
-            Connection con = itr.next();
-            ArcInst ai = con.getArc();
-            highlighter.addElectricObject(ai, cell, Color.YELLOW);
+        for (PortInst pi : ports) {
+            Iterator<Connection> itr = pi.getConnections();
+            while (itr.hasNext()) {
+                Connection con = itr.next();
+                ArcInst ai = con.getArc();
+                highlighter.addElectricObject(ai, cell, Color.YELLOW);
+            }
         }
         EditWindow.repaintAllContents();
     }
 
+    /**
+     * This class keeps one advice: message and port to highlight.
+     */
+    static final class Advice {
+
+        private final int segment;                  // number of segment
+        private final String message;
+        private final PortInst port;                // null if nothing to highlight
+
+        Advice(int segment, String message, PortInst port) {
+            this.segment = segment;
+            this.message = message;
+            this.port = port;
+        }
+
+        int getSegment() {
+            return segment;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        PortInst getPort() {
+            return port;
+        }
+    }
+
 }
@@ -22,9 +22,16 @@ package com.sun.electric.tool.autotracing;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
-import com.sun.electric.tool.Job;
 
+import com.sun.electric.tool.Job;
 import com.sun.electric.tool.user.CellChangeJobs;
+import com.sun.electric.tool.util.concurrent.exceptions.PoolExistsException;
+import com.sun.electric.tool.util.concurrent.patterns.PForJob;
+import com.sun.electric.tool.util.concurrent.patterns.PForTask;
+import com.sun.electric.tool.util.concurrent.runtime.Scheduler.SchedulingStrategy;
+import com.sun.electric.tool.util.concurrent.runtime.Scheduler.UnknownSchedulerException;
+import com.sun.electric.tool.util.concurrent.runtime.taskParallel.ThreadPool;
+import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
 
 import java.io.IOException;
 import java.io.File;
@@ -33,15 +40,9 @@ import java.io.FileReader;
 import java.util.ArrayDeque;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -51,26 +52,34 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class SimpleAutotracing {
 
-    private HashSet<String> usedPortList = new HashSet<>();
+    private BitSet usedPorts = new BitSet();                        // ids of used ports in connectivity
+    private Connectivity connectivity;                              // connectivity of traced cell
     private ArrayDeque<NodeInst> nodeList = new ArrayDeque<>();
     private HashSet<String> usedNodeList = new HashSet<>();
     private NonOrientedGlobalGraph nogg;
     private NonOrientedGlobalGraph nogg2;
 
-    private boolean exitPressed = false;
+    private volatile boolean exitPressed = false;
+    private volatile boolean cancelled = false;                     // attempt of portfolio is stopped because another attempt won
+    private volatile TracingAttempt[] attempts;                     // running attempts of portfolio autotracing
 
     private final Object lock = new Object();
 
-    private static Scheme scheme;
-    private static AuxilarySimpleAutotracing auxisa;
+    private Scheme scheme;
+    private AuxilarySimpleAutotracing auxisa;
     private static SimpleAutotracing simpleAutotracing;
-    private static final ExecutorService service = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()+1);
+    private static ThreadPool ownPool;                  // pool started by autotracing, null if another tool's pool is used
+    private static final int NO_WAY = 100000;
 
     /**
      *
      * @return
      */
     public static SimpleAutotracing getSimpleAutotracing() {
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            return attempt.getTracer();
+        }
         if (simpleAutotracing == null) {
             simpleAutotracing = new SimpleAutotracing();
         }
@@ -79,42 +88,169 @@ public class SimpleAutotracing {
 
     public void startTrace() {
         simpleAutotracing = getSimpleAutotracing();
-        scheme = Scheme.getInstance();
-        auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
-        simpleAutotracing.makeTrace();
+        try {
+            simpleAutotracing.makeTrace();
+        } finally {
+            shutdownThreadPool();
+        }
         Accessory.timeFinish();
     }
 
+    /**
+     * Method to trace cell in batch mode, configuration files are written but
+     * modelling isn't started.
+     *
+     * @param cell
+     * @return true if all nets are traced.
+     */
+    boolean startBatchTrace(Cell cell) {
+        simpleAutotracing = getSimpleAutotracing();
+        try {
+            return simpleAutotracing.traceCell(cell);
+        } finally {
+            shutdownThreadPool();
+        }
+    }
+
     /**
      * This method is used as initiation for autotracing system, cleaning files
      * and prepare for work, renew all static objects.
      */
     private void makeTrace() {
+        if (traceCell(Accessory.getCurrentCell())) {
+            long start = System.currentTimeMillis();
+            simulate();
+            TracingMetrics.addPhase("simulation", start);
+        }
+    }
+
+    /**
+     * Method to trace cell and write configuration files, modelling isn't
+     * started. Metrics of autotracing are collected from the start.
+     *
+     * @param cell
+     * @return true if all nets are traced.
+     */
+    boolean traceCell(Cell cell) {
         exitPressed = false;
+        TracingMetrics.reset();
+        long start = System.currentTimeMillis();
+        RoutingHistory.getHistory().begin(cell);
+        TracingMetrics.addPhase("history", start);
+        start = System.currentTimeMillis();
+        boolean traced;
+        if (Constants.getPortfolioSize() > 1) {
+            traced = tracePortfolio(cell, Constants.getPortfolioSize());
+        } else {
+            traced = route(new NonOrientedGlobalGraph("EighteenAugust"));
+        }
+        TracingMetrics.addPhase("routing", start);
+        if (!traced) {
+            return false;
+        }
+        start = System.currentTimeMillis();
+        RoutingHistory.getHistory().commit(cell);
+        KeyConfiguration.flushAll();
+        TracingMetrics.addPhase("configuration", start);
+        return true;
+    }
+
+    /**
+     * Method to run several autotracing attempts in parallel, every attempt
+     * has it's own copy of global graph and it's own order of nets. The first
+     * attempt which traces all nets wins, other attempts are stopped and
+     * results of winner become results of autotracing.
+     */
+    private boolean tracePortfolio(Cell cell, int size) {
+        BlockMapForGraph.getBlockMapForGraph();                         // shared objects are prepared before attempts
+        Connectivity.getConnectivity(cell);
+        NodeInst[] startNodes = Accessory.getStartingNodeInst(cell);    // user interface is unavailable in workers
+        NonOrientedGlobalGraph base = new NonOrientedGlobalGraph("EighteenAugust");
+        final TracingAttempt[] portfolio = new TracingAttempt[size];
+        for (int i = 0; i < size; i++) {
+            portfolio[i] = new TracingAttempt(i, new NonOrientedGlobalGraph(base), cell, startNodes);
+        }
+        final AtomicInteger winner = new AtomicInteger(-1);
+        attempts = portfolio;
+        try {
+            PForJob<BlockedRange1D> job = new PForJob<>(new BlockedRange1D(0, size, 1), new PForTask<BlockedRange1D>() {
+                @Override
+                public void execute() {
+                    for (int i = range.start(); i < range.end(); i++) {
+                        TracingAttempt attempt = portfolio[i];
+                        if (winner.get() != -1) {
+                            continue;
+                        }
+                        attempt.enter();
+                        try {
+                            if (attempt.getTracer().route(attempt.getGraph()) && winner.compareAndSet(-1, i)) {
+                                for (TracingAttempt other : portfolio) {
+                                    if (other != attempt) {
+                                        other.getTracer().cancel();
+                                    }
+                                }
+                            }
+                        } catch (RuntimeException e) {
+                            System.out.println("Attempt " + i + " failed: " + e);
+                        } finally {
+                            attempt.exit();
+                        }
+                    }
+                }
+            }, getThreadPool());
+            job.execute();
+        } finally {
+            attempts = null;
+        }
+        int won = winner.get();
+        if (won == -1) {
+            if (!exitPressed) {
+                Accessory.showMessage("Autotracing proccess failed.");
+            }
+            return false;
+        }
+        System.out.println("Portfolio autotracing: attempt " + won + " (" + portfolio[won].getOrder() + ") won");
+        portfolio[won].install();
+        return true;
+    }
+
+    /**
+     * Method to trace all nets on global graph, failed step is followed by
+     * weight increase or negotiation step.
+     *
+     * @return true if all nets are traced.
+     */
+    private boolean route(NonOrientedGlobalGraph graph) {
         int imax = 45;               // max amount of iterations
         resetStatics();
-        nogg = new NonOrientedGlobalGraph("EighteenAugust");
+        nogg = graph;
 
         try {
             initStart(false);
         } catch (StepFailedException e) {
-            Accessory.showMessage("Autotracing proccess failed with non-specific reason.");
-            return;
+            showFailure("Autotracing proccess failed with non-specific reason.");
+            return false;
         } catch (IOException ioe) {
             ioe.printStackTrace();
             assert false;
         } catch (FunctionalException fe) {
             fe.printStackTrace();
-            return;
+            return false;
         }
         resetStatics();
-        nogg.applyWeightChanges();
+        CongestionCosts costs = null;
+        if (Constants.isNegotiatedCongestion()) {
+            costs = nogg.createCongestionCosts();
+            applyNegotiatedCosts(costs, 0);
+        } else {
+            nogg.applyWeightChanges();
+        }
         nogg2 = new NonOrientedGlobalGraph(nogg);
 
         for (int i = 0; i < imax; i++) {
             if (exitPressed) {
                 exitPressed = false;
-                return;
+                return false;
             }
             System.out.println("Step " + i);
             boolean withIncrease = false;
@@ -127,29 +263,45 @@ public class SimpleAutotracing {
             try {
                 initStart(true);
                 //Accessory.showMessage("Autotracing proccess completed.");
-                break;
+                return true;
             } catch (IOException ioe) {
                 ioe.printStackTrace();
                 assert false;
             } catch (StepFailedException e) {
                 e.printStackTrace();
+                TracingMetrics.addRetry();
                 try {
-                    oneMoreStep(withIncrease);
+                    if (costs != null) {
+                        negotiateStep(costs, i + 1);
+                    } else {
+                        oneMoreStep(withIncrease);
+                    }
                 } catch (FunctionalException fe) {
                     fe.printStackTrace();
-                    return;
+                    return false;
                 }
             } catch (FunctionalException fe) {
                 fe.printStackTrace();
-                return;
+                return false;
             }
             if (i == (imax - 1)) {
-                Accessory.showMessage("Autotracing proccess failed.");
-                return;
+                showFailure("Autotracing proccess failed.");
+                return false;
             }
         }
+        return false;
+    }
 
-        simulate();
+    /**
+     * Method to show failure message, attempt of portfolio autotracing only
+     * prints it because failure of one attempt isn't failure of autotracing.
+     */
+    private void showFailure(String message) {
+        if (TracingAttempt.current() != null) {
+            System.out.println("Attempt " + TracingAttempt.current().getNumber() + ": " + message);
+        } else {
+            Accessory.showMessage(message);
+        }
     }
 
     /**
@@ -173,14 +325,54 @@ public class SimpleAutotracing {
         nogg2 = new NonOrientedGlobalGraph(nogg);
     }
 
+    /**
+     * prepare new Iteration with negotiated congestion costs, every step
+     * traces nets without deleting chains and makes overused chains more
+     * expensive. Only nets whose ways of previous step use overused chains are
+     * ripped up and searched again, other nets replay their ways.
+     */
+    private void negotiateStep(CongestionCosts costs, int step) throws FunctionalException {
+        resetStatics();
+        nogg = new NonOrientedGlobalGraph(nogg2);
+        RoutingHistory history = RoutingHistory.getHistory();
+        history.setNegotiating(true);
+        try {
+            initStart(false);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        } catch (StepFailedException e) {
+            e.printStackTrace();
+            Accessory.printLog("Step failed");
+        } finally {
+            history.setNegotiating(false);
+        }
+        resetStatics();
+        applyNegotiatedCosts(costs, step);
+        nogg2 = new NonOrientedGlobalGraph(nogg);
+    }
+
+    /**
+     * Method to apply costs of last non-delete step and report overuse.
+     */
+    private void applyNegotiatedCosts(CongestionCosts costs, int step) {
+        nogg.applyNegotiatedCosts(costs);
+        RoutingHistory.getHistory().keepNegotiatedWays(costs.getOverusedChainSet());
+        System.out.println("Negotiation step " + step + ": overused chains " + costs.getOverusedChains()
+                + ", overuse " + costs.getOveruse());
+        costs.nextStep();
+    }
+
     /**
      * Reset all static variables except nogg.
      */
     private void resetStatics() {
-        Accessory.cleanFile(Accessory.CONFIG_PATH);
-        Accessory.cleanFile(Accessory.CONFIG_WITHOUT_MODELLING_PATH);
+        scheme = Scheme.getInstance();
+        auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).clear();
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_WITHOUT_MODELLING_PATH).clear();
         nodeList = new ArrayDeque<>();
-        usedPortList = new HashSet<>();
+        usedPorts = new BitSet();
+        connectivity = null;
         usedNodeList = new HashSet<>();
         auxisa.resetAuxilary();
 
@@ -192,8 +384,15 @@ public class SimpleAutotracing {
      */
     private void initStart(boolean doDelete) throws IOException, StepFailedException, FunctionalException {
         scheme.resetScheme();
+        RoutingHistory.getHistory().startStep();
         prepareSPMBlocks(nogg, doDelete);
-        NodeInst[] startNi = Accessory.getStartingNodeInst();
+        NodeInst[] startNi;
+        TracingAttempt attempt = TracingAttempt.current();
+        if (attempt != null) {
+            startNi = attempt.orderNodes(attempt.getStartNodes());
+        } else {
+            startNi = Accessory.getStartingNodeInst();
+        }
         for (NodeInst ni : startNi) {
             if (!usedNodeList.contains(ni.toString())) {
                 PortInst firstPort = ni.getPortInst(0);             // Wow, 0 is luck (input has 2 ports: input* and source)
@@ -212,7 +411,7 @@ public class SimpleAutotracing {
      * starting second method (for all ports and all nodeInsts).
      */
     private void traceFromStartToEnd(PortInst startPort, boolean doDelete) throws IOException, StepFailedException, FunctionalException {
-        PortInst[] piArray = Accessory.getNearByPortInsts(startPort, usedPortList);
+        PortInst[] piArray = orderPorts(Accessory.getNearByPortInsts(startPort));
         for (PortInst pi : piArray) {
             setPortAsUsed(pi);
         }
@@ -234,7 +433,7 @@ public class SimpleAutotracing {
             nodeList.add(pi.getNodeInst());
             usedNodeList.add(pi.getNodeInst().toString());
 
-            String nextBlock = nogg.deikstra(firstChain, secondPort, null, doDelete, true).getFirstObject(); // woops, should be tripletraced for all ports.
+            String nextBlock = traceWay(startPort, pi, firstChain, secondPort, null, doDelete, false).getFirstObject(); // woops, should be tripletraced for all ports.
             Accessory.printLog("nextBlock " + nextBlock);
             /* Maybe should be changed */
             if (nextBlock.contains("SPM<")) {  // SPM<, are u sure with SPM1-9?
@@ -253,6 +452,9 @@ public class SimpleAutotracing {
         }
         NodeInst ni;
         while ((ni = nodeList.pollFirst()) != null) {
+            if (cancelled) {
+                throw new StepFailedException("Attempt is cancelled.");
+            }
             if (ni.toString().contains("INPUT")) {
                 nogg.setBlockAsUsed(auxisa.getParameter(ni.toString()));
                 continue;
@@ -282,7 +484,7 @@ public class SimpleAutotracing {
             setPortAsUsed(startPort);
         }
 
-        PortInst[] piArray = Accessory.getNearByPortInsts(startPort, usedPortList);
+        PortInst[] piArray = orderPorts(Accessory.getNearByPortInsts(startPort));
         if (piArray.length == 0) {
             return;
         }
@@ -333,15 +535,15 @@ public class SimpleAutotracing {
             String secondPort = auxisa.dealWithBlock(pi.getNodeInst(), pi);
             String nextBlock;
 
-            Accessory.timeStart("s");
-            try {
+            int[] way = RoutingHistory.getHistory().getWay(startPort, pi, secondPort, param);
+            if ((way != null) && firstChainsList.contains(way[way.length - 1]) && nogg.isWayValid(way, secondPort)) {
+                firstChain = way[way.length - 1];                                // first chain of unchanged net
+            } else {
+                Accessory.timeStart("s");
                 firstChain = deikstraMultiThreads(firstChainsList, pi, secondPort, param);
-            } catch (ExecutionException | InterruptedException ee) {
-                ee.printStackTrace();
-                assert false;
-            }
 
-            Accessory.timeStart("s");
+                Accessory.timeStart("s");
+            }
 
             firstChainS = nogg.getNameFromPoint(firstChain, name);
             if (firstChainS == null) {
@@ -354,7 +556,7 @@ public class SimpleAutotracing {
             Accessory.printLog("secondPort " + secondPort);
 
             nogg.resetLists();
-            nextBlock = nogg.deikstra(firstChain, secondPort, param, doDelete, true, true).getFirstObject(); // param may be null
+            nextBlock = traceWay(startPort, pi, firstChain, secondPort, param, doDelete, true).getFirstObject(); // param may be null
 
             if (nextBlock == null) {
                 Accessory.printLog("Increase weight for last net");
@@ -383,50 +585,131 @@ public class SimpleAutotracing {
     }
 
     /**
-     * Deikstra method was paralleled by 3 threads (max 8 in SPM).
+     * Method to order ports of net using order of portfolio attempt.
      */
-    private int deikstraMultiThreads(ArrayList<Integer> firstChainsList, PortInst pi, String secondPort, String param) throws ExecutionException, InterruptedException, StepFailedException {
-        final AtomicInteger pathLength = new AtomicInteger(100000);
-        final AtomicInteger firstChain = new AtomicInteger(-1);
-        List<Future> futures = new ArrayList<>();
-        HashMap<Integer, Pair<String, Integer>> map = new HashMap<>();
-
-        for (int firstC : firstChainsList) {
-            futures.add(service.submit(new Runnable() {
-                public void run() {
-                    NonOrientedGlobalGraph noggX = new NonOrientedGlobalGraph(nogg);
-                    Pair<String, Integer> pair = noggX.deikstra(firstC, secondPort, param, false, false);
-                    synchronized (lock) {
-                        map.put(firstC, pair);
-                    }
-                }
-            }));
-        }
+    private static PortInst[] orderPorts(PortInst[] piArray) {
+        TracingAttempt attempt = TracingAttempt.current();
+        return (attempt == null) ? piArray : attempt.orderPorts(piArray);
+    }
 
-        for (Future f : futures) {
-            f.get();
+    /**
+     * Method to trace way from first chain to secondPort, way of this net from
+     * last successful autotracing is used instead of deikstra if it is still
+     * valid in current graph.
+     */
+    private Pair<String, Integer> traceWay(PortInst startPort, PortInst pi, int firstChain, String secondPort, String param, boolean doDelete, boolean SPMAffected) {
+        RoutingHistory history = RoutingHistory.getHistory();
+        int[] way = history.getWay(startPort, pi, secondPort, param);
+        boolean isReused = (way != null) && (way[way.length - 1] == firstChain) && nogg.isWayValid(way, secondPort);
+        Pair<String, Integer> found;
+        if (isReused) {
+            found = nogg.replayWay(way, secondPort, doDelete, true, SPMAffected);
+        } else {
+            found = nogg.deikstra(firstChain, secondPort, param, doDelete, true, SPMAffected);
         }
+        history.addWay(startPort, pi, secondPort, param, (found.getFirstObject() == null) ? null : nogg.getLastWay(), isReused);
+        return found;
+    }
 
-        for (Map.Entry<Integer, Pair<String, Integer>> entry : map.entrySet()) {
-            Pair<String, Integer> pair = entry.getValue();
-            Integer firstC = entry.getKey();
+    /**
+     * Method to search way from i-th first chain on overlay of global graph.
+     */
+    private void searchFromChain(int i, ArrayList<Integer> firstChainsList, String secondPort, String param,
+            AtomicInteger pathLength, int[] pathLengths, Throwable[] errors) {
+        pathLengths[i] = -1;
+        try {
+            NonOrientedGlobalGraph noggX = nogg.createSearchOverlay();
+            Pair<String, Integer> pair = noggX.deikstra(firstChainsList.get(i), secondPort, param, false, false, false, pathLength);
             int pathL = pair.getSecondObject();
-            if (pathL == -1) {
-                continue;
+            pathLengths[i] = pathL;
+            if (pathL != -1) {
+                pathLength.accumulateAndGet(pathL, Math::min);
             }
-            if (pathLength.get() > pathL) {
-                //if (auxisa.checkBlockForExistingOutput(pi, nogg, secondPort)) {
-                pathLength.set(pathL);
-                Accessory.printLog(String.valueOf(pathLength));
-                firstChain.set(firstC);
-                //}
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                errors[0] = e;
             }
         }
+    }
 
-        if (pathLength.get() == 100000) {
+    /**
+     * Deikstra method is paralleled for every first chain using work stealing
+     * thread pool, search is stopped when it can't find the way as short as
+     * ways found by other searches. Searches don't drop ways of the same
+     * length as found ones, so every search which can reach the shortest
+     * length reports it and the first chain in list wins regardless of
+     * timing of threads.
+     */
+    private int deikstraMultiThreads(ArrayList<Integer> firstChainsList, PortInst pi, String secondPort, String param) throws StepFailedException {
+        final AtomicInteger pathLength = new AtomicInteger(NO_WAY);
+        final int[] pathLengths = new int[firstChainsList.size()];
+        final Throwable[] errors = new Throwable[1];
+
+        if (TracingAttempt.current() != null) {
+            // attempt of portfolio already runs in thread of pool
+            for (int i = 0; i < pathLengths.length; i++) {
+                searchFromChain(i, firstChainsList, secondPort, param, pathLength, pathLengths, errors);
+            }
+        } else {
+            PForJob<BlockedRange1D> job = new PForJob<>(new BlockedRange1D(0, firstChainsList.size(), 1), new PForTask<BlockedRange1D>() {
+                @Override
+                public void execute() {
+                    for (int i = range.start(); i < range.end(); i++) {
+                        searchFromChain(i, firstChainsList, secondPort, param, pathLength, pathLengths, errors);
+                    }
+                }
+            }, getThreadPool());
+            job.execute();
+        }
+
+        synchronized (lock) {
+            if (errors[0] != null) {
+                throw new StepFailedException("Search failed: " + errors[0]);
+            }
+        }
+        int firstChain = -1;
+        int bestLength = NO_WAY;
+        for (int i = 0; i < pathLengths.length; i++) {
+            int pathL = pathLengths[i];
+            if ((pathL != -1) && (pathL < bestLength)) {
+                bestLength = pathL;
+                firstChain = firstChainsList.get(i);
+            }
+        }
+        if (firstChain == -1) {
             throw new StepFailedException("So sad. Can't do autotracing through this way.");
         }
-        return firstChain.get();
+        Accessory.printLog(String.valueOf(bestLength));
+        return firstChain;
+    }
+
+    /**
+     * Method to get thread pool for parallel deikstra, pool is started if
+     * there is no running pool.
+     */
+    static synchronized ThreadPool getThreadPool() {
+        ThreadPool pool = ThreadPool.getThreadPool();
+        if ((pool != null) && (pool.getState() == ThreadPool.ThreadPoolState.Started)) {
+            return pool;
+        }
+        try {
+            ownPool = ThreadPool.initialize(SchedulingStrategy.workStealing, Runtime.getRuntime().availableProcessors() + 1);
+        } catch (PoolExistsException | UnknownSchedulerException e) {
+            e.printStackTrace();
+            ownPool = ThreadPool.getThreadPool();
+        }
+        return ownPool;
+    }
+
+    /**
+     * Method to shutdown thread pool if it was started by autotracing, so
+     * batch autotracing doesn't leave working threads.
+     */
+    static synchronized void shutdownThreadPool() {
+        if ((ownPool != null) && (ownPool == ThreadPool.getThreadPool())) {
+            ThreadPool.killPool();
+        }
+        ownPool = null;
     }
 
     /**
@@ -435,6 +718,7 @@ public class SimpleAutotracing {
      * @return
      */
     public static void prepareSPMBlocks(NonOrientedGlobalGraph nogg, boolean doDelete) {
+        AuxilarySimpleAutotracing auxisa = AuxilarySimpleAutotracing.getAuxilaryOnlyObject();
         ArrayDeque<String> firstFiveSPMs = new ArrayDeque<>();
         firstFiveSPMs.add("SPM<2466.Y6");
         firstFiveSPMs.add("SPM<8502.Y6");
@@ -442,7 +726,8 @@ public class SimpleAutotracing {
         firstFiveSPMs.add("SPM<20574.Y6");
         firstFiveSPMs.add("SPM<26610.Y6");
         // .Y6 coz setParameter requires nextBlock variable which contains port
-        Cell curcell = Job.getUserInterface().getCurrentCell();
+        TracingAttempt attempt = TracingAttempt.current();
+        Cell curcell = (attempt != null) ? attempt.getCell() : Accessory.getCurrentCell();
         Iterator<NodeInst> itr = curcell.getNodes();
         ArrayList<NodeInst> spmList = new ArrayList<>();
         while (itr.hasNext()) {
@@ -525,7 +810,7 @@ public class SimpleAutotracing {
     private void addKey(String ni, String number) {
         String absNum = ni.substring(ni.indexOf("<") + 1, ni.lastIndexOf("."));
         int resultKey = Integer.valueOf(absNum) + Integer.valueOf(number);
-        Accessory.write(Accessory.CONFIG_PATH, (String.valueOf(resultKey)));
+        KeyConfiguration.getConfiguration(Accessory.CONFIG_PATH).addKey(resultKey);
     }
 
     /**
@@ -552,7 +837,7 @@ public class SimpleAutotracing {
             while (itrCap.hasNext()) {
                 PortInst secondPi = itrCap.next();
                 if (!isPortUsed(secondPi)) {
-                    PortInst[] piArray = Accessory.getNearByPortInsts(secondPi, usedPortList);
+                    PortInst[] piArray = Accessory.getNearByPortInsts(secondPi);
                     for (PortInst newPi : piArray) {
                         if (newPi.toString().contains("VSS")) {
                             String parameter = auxisa.getParameter(ni.toString());
@@ -595,7 +880,7 @@ public class SimpleAutotracing {
      * @param pi
      */
     public void setPortAsUsed(PortInst pi) {
-        usedPortList.add(pi.toString());
+        usedPorts.set(getPortId(pi));
     }
 
     /**
@@ -605,7 +890,17 @@ public class SimpleAutotracing {
      * @return
      */
     public boolean isPortUsed(PortInst pi) {
-        return usedPortList.contains(pi.toString());
+        return usedPorts.get(getPortId(pi));
+    }
+
+    /**
+     * Method to get id of port in connectivity of traced cell.
+     */
+    private int getPortId(PortInst pi) {
+        if (connectivity == null) {
+            connectivity = Connectivity.getConnectivity(pi.getNodeInst().getParent());
+        }
+        return connectivity.getPortId(pi);
     }
 
     private void simulate() {
@@ -616,14 +911,29 @@ public class SimpleAutotracing {
         }
         assert basicCell != null;
 
-        new CellChangeJobs.DuplicateCell(basicCell, Automodelling.AUTOTRACING_CELL_NAME, basicCell.getLibrary(), false, false, null);
+        Job duplicate = new CellChangeJobs.DuplicateCell(basicCell, Automodelling.AUTOTRACING_CELL_NAME, basicCell.getLibrary(), false, false, null);
 
         Automodelling.writeSPMkeys();
-        Automodelling.modelScheme();
+        Automodelling.modelScheme(duplicate);
     }
 
     public void setExitPressed() {
         exitPressed = true;
+        TracingAttempt[] running = attempts;
+        if (running != null) {
+            for (TracingAttempt attempt : running) {
+                attempt.getTracer().cancel();
+            }
+        }
+    }
+
+    /**
+     * Method to stop attempt of portfolio autotracing, attempt stops after
+     * current net.
+     */
+    void cancel() {
+        cancelled = true;
+        exitPressed = true;
     }
 
 }
@@ -0,0 +1,169 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: TraceGenerator.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * This class generates synthetic chips in .trc format for benchmarks. Chip is
+ * a square of size x size CBs named as in real global graph (CB<216.X11),
+ * every CB is connected with it's right and lower
+ * neighbours by 6 chains (X2t -- X1t and Y2t -- Y1t for t = 1..6). Template
+ * of CB has 6 horizontal and 6 vertical internal lines, every global port is
+ * connected with it's line by key and every horizontal line is connected with
+ * every vertical line by key, so every global port of CB is reachable from
+ * every other one.
+ */
+public final class TraceGenerator {
+
+    private static final int TRACKS = 6;
+
+    /**
+     * private constructor prohibits creating objects of this class.
+     */
+    private TraceGenerator() {
+    }
+
+    /**
+     * Method to get file of synthetic global graph.
+     *
+     * @param directory
+     * @param size
+     * @return
+     */
+    static File getGraphFile(File directory, int size) {
+        return new File(directory, "globalGraph_" + size + "x" + size + ".trc");
+    }
+
+    /**
+     * Method to get file of synthetic CB template.
+     *
+     * @param directory
+     * @return
+     */
+    static File getTemplateFile(File directory) {
+        return new File(directory, "AutotraCB.trc");
+    }
+
+    /**
+     * Method to write global graph of size x size CBs.
+     *
+     * @param file
+     * @param size
+     * @return number of chains.
+     * @throws IOException
+     */
+    static int writeGlobalGraph(File file, int size) throws IOException {
+        int chains = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int cb = row * size + col + 1;
+                    for (int t = 1; t <= TRACKS; t++) {
+                        if (col + 1 < size) {
+                            writer.write("CB<" + cb + ".X2" + t + " CB<" + (cb + 1) + ".X1" + t);
+                            writer.newLine();
+                            chains++;
+                        }
+                        if (row + 1 < size) {
+                            writer.write("CB<" + cb + ".Y2" + t + " CB<" + (cb + size) + ".Y1" + t);
+                            writer.newLine();
+                            chains++;
+                        }
+                    }
+                }
+            }
+        }
+        return chains;
+    }
+
+    /**
+     * Method to write template of CB in AutotraCB.trc format: "vertex --
+     * vertex : key" per line.
+     *
+     * @param file
+     * @throws IOException
+     */
+    static void writeTemplate(File file) throws IOException {
+        int key = 1;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int t = 1; t <= TRACKS; t++) {
+                writer.write("X1" + t + " -- H" + t + " : " + key++);
+                writer.newLine();
+                writer.write("X2" + t + " -- H" + t + " : " + key++);
+                writer.newLine();
+                writer.write("Y1" + t + " -- V" + t + " : " + key++);
+                writer.newLine();
+                writer.write("Y2" + t + " -- V" + t + " : " + key++);
+                writer.newLine();
+            }
+            for (int h = 1; h <= TRACKS; h++) {
+                for (int v = 1; v <= TRACKS; v++) {
+                    writer.write("H" + h + " -- V" + v + " : " + key++);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to write CB template and global graphs of all sizes to directory.
+     *
+     * @param directory
+     * @param sizes
+     * @throws IOException
+     */
+    public static void generate(File directory, int[] sizes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        writeTemplate(getTemplateFile(directory));
+        for (int size : sizes) {
+            File file = getGraphFile(directory, size);
+            int chains = writeGlobalGraph(file, size);
+            System.out.println(file.getName() + ": " + (size * size) + " CBs, " + chains + " chains");
+        }
+    }
+
+    /**
+     * Method to generate synthetic chips from command line: directory and
+     * sizes, for example "bench 8 16 32 64".
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: TraceGenerator directory size...");
+            return;
+        }
+        int[] sizes = new int[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            sizes[i - 1] = Integer.parseInt(args[i]);
+        }
+        try {
+            generate(new File(args[0]), sizes);
+        } catch (IOException ioe) {
+            System.err.println("IOException: " + ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: TracingAttempt.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.PortInst;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class keeps state of one attempt of portfolio autotracing. Attempt is
+ * run in one thread on it's own copy of global graph, while attempt is active
+ * in thread SimpleAutotracing, AuxilarySimpleAutotracing, Scheme,
+ * KeyConfiguration and RoutingHistory return objects of attempt, so attempts
+ * don't see results of each other. Attempts differ in order of nets, objects
+ * of winning attempt are installed as the only objects.
+ */
+final class TracingAttempt {
+
+    /**
+     * Order of nets used by attempt.
+     */
+    enum NetOrder {
+        SCHEME,                 // order of scheme, the same as usual autotracing
+        FANOUT_FIRST,           // blocks with more connected ports first
+        FANOUT_LAST,            // blocks with less connected ports first
+        SHUFFLED                // random order with seed of attempt
+    }
+
+    private static final ThreadLocal<TracingAttempt> current = new ThreadLocal<>();
+
+    private final int number;
+    private final NetOrder order;
+    private final NonOrientedGlobalGraph graph;
+    private final Cell cell;                        // resolved on job thread, user interface is unavailable in workers
+    private final NodeInst[] startNodes;
+    private final SimpleAutotracing tracer = new SimpleAutotracing();
+    private final AuxilarySimpleAutotracing auxisa = new AuxilarySimpleAutotracing();
+    private final Scheme scheme = new Scheme();
+    private final RoutingHistory history = RoutingHistory.getHistory().createAttemptHistory();
+    private final Map<String, KeyConfiguration> configurations = new HashMap<>();
+
+    /**
+     * Constructor: attempt with number, the first attempt uses order of
+     * scheme, next ones sort nets by fanout and others shuffle nets.
+     *
+     * @param number
+     * @param graph copy of global graph for this attempt.
+     * @param cell traced cell.
+     * @param startNodes INPUT-like nodes of cell.
+     */
+    TracingAttempt(int number, NonOrientedGlobalGraph graph, Cell cell, NodeInst[] startNodes) {
+        this.number = number;
+        this.graph = graph;
+        this.cell = cell;
+        this.startNodes = startNodes;
+        NetOrder[] orders = NetOrder.values();
+        this.order = orders[Math.min(number, orders.length - 1)];
+    }
+
+    /**
+     * Method to get attempt which is active in this thread.
+     *
+     * @return null if usual autotracing is running.
+     */
+    static TracingAttempt current() {
+        return current.get();
+    }
+
+    /**
+     * Method to make attempt active in this thread.
+     */
+    void enter() {
+        current.set(this);
+    }
+
+    /**
+     * Method to make attempt inactive in this thread.
+     */
+    void exit() {
+        current.remove();
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    NetOrder getOrder() {
+        return order;
+    }
+
+    NonOrientedGlobalGraph getGraph() {
+        return graph;
+    }
+
+    Cell getCell() {
+        return cell;
+    }
+
+    NodeInst[] getStartNodes() {
+        return startNodes;
+    }
+
+    SimpleAutotracing getTracer() {
+        return tracer;
+    }
+
+    AuxilarySimpleAutotracing getAuxilary() {
+        return auxisa;
+    }
+
+    Scheme getScheme() {
+        return scheme;
+    }
+
+    RoutingHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Method to get configuration of attempt, configuration is copied from
+     * shared one when it is used first time.
+     *
+     * @param fileName
+     * @return
+     */
+    synchronized KeyConfiguration getConfiguration(String fileName) {
+        KeyConfiguration configuration = configurations.get(fileName);
+        if (configuration == null) {
+            configuration = KeyConfiguration.getSharedConfiguration(fileName).createDetachedCopy();
+            configurations.put(fileName, configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * Method to install results of this attempt as results of autotracing.
+     */
+    synchronized void install() {
+        Scheme.getInstance().copyFrom(scheme);
+        AuxilarySimpleAutotracing.install(auxisa);
+        for (Map.Entry<String, KeyConfiguration> e : configurations.entrySet()) {
+            KeyConfiguration.getSharedConfiguration(e.getKey()).replaceKeys(e.getValue());
+        }
+        RoutingHistory.getHistory().adopt(history);
+    }
+
+    /**
+     * Method to order starting nodes of nets.
+     *
+     * @param nodes
+     * @return
+     */
+    NodeInst[] orderNodes(NodeInst[] nodes) {
+        if (order == NetOrder.SCHEME) {
+            return nodes;
+        }
+        List<NodeInst> list = new ArrayList<>(Arrays.asList(nodes));
+        if (order == NetOrder.SHUFFLED) {
+            Collections.shuffle(list, new Random(number));
+        } else {
+            Comparator<NodeInst> byFanout = Comparator.comparingInt(TracingAttempt::getFanout);
+            list.sort((order == NetOrder.FANOUT_FIRST) ? byFanout.reversed() : byFanout);
+        }
+        return list.toArray(new NodeInst[list.size()]);
+    }
+
+    /**
+     * Method to order ports of one net.
+     *
+     * @param ports
+     * @return
+     */
+    PortInst[] orderPorts(PortInst[] ports) {
+        if (order == NetOrder.SCHEME) {
+            return ports;
+        }
+        List<PortInst> list = new ArrayList<>(Arrays.asList(ports));
+        if (order == NetOrder.SHUFFLED) {
+            Collections.shuffle(list, new Random(number));
+        } else {
+            Comparator<PortInst> byFanout = Comparator.comparingInt(pi -> getFanout(pi.getNodeInst()));
+            list.sort((order == NetOrder.FANOUT_FIRST) ? byFanout.reversed() : byFanout);
+        }
+        return list.toArray(new PortInst[list.size()]);
+    }
+
+    /**
+     * Method counts connected ports of node.
+     */
+    private static int getFanout(NodeInst ni) {
+        int fanout = 0;
+        for (Iterator<PortInst> itr = ni.getPortInsts(); itr.hasNext();) {
+            if (itr.next().hasConnections()) {
+                fanout++;
+            }
+        }
+        return fanout;
+    }
+}
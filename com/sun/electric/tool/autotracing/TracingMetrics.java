@@ -0,0 +1,155 @@
+/* Electric(tm) VLSI Design System
+ *
+ * File: TracingMetrics.java
+ *
+ * Copyright (c) 2003, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.autotracing;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects metrics of autotracing: time of every phase, number of
+ * searches on global graph, vertices settled by searches, operations of heap
+ * and failed steps. Searches count heap operations in their own heap and add
+ * them once per search, so counting costs nothing in search loop. Metrics are
+ * written as JSON by batch mode.
+ */
+final class TracingMetrics {
+
+    private static final LongAdder searches = new LongAdder();
+    private static final LongAdder settled = new LongAdder();
+    private static final LongAdder heapOperations = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+    private static final Map<String, Long> phases = new LinkedHashMap<>();     // phase name -> ms
+
+    /**
+     * private constructor prohibits creating objects of this class.
+     */
+    private TracingMetrics() {
+    }
+
+    /**
+     * Method to clear all metrics before autotracing.
+     */
+    static synchronized void reset() {
+        searches.reset();
+        settled.reset();
+        heapOperations.reset();
+        retries.reset();
+        phases.clear();
+    }
+
+    /**
+     * Method to add counters of finished search.
+     *
+     * @param heap heap used by search.
+     */
+    static void addSearch(IndexedBinaryHeap heap) {
+        searches.increment();
+        settled.add(heap.getExtracted());
+        heapOperations.add(heap.getOperations());
+    }
+
+    /**
+     * Method to count failed autotracing step, step is repeated after it.
+     */
+    static void addRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Method to add time of phase, time of phase with the same name is summed.
+     *
+     * @param name
+     * @param startTime System.currentTimeMillis() at the start of phase.
+     */
+    static void addPhase(String name, long startTime) {
+        addPhase(name, startTime, System.currentTimeMillis());
+    }
+
+    /**
+     * Method to add time of phase which is already finished.
+     *
+     * @param name
+     * @param startTime
+     * @param finishTime
+     */
+    static synchronized void addPhase(String name, long startTime, long finishTime) {
+        long time = finishTime - startTime;
+        Long previous = phases.get(name);
+        phases.put(name, (previous == null) ? time : previous + time);
+    }
+
+    static long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Method to write metrics as JSON object.
+     *
+     * @param file
+     * @param cellName traced cell.
+     * @param traced true if autotracing was successful.
+     * @param keysUsed number of keys in configuration.
+     * @throws IOException
+     */
+    static synchronized void writeJson(File file, String cellName, boolean traced, int keysUsed) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"cell\": \"").append(escape(cellName)).append("\",\n");
+        sb.append("  \"success\": ").append(traced).append(",\n");
+        sb.append("  \"portfolioSize\": ").append(Constants.getPortfolioSize()).append(",\n");
+        sb.append("  \"phases\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            sb.append(first ? "\n" : ",\n");
+            sb.append("    \"").append(escape(e.getKey())).append("\": ").append(e.getValue());
+            first = false;
+        }
+        sb.append(first ? "},\n" : "\n  },\n");
+        sb.append("  \"searches\": ").append(searches.sum()).append(",\n");
+        sb.append("  \"settledNodes\": ").append(settled.sum()).append(",\n");
+        sb.append("  \"heapOperations\": ").append(heapOperations.sum()).append(",\n");
+        sb.append("  \"retries\": ").append(retries.sum()).append(",\n");
+        sb.append("  \"keysUsed\": ").append(keysUsed).append("\n");
+        sb.append("}\n");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(sb.toString());
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
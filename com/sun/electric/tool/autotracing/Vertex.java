@@ -48,7 +48,7 @@ public class Vertex {
     /**
      *
      */
-    public final int MAXPATHCOUNT = 1000;
+    public static final int MAXPATHCOUNT = 1000;
     private int cost = 1;
 
     /**
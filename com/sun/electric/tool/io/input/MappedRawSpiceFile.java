@@ -0,0 +1,458 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedRawSpiceFile.java
+ * Input/output tool: memory-mapped data of Raw Spice output (.raw)
+ *
+ * Copyright (c) 2004, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.geometry.PolyBase;
+import com.sun.electric.tool.simulation.MutableSignal;
+import com.sun.electric.tool.simulation.RangeSample;
+import com.sun.electric.tool.simulation.ScalarSample;
+import com.sun.electric.tool.simulation.Signal;
+import com.sun.electric.tool.simulation.SignalCollection;
+import com.sun.electric.tool.simulation.Stimuli;
+import com.sun.electric.tool.user.waveform.Panel;
+import com.sun.electric.tool.user.waveform.Panel.WaveSelection;
+import com.sun.electric.tool.user.waveform.WaveSignal;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.geom.Rectangle2D;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for lazy access to the binary data of Raw Spice output (.raw).
+ * The file is memory-mapped in chunks, so that files larger than 2GB can be read,
+ * and samples are decoded from the mapping only when a signal is displayed.
+ * Nothing but the layout of data blocks is kept in memory.
+ * Simulators rewrite the file in place, so the size and modification time of the file
+ * are checked whenever signals are viewed, and signals become empty when they changed
+ * or when the Stimuli which owns the signals is finished.
+ * The buffers are never unmapped explicitly, because a waveform may still be decoding them
+ * in another thread: they are unmapped by garbage collector when the signals are dropped.
+ */
+final class MappedRawSpiceFile implements Closeable
+{
+	/** size of one mapped chunk */										private static final long CHUNK_SIZE = 1L << 30;
+	/** chunks overlap by the widest value (complex double) */			private static final int CHUNK_OVERLAP = 16;
+	/** rows summarized by one min/max entry of a signal */				private static final int SUMMARY_ROWS = 4096;
+
+	private final File file;
+	private final long size;
+	private final long modified;
+	private final MappedByteBuffer[] chunks;
+	private volatile boolean closed;								// true when signals must not read the mapping
+
+	/**
+	 * Constructor maps the whole file, pages are read by the system when they are touched.
+	 * @param file the .raw file.
+	 * @throws IOException
+	 */
+	MappedRawSpiceFile(File file)
+		throws IOException
+	{
+		this.file = file;
+		modified = file.lastModified();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+		{
+			size = channel.size();
+			chunks = new MappedByteBuffer[(int)((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+			for(int i=0; i<chunks.length; i++)
+			{
+				long start = i * CHUNK_SIZE;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, CHUNK_SIZE + CHUNK_OVERLAP));
+
+				// Spice3-raw is native byte order
+				chunks[i].order(ByteOrder.nativeOrder());
+			}
+		}
+	}
+
+	/**
+	 * Method to check that the mapping still shows the file, the mapping is closed if the file was changed.
+	 * Pages beyond the end of a truncated file can't be read, so it must be checked before samples are decoded.
+	 * @return true if samples can be decoded.
+	 */
+	synchronized boolean isValid()
+	{
+		if (closed) return false;
+		if (file.length() == size && file.lastModified() == modified) return true;
+		System.out.println("Warning: " + file + " was changed, its waveforms are dropped. Reread the simulation output");
+		close();
+		return false;
+	}
+
+	/**
+	 * Method to stop reading the mapping, signals become empty.
+	 * Readers which are decoding samples now finish on the still mapped buffers,
+	 * the buffers are unmapped by garbage collector when nothing refers to them.
+	 */
+	public void close()
+	{
+		closed = true;
+	}
+
+	long size() { return size; }
+
+	int getByte(long pos) { return chunks[(int)(pos / CHUNK_SIZE)].get((int)(pos % CHUNK_SIZE)) & 0xFF; }
+
+	private double getDouble(long pos) { return chunks[(int)(pos / CHUNK_SIZE)].getDouble((int)(pos % CHUNK_SIZE)); }
+
+	private float getFloat(long pos) { return chunks[(int)(pos / CHUNK_SIZE)].getFloat((int)(pos % CHUNK_SIZE)); }
+
+	/**
+	 * Method to describe a binary data block of the file.
+	 * A row of the block is the time followed by the values of all signals,
+	 * without the time field (timeWidth 0) the row index is the time.
+	 * Rows which are beyond the end of file are dropped with a warning.
+	 * @param start file offset of the first row.
+	 * @param rowCount the number of rows given in the header.
+	 * @param signalCount the number of values in a row.
+	 * @param timeWidth the number of bytes of the time, 0 if rows have no time.
+	 * @param valueWidth the number of bytes of a value.
+	 * @param floatValues true if values are floats, false if they are doubles.
+	 * @param absTime true to ignore the sign of the time (LTSpice uses it as a flag).
+	 * @return the data block.
+	 */
+	Block newBlock(long start, int rowCount, int signalCount, int timeWidth, int valueWidth, boolean floatValues, boolean absTime)
+	{
+		int rowSize = timeWidth + signalCount * valueWidth;
+		long available = rowSize == 0 ? rowCount : (size - start) / rowSize;
+		if (available < rowCount)
+		{
+			System.out.println("Warning: file has only " + available + " out of " + rowCount + " data points");
+			rowCount = (int)available;
+		}
+		return new Block(start, rowCount, rowSize, timeWidth, valueWidth, floatValues, absTime);
+	}
+
+	/**
+	 * Class for the layout of one binary data block.
+	 */
+	final class Block
+	{
+		private final long start;
+		private final int rowCount;
+		private final int rowSize;
+		private final int timeWidth;
+		private final int valueWidth;
+		private final boolean floatValues;
+		private final boolean absTime;
+
+		private Block(long start, int rowCount, int rowSize, int timeWidth, int valueWidth, boolean floatValues, boolean absTime)
+		{
+			this.start = start;
+			this.rowCount = rowCount;
+			this.rowSize = rowSize;
+			this.timeWidth = timeWidth;
+			this.valueWidth = valueWidth;
+			this.floatValues = floatValues;
+			this.absTime = absTime;
+		}
+
+		int getRowCount() { return rowCount; }
+
+		boolean isValid() { return MappedRawSpiceFile.this.isValid(); }
+
+		/**
+		 * Method to get the file offset just after this block.
+		 */
+		long getEnd() { return start + (long)rowCount * rowSize; }
+
+		double getTime(int row)
+		{
+			if (timeWidth == 0) return row;
+			double t = getDouble(start + (long)row * rowSize);
+			return absTime ? Math.abs(t) : t;
+		}
+
+		double getValue(int row, int signal)
+		{
+			long pos = start + (long)row * rowSize + timeWidth + (long)signal * valueWidth;
+			return floatValues ? getFloat(pos) : getDouble(pos);
+		}
+
+		/**
+		 * Method to find the sweeps of this block: a new sweep starts where the time decreases.
+		 * Only the time column is read.
+		 * @return the first row of every sweep, followed by the row count.
+		 */
+		int[] findSweeps()
+		{
+			List<Integer> sweepStarts = new ArrayList<Integer>();
+			if (rowCount > 0) sweepStarts.add(Integer.valueOf(0));
+			double lastTime = rowCount > 0 ? getTime(0) : 0;
+			for(int j=1; j<rowCount; j++)
+			{
+				double t = getTime(j);
+				if (t < lastTime) sweepStarts.add(Integer.valueOf(j));
+				lastTime = t;
+			}
+			int[] sweeps = new int[sweepStarts.size() + 1];
+			for(int s=0; s<sweepStarts.size(); s++) sweeps[s] = sweepStarts.get(s).intValue();
+			sweeps[sweepStarts.size()] = rowCount;
+			return sweeps;
+		}
+	}
+
+	/**
+	 * Class for a signal which decodes its samples from the mapped file on demand.
+	 * Times of the signal must be monotonic, which holds inside of one sweep.
+	 * Minimum and maximum of every SUMMARY_ROWS rows are cached when they are first needed,
+	 * so redrawing a zoomed out waveform does not read the whole column again.
+	 */
+	static class MappedSignal extends MutableSignal<ScalarSample>
+	{
+		private final Block block;
+		private final int signal;
+		private final int firstRow;
+		private final int numRows;
+		private final double[] summaries;
+		private final Signal.View<ScalarSample> exactView;
+		private final Signal.View<ScalarSample> emptyView;
+
+		/**
+		 * Constructor for a signal on rows of a data block.
+		 * @param sc the signal collection.
+		 * @param sd the Stimuli.
+		 * @param signalName the name of the signal.
+		 * @param signalContext the context of the signal (may be null).
+		 * @param block the data block.
+		 * @param signal the index of the value in a row.
+		 * @param firstRow the first row of the signal.
+		 * @param numRows the number of rows of the signal.
+		 */
+		MappedSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext,
+			Block block, int signal, int firstRow, int numRows)
+		{
+			super(sc, sd, signalName, signalContext, false);
+			this.block = block;
+			this.signal = signal;
+			this.firstRow = firstRow;
+			this.numRows = numRows;
+			summaries = new double[(numRows + SUMMARY_ROWS - 1) / SUMMARY_ROWS * 2];
+			Arrays.fill(summaries, Double.NaN);
+			exactView = new Signal.View<ScalarSample>()
+			{
+				public int getNumEvents() { return MappedSignal.this.numRows; }
+				public double getTime(int index) { return MappedSignal.this.getTime(index); }
+				public ScalarSample getSample(int index) { return new ScalarSample(getValue(index)); }
+			};
+			emptyView = new Signal.View<ScalarSample>()
+			{
+				public int getNumEvents() { return 0; }
+				public double getTime(int index) { throw new IndexOutOfBoundsException("Mapping of signal is dropped"); }
+				public ScalarSample getSample(int index) { throw new IndexOutOfBoundsException("Mapping of signal is dropped"); }
+			};
+		}
+
+		/**
+		 * Method to get the number of samples which can be read, it is zero when the file was changed.
+		 */
+		private int getNumRows() { return block.isValid() ? numRows : 0; }
+
+		private double getTime(int index) { return block.getTime(firstRow + index); }
+
+		private double getValue(int index) { return block.getValue(firstRow + index, signal); }
+
+		/**
+		 * Method to find the last sample at or before a time.
+		 * @return the index of the sample, -1 if all samples are later.
+		 */
+		private int findFloor(double time)
+		{
+			int lo = 0, hi = numRows - 1;
+			while (lo <= hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				if (getTime(mid) <= time) lo = mid + 1; else
+					hi = mid - 1;
+			}
+			return hi;
+		}
+
+		/**
+		 * Method to get minimum and maximum of a block of SUMMARY_ROWS samples, computing it when first needed.
+		 */
+		private synchronized void mergeSummary(int summary, double[] minMax)
+		{
+			if (Double.isNaN(summaries[summary*2]))
+			{
+				double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+				int end = Math.min(numRows, (summary + 1) * SUMMARY_ROWS);
+				for(int i = summary * SUMMARY_ROWS; i < end; i++)
+				{
+					double v = getValue(i);
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				summaries[summary*2] = min;
+				summaries[summary*2+1] = max;
+			}
+			minMax[0] = Math.min(minMax[0], summaries[summary*2]);
+			minMax[1] = Math.max(minMax[1], summaries[summary*2+1]);
+		}
+
+		/**
+		 * Method to get minimum and maximum of samples from "first" to "last" inclusive.
+		 * Whole blocks of samples use cached summaries, only partial ones are read.
+		 */
+		private double[] getMinMax(int first, int last)
+		{
+			double[] minMax = new double[] {Double.MAX_VALUE, -Double.MAX_VALUE};
+			while (first <= last)
+			{
+				int summary = first / SUMMARY_ROWS;
+				int summaryEnd = Math.min(numRows, (summary + 1) * SUMMARY_ROWS) - 1;
+				if (first == summary * SUMMARY_ROWS && summaryEnd <= last)
+				{
+					mergeSummary(summary, minMax);
+					first = summaryEnd + 1;
+					continue;
+				}
+				int end = Math.min(last, summaryEnd);
+				for( ; first <= end; first++)
+				{
+					double v = getValue(first);
+					minMax[0] = Math.min(minMax[0], v);
+					minMax[1] = Math.max(minMax[1], v);
+				}
+			}
+			return minMax;
+		}
+
+		public ScalarSample getSample(double time)
+		{
+			if (getNumRows() == 0) return null;
+			int index = findFloor(time);
+			if (index < 0 || getTime(index) != time) return null;
+			return new ScalarSample(getValue(index));
+		}
+
+		public void addSample(double time, ScalarSample sample)
+		{
+			throw new UnsupportedOperationException("Signals of mapped raw file are read-only");
+		}
+
+		public void replaceSample(double time, ScalarSample sample)
+		{
+			throw new UnsupportedOperationException("Signals of mapped raw file are read-only");
+		}
+
+		public Signal.View<ScalarSample> getExactView() { return getNumRows() == 0 ? emptyView : exactView; }
+
+		public Signal.View<RangeSample<ScalarSample>> getRasterView(double t0, double t1, int numPixels)
+		{
+			return new MappedRasterView(t0, t1, numPixels);
+		}
+
+		public boolean isEmpty() { return getNumRows() == 0; }
+
+		public double getMinTime() { return getNumRows() == 0 ? Double.MAX_VALUE : getTime(0); }
+
+		public double getMaxTime() { return getNumRows() == 0 ? -Double.MAX_VALUE : getTime(numRows - 1); }
+
+		public double getMinValue() { return getMinMax(0, getNumRows() - 1)[0]; }
+
+		public double getMaxValue() { return getMinMax(0, getNumRows() - 1)[1]; }
+
+		public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
+			Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
+		{
+			ScalarSample.plotSig(this, panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
+		}
+
+		/**
+		 * Raster view works like the one of BTreeSignal: t0 and t1 are snapped to the samples
+		 * just outside of the window, "exact" mode is used when there are fewer samples than regions,
+		 * otherwise every region gives the minimum and maximum of its samples.
+		 * Only samples inside of the window are decoded.
+		 */
+		private class MappedRasterView implements Signal.View<RangeSample<ScalarSample>>
+		{
+			private final double t0, t1;
+			private final int numRegions;
+			private final boolean exact;
+			private final int t0_ord, t1_ord;
+
+			MappedRasterView(double t0, double t1, int numRegions)
+			{
+				if (getNumRows() == 0)
+				{
+					t0_ord = 0;
+					t1_ord = -1;
+					this.t0 = this.t1 = 0;
+					this.exact = true;
+					this.numRegions = 0;
+					return;
+				}
+				t0_ord = Math.max(findFloor(Math.min(t0, t1)), 0);
+				t1_ord = Math.min(numRows - 1, findFloor(Math.max(t0, t1)) + 1);
+				this.t0 = getTime(t0_ord);
+				this.t1 = getTime(t1_ord);
+				int actualNumSamples = t1_ord - t0_ord + 1;
+				this.exact = numRegions > actualNumSamples;
+				this.numRegions = exact ? actualNumSamples : numRegions;
+			}
+
+			public int getNumEvents() { return numRegions; }
+
+			public double getTime(int index)
+			{
+				if (!exact) return t0+(((t1-t0)*index)/numRegions);
+				return MappedSignal.this.getTime(t0_ord + index);
+			}
+
+			public RangeSample<ScalarSample> getSample(int index)
+			{
+				if (index >= getNumEvents()-1)
+				{
+					ScalarSample sample = new ScalarSample(getValue(t1_ord));
+					return new RangeSample<ScalarSample>(sample, sample);
+				}
+				if (exact)
+				{
+					ScalarSample sample = new ScalarSample(getValue(t0_ord + index));
+					return new RangeSample<ScalarSample>(sample, sample);
+				}
+
+				// samples from the first one at or after the region start to the last one at or before its end
+				double tfirst = getTime(index);
+				double tsecond = getTime(index+1);
+				int last = findFloor(tsecond);
+				int first = findFloor(tfirst);
+				if (first < 0 || MappedSignal.this.getTime(first) < tfirst) first++;
+				if (first > last) return null;
+				double[] minMax = getMinMax(first, last);
+				return new RangeSample<ScalarSample>(new ScalarSample(minMax[0]), new ScalarSample(minMax[1]));
+			}
+		}
+	}
+}
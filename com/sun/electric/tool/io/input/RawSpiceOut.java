@@ -32,6 +32,7 @@ import com.sun.electric.tool.simulation.Stimuli;
 import com.sun.electric.tool.simulation.SweptSample;
 import com.sun.electric.util.TextUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.net.URL;
@@ -52,6 +53,9 @@ public class RawSpiceOut extends Input<Stimuli>
 	private static final boolean DEBUG = false;
 
 	private boolean complexValues;
+	/** the mapped file, null when reading a stream */	private MappedRawSpiceFile mappedFile;
+	/** position of the next header line in mappedFile */	private long mappedPos;
+	/** true if signals decode samples from mappedFile */	private boolean mappedSignals;
 
 	/**
 	 * Method to read an LTSpice output file.
@@ -61,19 +65,44 @@ public class RawSpiceOut extends Input<Stimuli>
 	{
 		sd.setNetDelimiter(" ");
 
-		// open the file
-		if (openBinaryInput(fileURL)) return sd;
+		// open the file: local files are memory-mapped, so that samples are decoded only when displayed
+		mappedFile = null;
+		File file = fileURL.getProtocol().equals("file") && !fileURL.getFile().endsWith(".gz") ? TextUtils.getFile(fileURL) : null;
+		if (file != null && file.isFile())
+		{
+			mappedFile = new MappedRawSpiceFile(file);
+			mappedPos = 0;
+			mappedSignals = false;
+			filePath = fileURL.getFile();
+			fileLength = mappedFile.size();
+			byteCount = 0;
+		} else
+		{
+			if (openBinaryInput(fileURL)) return sd;
+		}
 
 		// show progress reading .raw file
 		System.out.println("Reading Spice3/NGSpice/LTSpice/SmartSpice raw output file: " + fileURL.getFile());
 		startProgressDialog("LTSpice output", fileURL.getFile());
 
 		// read the actual signal data from the .raw file
-		readRawSpice3File(cell, sd);
+		try
+		{
+			readRawSpice3File(cell, sd);
+		} finally
+		{
+			// mapping lives as long as signals which use it, so that simulator can rewrite the file later
+			if (mappedFile != null)
+			{
+				if (mappedSignals) sd.addResource(mappedFile); else
+					mappedFile.close();
+			}
+		}
 
 		// stop progress dialog, close the file
 		stopProgressDialog();
 		closeInput();
+		mappedFile = null;
         return sd;
 	}
 
@@ -179,7 +208,6 @@ public class RawSpiceOut extends Input<Stimuli>
 			if (keyWord.equals("No. Points"))
             {
                 rowCount = TextUtils.atoi(restOfLine);
-                time = new double[rowCount];
                 continue;
             }
 
@@ -246,6 +274,7 @@ public class RawSpiceOut extends Input<Stimuli>
                         System.out.println("Missing point count in file");
                         return;
                     }
+                    time = new double[rowCount];
                     double[][] values = new double[signalCount][rowCount];
                     for(int j=0; j<rowCount; j++)
                     {
@@ -305,12 +334,38 @@ public class RawSpiceOut extends Input<Stimuli>
                     }
 
                     // read the data
-                    double[][] values = new double[signalCount][rowCount];
-                    for(int j=0; j<rowCount; j++)
+                    double[][] values;
+                    if (mappedFile != null)
                     {
-                        time[j] = getNextDouble();
-                        for(int i=0; i<signalCount; i++)
-                            values[i][j] = getNextDouble();
+                        MappedRawSpiceFile.Block block = getMappedBlock(rowCount, signalCount, true, false, false);
+                        if (block.findSweeps().length <= 2)
+                        {
+                            // times are monotonic: decode samples on demand
+                            for (int i = 0; i < signalCount; i++)
+                                new MappedRawSpiceFile.MappedSignal(sc, sd, signalNames[i], null, block, i, 0, block.getRowCount());
+                            continue;
+                        }
+
+                        // times are not sorted (a DC sweep going down): signals need their samples in memory
+                        rowCount = block.getRowCount();
+                        time = new double[rowCount];
+                        values = new double[signalCount][rowCount];
+                        for(int j=0; j<rowCount; j++)
+                        {
+                            time[j] = block.getTime(j);
+                            for(int i=0; i<signalCount; i++)
+                                values[i][j] = block.getValue(j, i);
+                        }
+                    } else
+                    {
+                        time = new double[rowCount];
+                        values = new double[signalCount][rowCount];
+                        for(int j=0; j<rowCount; j++)
+                        {
+                            time[j] = getNextDouble();
+                            for(int i=0; i<signalCount; i++)
+                                values[i][j] = getNextDouble();
+                        }
                     }
                     for (int i = 0; i < signalCount; i++)
                         ScalarSample.createSignal(sc, sd, signalNames[i], null, time, values[i]);
@@ -382,6 +437,12 @@ if (OLD) continue;
                             System.out.println("VARIABLE "+i+" IS "+signalNames[i]);
                     }
 
+                    if (mappedFile != null)
+                    {
+                        readMappedLTSpiceData(sc, sd, signalNames, signalCount, getMappedBlock(rowCount, signalCount, firstFieldIsTime, realValues, true));
+                        return;
+                    }
+
                     // read all of the data in the RAW file
                     double[][] values = new double[signalCount][rowCount];
                     time = new double[rowCount];
@@ -468,6 +529,92 @@ if (OLD) continue;
         }
 	}
 
+	/**
+	 * Method to describe the binary data block which starts at the current position of the mapped file.
+	 * The header position is moved after the block.
+	 * @param rowCount the number of rows from the header.
+	 * @param signalCount the number of signals after the time.
+	 * @param withTime true if the first field of every row is the time (a double),
+	 * otherwise the row index is used as the time, like the stream reader does.
+	 * @param floatValues true if the values are floats (LTSpice "real" flag).
+	 * @param absTime true to ignore the sign of the time (LTSpice).
+	 * @return the data block.
+	 */
+	private MappedRawSpiceFile.Block getMappedBlock(int rowCount, int signalCount, boolean withTime, boolean floatValues, boolean absTime)
+	{
+		// for complex plots, every field is followed by its imaginary part
+		int fieldScale = complexValues ? 2 : 1;
+		MappedRawSpiceFile.Block block = mappedFile.newBlock(mappedPos, rowCount, signalCount,
+			withTime ? 8 * fieldScale : 0, (floatValues ? 4 : 8) * fieldScale, floatValues, absTime);
+		mappedSignals = true;
+		byteCount += block.getEnd() - mappedPos;
+		updateProgressDialog(0);
+		mappedPos = block.getEnd();
+		return block;
+	}
+
+	/**
+	 * Method to create the signals of a mapped LTSpice data block.
+	 * Only the time column is read to find the sweeps, the values are decoded when they are displayed.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readMappedLTSpiceData(SignalCollection sc, Stimuli sd, String[] signalNames, int signalCount,
+		MappedRawSpiceFile.Block block)
+	{
+		int[] sweeps = block.findSweeps();
+		int sweepCount = sweeps.length - 1;
+		if (DEBUG) System.out.println("FOUND " + sweepCount + " SWEEPS");
+		String[] sweepNames = new String[sweepCount];
+		for(int s=0; s<sweepCount; s++) sweepNames[s] = "" + (s+1);
+		for(int i=0; i<signalCount; i++)
+		{
+			String name = signalNames[i];
+			int lastDotPos = name.lastIndexOf('.');
+			String context = null;
+			if (lastDotPos >= 0)
+			{
+				context = name.substring(0, lastDotPos);
+				name = name.substring(lastDotPos + 1);
+			}
+			Signal<?> [] signals = new Signal<?>[sweepCount];
+			for(int s=0; s<sweepCount; s++)
+				signals[s] = new MappedRawSpiceFile.MappedSignal(sc, sd, name, context, block, i, sweeps[s], sweeps[s+1] - sweeps[s]);
+			SweptSample.createSignal(sc, sd, name, context, false, (Signal<ScalarSample>[])signals);
+		}
+		sc.setSweepNames(sweepNames);
+	}
+
+	/**
+	 * Method to read a line of the header.
+	 * Mapped files are read at mappedPos, otherwise the binary stream is read.
+	 * @return the line, with its end-of-line character (null on EOF).
+	 * @throws IOException
+	 */
+	protected String getLineFromBinary()
+		throws IOException
+	{
+		if (mappedFile == null) return super.getLineFromBinary();
+		if (mappedPos >= mappedFile.size()) return null;
+		StringBuffer sb = new StringBuffer();
+		while (mappedPos < mappedFile.size())
+		{
+			int c = mappedFile.getByte(mappedPos++);
+			sb.append((char)c);
+			if (c == '\r' && mappedPos < mappedFile.size() && mappedFile.getByte(mappedPos) == '\n') mappedPos++;
+			if (c == '\n' || c == '\r') break;
+		}
+		return sb.toString();
+	}
+
+	protected String getLineAndUpdateProgressBinary()
+		throws IOException
+	{
+		if (mappedFile == null) return super.getLineAndUpdateProgressBinary();
+		String line = getLineFromBinary();
+		if (line != null) updateProgressDialog(line.length());
+		return line;
+	}
+
 	private double getNextDouble()
 		throws IOException
 	{
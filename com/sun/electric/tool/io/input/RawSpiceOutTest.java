@@ -0,0 +1,231 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RawSpiceOutTest.java
+ *
+ * Copyright (c) 2004, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.Main;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.simulation.Signal;
+import com.sun.electric.tool.simulation.SignalCollection;
+import com.sun.electric.tool.simulation.Stimuli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A simple regression test for the memory-mapped reader of RawSpiceOut.
+ */
+public class RawSpiceOutTest
+{
+	public static void main(String[] s) throws Exception
+	{
+		if (s.length != 3)
+		{
+			System.err.println("");
+			System.err.println("usage: java " + RawSpiceOutTest.class.getName() + " <signals> <points> <seed>");
+			System.err.println("");
+			System.err.println("  Writes a random LTSpice file of DC sweeps and reads it through the memory mapping");
+			System.err.println("  and through the stream. Reports any disagreements.");
+			System.err.println("");
+			System.err.println("    <signals>   number of signals after the sweep variable");
+			System.err.println("    <points>    number of points of one sweep");
+			System.err.println("    <seed>      seed for random number generator, in hex");
+			System.err.println("");
+			System.exit(-1);
+		}
+		Random rand = new Random(Integer.parseInt(s[2], 16));
+		int signalCount = Integer.parseInt(s[0]);
+		int points = Integer.parseInt(s[1]);
+		Job.setUserInterface(new Main.UserInterfaceDummy());
+
+		checkDCSweeps(rand, signalCount, points);
+		checkRowsWithoutTime(rand, signalCount, points);
+		System.out.println("RawSpiceOutTest passed");
+	}
+
+	/**
+	 * Method to compare the mapped and the stream reader on a file whose first variable is not "time".
+	 * Only local files which are not compressed are mapped, so the stream reader gets a .gz copy.
+	 */
+	private static void checkDCSweeps(Random rand, int signalCount, int points) throws Exception
+	{
+		int sweepCount = 1 + rand.nextInt(4);
+		int rowCount = sweepCount * points;
+		StringBuilder header = new StringBuilder();
+		header.append("Title: * random DC sweeps\n");
+		header.append("Plotname: DC transfer characteristic\n");
+		header.append("Flags: real forward stepped\n");
+		header.append("No. Variables: " + (signalCount + 1) + "\n");
+		header.append("No. Points: " + rowCount + "\n");
+		header.append("Offset: 0.0000000000000000e+000\n");
+		header.append("Command: Linear Technology Corporation LTspice IV\n");
+		header.append("Variables:\n");
+		header.append("\t0\tv1\tvoltage\n");
+		for(int i=0; i<signalCount; i++)
+			header.append("\t" + (i+1) + "\tV(n" + i + ")\tvoltage\n");
+		header.append("Binary:\n");
+
+		// values are multiples of 1/4, so that first byte of data is never taken as end of line
+		ByteBuffer data = ByteBuffer.allocate(rowCount * (8 + 4 * signalCount)).order(ByteOrder.nativeOrder());
+		for(int j=0; j<rowCount; j++)
+		{
+			data.putDouble((j % points) * 0.5);
+			for(int i=0; i<signalCount; i++)
+				data.putFloat((rand.nextInt(4096) - 2048) / 4f);
+		}
+
+		File rawFile = File.createTempFile("dcsweep", ".raw");
+		File gzFile = new File(rawFile.getPath() + ".gz");
+		try
+		{
+			try (OutputStream out = new FileOutputStream(rawFile))
+			{
+				out.write(header.toString().getBytes("US-ASCII"));
+				out.write(data.array());
+			}
+			try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzFile)))
+			{
+				out.write(header.toString().getBytes("US-ASCII"));
+				out.write(data.array());
+			}
+			Stimuli mapped = new RawSpiceOut().processInput(rawFile.toURI().toURL(), null, new Stimuli());
+			Stimuli streamed = new RawSpiceOut().processInput(gzFile.toURI().toURL(), null, new Stimuli());
+			try
+			{
+				compare(mapped, streamed);
+			} finally
+			{
+				mapped.finished();
+				streamed.finished();
+			}
+		} finally
+		{
+			rawFile.delete();
+			gzFile.delete();
+		}
+	}
+
+	/**
+	 * Method to check a data block without the time field: the row index is the time
+	 * and values follow each other without gap.
+	 */
+	private static void checkRowsWithoutTime(Random rand, int signalCount, int points) throws Exception
+	{
+		float[] values = new float[points * signalCount];
+		ByteBuffer data = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+		for(int k=0; k<values.length; k++)
+		{
+			values[k] = rand.nextFloat();
+			data.putFloat(values[k]);
+		}
+		File rawFile = File.createTempFile("notime", ".raw");
+		try
+		{
+			try (OutputStream out = new FileOutputStream(rawFile))
+			{
+				out.write(data.array());
+			}
+			MappedRawSpiceFile mappedFile = new MappedRawSpiceFile(rawFile);
+			try
+			{
+				MappedRawSpiceFile.Block block = mappedFile.newBlock(0, points, signalCount, 0, 4, true, true);
+				if (block.getRowCount() != points)
+					throw new RuntimeException("  block has " + block.getRowCount() + " rows instead of " + points);
+				for(int j=0; j<points; j++)
+				{
+					if (block.getTime(j) != j)
+						throw new RuntimeException("  disagreement on time of row " + j + ": " + block.getTime(j));
+					for(int i=0; i<signalCount; i++)
+					{
+						if (block.getValue(j, i) != values[j * signalCount + i])
+							throw new RuntimeException("  disagreement on row " + j + " signal " + i +
+								": mapped=" + block.getValue(j, i) + ", written=" + values[j * signalCount + i]);
+					}
+				}
+			} finally
+			{
+				mappedFile.close();
+			}
+		} finally
+		{
+			rawFile.delete();
+		}
+	}
+
+	/**
+	 * Method to compare all signals of two Stimuli by their exact views.
+	 */
+	private static void compare(Stimuli mapped, Stimuli streamed)
+	{
+		List<SignalCollection> mappedCollections = getCollections(mapped);
+		List<SignalCollection> streamedCollections = getCollections(streamed);
+		if (mappedCollections.size() != streamedCollections.size())
+			throw new RuntimeException("  disagreement on collections: mapped=" + mappedCollections.size() +
+				", stream=" + streamedCollections.size());
+		for(int c=0; c<mappedCollections.size(); c++)
+		{
+			TreeMap<String,Signal<?>> mappedSignals = getSignals(mappedCollections.get(c));
+			TreeMap<String,Signal<?>> streamedSignals = getSignals(streamedCollections.get(c));
+			if (!mappedSignals.keySet().equals(streamedSignals.keySet()))
+				throw new RuntimeException("  disagreement on signals: mapped=" + mappedSignals.keySet() +
+					", stream=" + streamedSignals.keySet());
+			for(String name : mappedSignals.keySet())
+			{
+				Signal.View<?> mv = mappedSignals.get(name).getExactView();
+				Signal.View<?> sv = streamedSignals.get(name).getExactView();
+				if (mv.getNumEvents() != sv.getNumEvents())
+					throw new RuntimeException("  disagreement on events of " + name + ": mapped=" + mv.getNumEvents() +
+						", stream=" + sv.getNumEvents());
+				for(int e=0; e<mv.getNumEvents(); e++)
+				{
+					if (mv.getTime(e) != sv.getTime(e) || !mv.getSample(e).equals(sv.getSample(e)))
+						throw new RuntimeException("  disagreement on event " + e + " of " + name + ": mapped=" +
+							mv.getTime(e) + "/" + mv.getSample(e) + ", stream=" + sv.getTime(e) + "/" + sv.getSample(e));
+				}
+			}
+		}
+	}
+
+	private static List<SignalCollection> getCollections(Stimuli sd)
+	{
+		List<SignalCollection> collections = new ArrayList<SignalCollection>();
+		for(Iterator<SignalCollection> it = sd.getSignalCollections(); it.hasNext(); )
+			collections.add(it.next());
+		return collections;
+	}
+
+	private static TreeMap<String,Signal<?>> getSignals(SignalCollection sc)
+	{
+		TreeMap<String,Signal<?>> signals = new TreeMap<String,Signal<?>>();
+		for(Signal<?> sig : sc.getSignals())
+			signals.put(sig.getFullName(), sig);
+		return signals;
+	}
+}
@@ -73,9 +73,11 @@ import com.sun.electric.tool.user.ui.TopLevel;
 import com.sun.electric.util.TextUtils;
 import com.sun.electric.util.math.FixpTransform;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -161,6 +163,10 @@ public class Spice extends Topology {
      * key of Variable holding SPICE flat code.
      */
     public static final Variable.Key SPICE_CODE_FLAT_KEY = Variable.newKey("SIM_spice_code_flat");
+    /**
+     * key of Variable holding name of file with SPICE deck section of cell.
+     */
+    public static final Variable.Key SPICE_DECK_SECTION_KEY = Variable.newKey("SIM_spice_deck_section");
     /**
      * key of deprecated Variable holding model file
      */
@@ -1764,6 +1770,7 @@ public class Spice extends Topology {
                 }
                 emitEmbeddedSpice(cardVar, context, segmentedNets, info, false, forceEval);
             }
+            writeDeckSection(cell);
         }
 
         // finally, if this is the top level,
@@ -3112,6 +3119,41 @@ public class Spice extends Topology {
         }
     }
 
+    /**
+     * Method to copy deck section of cell into the deck. Deck section is a file
+     * with SPICE cards named by SPICE_DECK_SECTION_KEY variable of cell, relative
+     * name is found in directory of library of cell. It is copied line by line
+     * after Spice Code nodes, so big generated decks are kept neither in
+     * database nor in memory.
+     */
+    private void writeDeckSection(Cell cell) {
+        Variable var = cell.getVar(SPICE_DECK_SECTION_KEY);
+        if (var == null) {
+            return;
+        }
+        String fileName = var.getPureValue(-1);
+        File file = new File(fileName);
+        String libraryPath = TextUtils.getFilePath(cell.getLibrary().getLibFile());
+        if (!file.isAbsolute() && !libraryPath.isEmpty()) {
+            file = new File(libraryPath + fileName);
+        }
+        if (!file.exists()) {
+            reportWarning("Spice deck section '" + file + "' of " + cell + " cannot be loaded");
+            return;
+        }
+        multiLinePrint(true, "\n* Deck section of cell " + cell + " from file " + file.getName() + "\n");
+        long bytes = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                multiLinePrint(false, line + "\n");
+                bytes += line.length() + 1;
+            }
+        } catch (IOException e) {
+            reportError("Error reading Spice deck section '" + file + "': " + e.getMessage());
+        }
+        System.out.println("Spice deck section of " + cell + ": " + bytes + " bytes written");
+    }
+
     /**
      * Function to write a two port device to the file. Complain about any
      * missing connections. Determine the port connections from the exports in
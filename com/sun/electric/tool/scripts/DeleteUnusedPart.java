@@ -36,7 +36,6 @@ import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
 
-import java.util.concurrent.TimeUnit;
 import com.sun.electric.tool.autotracing.Automodelling;
 
 import com.sun.electric.tool.Job;
@@ -114,12 +113,23 @@ public class DeleteUnusedPart {
 
     /**
      * Method to create new object that keeps script.
+     *
+     * @param after Jobs those should be finished before script is started.
+     * @return
      */
-    public static Object doDeleteUnusedPartAfterAutotracing() {
-        return new DeleteUnusedPartScript();
+    public static Object doDeleteUnusedPartAfterAutotracing(Job... after) {
+        Job script = new DeleteUnusedPartScript();
+        script.startJobAfter(after);
+        return script;
     }
 
-    public static void deleteUnusedArcs(Cell cell) {
+    /**
+     * Method to delete wires of schematics from cell.
+     *
+     * @param cell
+     * @return started Job which deletes arcs.
+     */
+    public static Job deleteUnusedArcs(Cell cell) {
         Set<ArcInst> arcToDelete = new HashSet<>();
         ArcProto arc = Schematics.tech().wire_arc;
         Iterator<ArcInst> arcItr = cell.getArcs();
@@ -132,7 +142,7 @@ public class DeleteUnusedPart {
         for(ArcInst ai : arcToDelete) {
             System.out.println(ai.toString());
         }
-        new DeleteArcs(arcToDelete);
+        return new DeleteArcs(arcToDelete);
     }
     
     private static class DeleteArcs extends Job {
@@ -174,29 +184,14 @@ public class DeleteUnusedPart {
     private static class DeleteUnusedPartScript extends Job {
 
         private Cell cell;
-        private Job job;
 
         public DeleteUnusedPartScript() {
             super("Delete Unused Part Script", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
             System.out.println("DeleteUnusedPartScript");
-            startJob();
         }
 
         @Override
         public boolean doIt() throws JobException {
-            Iterator<Job> itrJob = Job.getAllJobs();
-            while (itrJob.hasNext()) {
-                job = itrJob.next();
-                if (job.toString().contains("Autotracing") || job.toString().contains("Create New Arc") || job.toString().contains("Delete Unused Arc")) {
-                    while (!job.isFinished()) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(100);
-                        } catch (Exception e) {
-                        }
-                    }
-
-                }
-            }
             cell = Automodelling.getCellFromName(Automodelling.AUTOTRACING_CELL_NAME);
             deleteUnusedPart(cell);
             Accessory.showMessage("Autotracing process completed");
@@ -211,34 +206,27 @@ public class DeleteUnusedPart {
 
         Cell cell;
 
+        /**
+         * Constructor: job is started by startJobAfter() with Job which
+         * replaces arcs of used nets.
+         *
+         * @param cell
+         */
         public DeleteUnusedArcs(Cell cell) {
             super("Delete Unused Arcs", User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
             this.cell = cell;
             System.out.println("DeleteUnusedArcs");
-            startJob();
         }
 
         @Override
         public boolean doIt() throws JobException {
-            Iterator<Job> itrJob = Job.getAllJobs();
-            while (itrJob.hasNext()) {
-                Job job = itrJob.next();
-                if (job.toString().contains("Replace")||job.toString().contains("Create")) {
-                    while (!job.isFinished()) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(100);
-                        } catch (Exception e) {
-                        }
-                    }
-                }
-            }
-            
+            Job deleteArcs = null;
             try {
-                deleteUnusedArcs(cell);
+                deleteArcs = deleteUnusedArcs(cell);
             } catch (Exception e) {
             }
             
-            doDeleteUnusedPartAfterAutotracing();
+            doDeleteUnusedPartAfterAutotracing(deleteArcs);
 
             return true;
         }
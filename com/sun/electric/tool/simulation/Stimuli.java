@@ -31,6 +31,8 @@ import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.user.waveform.WaveformWindow;
 import com.sun.electric.util.TextUtils;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -68,6 +70,7 @@ public class Stimuli
 	/** control points when signals are selected */				private Map<Signal<?>,Double[]> controlPointMap;
     /** Cached version of net delimiter */                      private String delim;
 	/** for storing stimuli in a disk cache */					private CachingPageStorage ps;
+	/** resources of signals, released with this Stimuli */	private List<Closeable> resources;
 
     /**
 	 * Constructor to build a new Simulation Data object.
@@ -78,6 +81,7 @@ public class Stimuli
 		scMap = new HashMap<String,SignalCollection>();
 		scList = new ArrayList<SignalCollection>();
 		controlPointMap = new HashMap<Signal<?>,Double[]>();
+		resources = new ArrayList<Closeable>();
 		delim = " ";
 
 		// build disk cache
@@ -102,11 +106,29 @@ public class Stimuli
 		controlPointMap.clear();
 		scMap.clear();
 		scList.clear();
+		for(Closeable resource : resources)
+		{
+			try
+			{
+				resource.close();
+			} catch (IOException e)
+			{
+				System.out.println("Error releasing simulation data: " + e.getMessage());
+			}
+		}
+		resources.clear();
 //		ps.close();
 //		ps = null;
 		ww = null;
 	}
 
+	/**
+	 * Method to add a resource which is used by signals of this Stimuli,
+	 * such as a mapped file.  It is closed when this Stimuli is finished.
+	 * @param resource the resource.
+	 */
+	public void addResource(Closeable resource) { resources.add(resource); }
+
 	public void addSignalCollection(SignalCollection an)
 	{
 		scMap.put(an.getName(), an);
@@ -265,6 +265,7 @@ public class UserInterfaceMain extends AbstractUserInterface {
         }
         job.timer.end();
         job.finished = true;                        // is this redundant with Thread.isAlive()?
+        job.onFinished().complete(doItOk);          // no-op when server has completed it already
 
         // say something if it took more than a minute by default
         if (job.reportExecution || job.timer.getTime() >= Job.MIN_NUM_SECONDS) {